@@ -0,0 +1,239 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming detector for a sustained upward shift in a signal, such as a slow leak, that raises a warning before hard
+ * thresholds are breached.
+ *
+ * The baseline mean and variance are tracked with an EWMA. Each reading is standardized against the baseline and fed
+ * to a one-sided CUSUM; a warning is raised when the CUSUM exceeds the threshold and re-armed once it falls back to
+ * zero. The baseline only adapts while the CUSUM is zero, so it does not follow the drift it is trying to detect.
+ *
+ * A warning that lasts for the parameters' rebaseline count of readings is taken to be a permanent level shift, e.g.
+ * a meter moved or recalibrated: the baseline restarts at the current level and is learned again over the warmup, so a
+ * step warns once instead of for as long as it lasts, while a leak that keeps rising warns again. Dangerous levels are
+ * still caught by the hard limits of the {@link ThresholdDetector}.
+ *
+ * The state is a handful of primitives and each reading is O(1) with no allocation.
+ */
+public class ChangePointDetector {
+    private double  _mean;
+    private double  _variance;
+    private double  _cusum;
+    private int     _samples;
+    private boolean _warning;
+    private int     _warningSamples;    // readings since the warning was raised
+    private transient boolean _modified;
+
+    /**
+     * Scores one reading.
+     * @param parameters the detector tuning
+     * @param value the reading
+     * @return true if this reading raised a warning
+     */
+    public boolean process(ChangePointParameters parameters, double value) {
+        return step(parameters, value);
+    }
+
+    /**
+     * Scores a batch of readings in order.
+     * @param parameters the detector tuning
+     * @param values the readings
+     * @param offset the index of the first reading
+     * @param count the number of readings
+     * @return the index of the first reading that raised a warning, or -1
+     */
+    public int process(ChangePointParameters parameters, int[] values, int offset, int count) {
+        int raised = -1;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            if (step(parameters, values[i]) && raised < 0) {
+                raised = i;
+            }
+        }
+        return raised;
+    }
+
+    /**
+     * Scores a batch of readings in order.
+     * @param parameters the detector tuning
+     * @param values the readings
+     * @param offset the index of the first reading
+     * @param count the number of readings
+     * @return the index of the first reading that raised a warning, or -1
+     */
+    public int process(ChangePointParameters parameters, double[] values, int offset, int count) {
+        int raised = -1;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            if (step(parameters, values[i]) && raised < 0) {
+                raised = i;
+            }
+        }
+        return raised;
+    }
+
+    public boolean isWarning() {
+        return _warning;
+    }
+
+    public double getMean() {
+        return _mean;
+    }
+
+    public double getVariance() {
+        return _variance;
+    }
+
+    public double getCusum() {
+        return _cusum;
+    }
+
+    public int getSamples() {
+        return _samples;
+    }
+
+    public int getWarningSamples() {
+        return _warningSamples;
+    }
+
+    /**
+     * Forgets the baseline and any warning, e.g. after the sensor is replaced or recalibrated.
+     */
+    public void reset() {
+        _mean = 0;
+        _variance = 0;
+        _cusum = 0;
+        _samples = 0;
+        _warning = false;
+        _warningSamples = 0;
+        _modified = true;
+    }
+
+    /**
+     * Returns true if the detector's state changed since the last call to clearModified().
+     * @return true if the state changed
+     */
+    public boolean isModified() {
+        return _modified;
+    }
+
+    public void clearModified() {
+        _modified = false;
+    }
+
+    void setState(double mean, double variance, double cusum, int samples, boolean warning, int warningSamples) {
+        _mean = mean;
+        _variance = variance;
+        _cusum = cusum;
+        _samples = samples;
+        _warning = warning;
+        _warningSamples = warningSamples;
+    }
+
+    void writeTo(ByteArrayOutputStream out) {
+        VarInts.writeLong(out, Double.doubleToLongBits(_mean));
+        VarInts.writeLong(out, Double.doubleToLongBits(_variance));
+        VarInts.writeLong(out, Double.doubleToLongBits(_cusum));
+        VarInts.writeZigZag(out, _samples);
+        out.write(_warning ? 1 : 0);
+        VarInts.writeZigZag(out, _warningSamples);
+    }
+
+    void readFrom(ByteBuffer in) {
+        _mean = in.getDouble();
+        _variance = in.getDouble();
+        _cusum = in.getDouble();
+        _samples = VarInts.readZigZagInt(in);
+        _warning = in.get() != 0;
+        _warningSamples = VarInts.readZigZagInt(in);
+    }
+
+    private boolean step(ChangePointParameters parameters, double value) {
+        if (_samples < parameters.getWarmup()) {
+            if (_samples == 0) {
+                _mean = value;
+            } else {
+                updateBaseline(parameters.getAlpha(), value);
+            }
+            _samples++;
+            _modified = true;
+            return false;
+        }
+
+        double sigma = Math.max(Math.sqrt(_variance), parameters.getMinSigma());
+        double cusum = Math.max(0, _cusum + (value - _mean) / sigma - parameters.getSlack());
+        boolean raised = false;
+        if (cusum > parameters.getThreshold() && !_warning) {
+            raised = true;
+            _warning = true;
+            _modified = true;
+        } else if (cusum == 0) {
+            if (_warning) {
+                _warning = false;
+                _warningSamples = 0;
+                _modified = true;
+            }
+            updateBaseline(parameters.getAlpha(), value);
+        }
+        if (_warning) {
+            _warningSamples++;
+            _modified = true;
+            if (parameters.getRebaseline() > 0 && _warningSamples >= parameters.getRebaseline()) {
+                rebaseline(value);
+                return raised;
+            }
+        }
+        if (cusum != _cusum) {
+            _cusum = cusum;
+            _modified = true;
+        }
+        return raised;
+    }
+
+    private void rebaseline(double value) {
+        _mean = value;
+        _variance = 0;
+        _cusum = 0;
+        _samples = 1;
+        _warning = false;
+        _warningSamples = 0;
+        _modified = true;
+    }
+
+    private void updateBaseline(double alpha, double value) {
+        double delta = value - _mean;
+        double mean = _mean + alpha * delta;
+        double variance = (1 - alpha) * (_variance + alpha * delta * delta);
+        if (mean != _mean || variance != _variance) {
+            _mean = mean;
+            _variance = variance;
+            _modified = true;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+/**
+ * Immutable tuning for a {@link ChangePointDetector}:
+ * <ul>
+ *     <li>alpha: the EWMA smoothing factor used to track the baseline mean and variance,</li>
+ *     <li>slack: the drift, in standard deviations, tolerated before evidence accumulates (CUSUM k),</li>
+ *     <li>threshold: the accumulated evidence, in standard deviations, that raises a warning (CUSUM h),</li>
+ *     <li>warmup: the number of readings used to learn the baseline before any warning can be raised,</li>
+ *     <li>minSigma: a floor for the standard deviation, so a flat-lined sensor does not warn on the smallest step,</li>
+ *     <li>rebaseline: the number of readings a warning may last before the shifted level is accepted as the new
+ *     baseline, or 0 to keep warning until the signal returns to the old baseline.</li>
+ * </ul>
+ */
+public final class ChangePointParameters {
+    public static final int DEFAULT_REBASELINE = 600;
+
+    private final double _alpha;
+    private final double _slack;
+    private final double _threshold;
+    private final int    _warmup;
+    private final double _minSigma;
+    private final int    _rebaseline;
+
+    public ChangePointParameters(double alpha, double slack, double threshold, int warmup, double minSigma) {
+        this(alpha, slack, threshold, warmup, minSigma, DEFAULT_REBASELINE);
+    }
+
+    public ChangePointParameters(double alpha, double slack, double threshold, int warmup, double minSigma, int rebaseline) {
+        if (alpha <= 0 || alpha >= 1) {
+            throw new IllegalArgumentException("alpha must be between 0 and 1.");
+        }
+        if (slack < 0 || threshold <= 0 || warmup < 1 || minSigma <= 0) {
+            throw new IllegalArgumentException("slack must not be negative; threshold, warmup and minSigma must be positive.");
+        }
+        if (rebaseline < 0) {
+            throw new IllegalArgumentException("rebaseline must not be negative.");
+        }
+        _alpha = alpha;
+        _slack = slack;
+        _threshold = threshold;
+        _warmup = warmup;
+        _minSigma = minSigma;
+        _rebaseline = rebaseline;
+    }
+
+    public double getAlpha() {
+        return _alpha;
+    }
+
+    public double getSlack() {
+        return _slack;
+    }
+
+    public double getThreshold() {
+        return _threshold;
+    }
+
+    public int getWarmup() {
+        return _warmup;
+    }
+
+    public double getMinSigma() {
+        return _minSigma;
+    }
+
+    public int getRebaseline() {
+        return _rebaseline;
+    }
+}
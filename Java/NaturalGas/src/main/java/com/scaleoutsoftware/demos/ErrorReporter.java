@@ -0,0 +1,138 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import com.scaleoutsoftware.digitaltwin.core.ProcessingContext;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.logging.Level;
+
+/**
+ * Structured, sampled and rate-limited error logging to the model log.
+ *
+ * Each report is one line of key=value pairs (event, twin, detail, and the number of reports suppressed since the
+ * previous line), followed by the stack trace when there is one. Only every sampleEvery-th report is eligible, and at
+ * most maxPerInterval eligible reports are logged per interval; the rest are counted, so a single misbehaving device
+ * cannot flood the log.
+ */
+public class ErrorReporter {
+    public static final long DEFAULT_INTERVAL_MILLIS = 60000;
+    public static final int DEFAULT_MAX_PER_INTERVAL = 10;
+
+    private final long _intervalMillis;
+    private final int _maxPerInterval;
+    private final int _sampleEvery;
+
+    private long _intervalStart;
+    private int _loggedInInterval;
+    private long _seen;
+    private long _logged;
+    private long _suppressed;
+    private long _suppressedSinceLogged;
+
+    /**
+     * Creates a reporter that logs every report, up to DEFAULT_MAX_PER_INTERVAL a minute.
+     */
+    public ErrorReporter() {
+        this(DEFAULT_INTERVAL_MILLIS, DEFAULT_MAX_PER_INTERVAL, 1);
+    }
+
+    /**
+     * Creates a reporter.
+     * @param intervalMillis the length of a rate limiting interval in milliseconds
+     * @param maxPerInterval the maximum number of reports logged per interval
+     * @param sampleEvery only every sampleEvery-th report is eligible for logging (1 to consider every report)
+     */
+    public ErrorReporter(long intervalMillis, int maxPerInterval, int sampleEvery) {
+        if (intervalMillis <= 0 || maxPerInterval <= 0 || sampleEvery <= 0) {
+            throw new IllegalArgumentException("Interval, rate and sampling must be positive.");
+        }
+        _intervalMillis = intervalMillis;
+        _maxPerInterval = maxPerInterval;
+        _sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Reports an error, logging it unless it is sampled out or over the rate limit.
+     * @param processingContext the context used to write to the model log
+     * @param level the log level
+     * @param event a short, stable name for the kind of error
+     * @param twinId the digital twin id
+     * @param detail a description of this occurrence
+     * @param error the exception, or null
+     * @return true if the report was logged
+     */
+    public boolean report(ProcessingContext processingContext, Level level, String event, String twinId, String detail,
+                          Throwable error) {
+        long suppressed;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (now - _intervalStart >= _intervalMillis) {
+                _intervalStart = now;
+                _loggedInInterval = 0;
+            }
+            if (_seen++ % _sampleEvery != 0 || _loggedInInterval >= _maxPerInterval) {
+                _suppressed++;
+                _suppressedSinceLogged++;
+                return false;
+            }
+            _loggedInInterval++;
+            _logged++;
+            suppressed = _suppressedSinceLogged;
+            _suppressedSinceLogged = 0;
+        }
+        processingContext.logMessage(level, format(event, twinId, detail, suppressed, error));
+        return true;
+    }
+
+    public synchronized long getLoggedCount() {
+        return _logged;
+    }
+
+    public synchronized long getSuppressedCount() {
+        return _suppressed;
+    }
+
+    static String format(String event, String twinId, String detail, long suppressed, Throwable error) {
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        pw.print("event=" + event + " twin=" + quote(twinId) + " detail=" + quote(detail) + " suppressed=" + suppressed);
+        if (error != null) {
+            pw.println();
+            error.printStackTrace(pw);
+        }
+        pw.flush();
+        return sw.toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded, thread-safe holding area for messages that failed validation. The {@link NaturalGasSensorMessageProcessor}
+ * skips such messages so the rest of the batch is still applied, and keeps the most recent ones here for inspection;
+ * once the quarantine is full the oldest entry is dropped.
+ */
+public class MessageQuarantine {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * A quarantined message.
+     */
+    public static class Entry {
+        private final String _twinId;
+        private final NaturalGasSensorMessage _message;
+        private final String _reason;
+        private final long _timestamp;
+
+        Entry(String twinId, NaturalGasSensorMessage message, String reason, long timestamp) {
+            _twinId = twinId;
+            _message = message;
+            _reason = reason;
+            _timestamp = timestamp;
+        }
+
+        public String getTwinId() {
+            return _twinId;
+        }
+
+        public NaturalGasSensorMessage getMessage() {
+            return _message;
+        }
+
+        public String getReason() {
+            return _reason;
+        }
+
+        public long getTimestamp() {
+            return _timestamp;
+        }
+    }
+
+    private final Entry[] _entries;
+    private int _next;
+    private int _size;
+    private long _total;
+
+    /**
+     * Creates a quarantine that keeps the DEFAULT_CAPACITY most recent messages.
+     */
+    public MessageQuarantine() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a quarantine.
+     * @param capacity the number of messages to keep
+     */
+    public MessageQuarantine(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        _entries = new Entry[capacity];
+    }
+
+    /**
+     * Quarantines a message, dropping the oldest entry if the quarantine is full.
+     * @param twinId the digital twin the message was sent to
+     * @param message the rejected message
+     * @param reason why the message was rejected
+     */
+    public synchronized void add(String twinId, NaturalGasSensorMessage message, String reason) {
+        _entries[_next] = new Entry(twinId, message, reason, System.currentTimeMillis());
+        _next = (_next + 1) % _entries.length;
+        _size = Math.min(_size + 1, _entries.length);
+        _total++;
+    }
+
+    public synchronized List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>(_size);
+        for (int i = 0; i < _size; i++) {
+            entries.add(_entries[(_next - _size + i + _entries.length) % _entries.length]);
+        }
+        return entries;
+    }
+
+    public synchronized int size() {
+        return _size;
+    }
+
+    public synchronized long getTotal() {
+        return _total;
+    }
+
+    /**
+     * Removes every entry. The total is kept.
+     */
+    public synchronized void clear() {
+        Arrays.fill(_entries, null);
+        _next = 0;
+        _size = 0;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable table of the threshold rules and change point tuning per meter class. The current table is published
+ * through a single atomic reference: the processor reads one snapshot per batch, and operators can retune meters at
+ * runtime by publishing a new table without redeploying.
+ *
+ * Meter class 0 is the default class; sensors with a class the table does not define use it. A sensor's class is
+ * reported by its meter (see {@link NaturalGasSensorMessage#setMeterClass(int)}).
+ *
+ * The table is a static of this JVM: publish() only affects processors running in the process that calls it. It does
+ * not distribute the table to the other hosts of a deployed model; each host has to publish it, e.g. from its own
+ * startup or configuration code.
+ */
+public final class MeterProfiles {
+    public static final int DEFAULT_METER_CLASS = 0;
+
+    private static final AtomicReference<MeterProfiles> CURRENT = new AtomicReference<>(defaults());
+
+    private final ThresholdRules[] _rules;
+    private final ChangePointParameters[] _changePoints;
+
+    /**
+     * Creates profiles; index i of each array is meter class i.
+     * @param rules the threshold rules per meter class
+     * @param changePoints the change point tuning per meter class
+     */
+    public MeterProfiles(ThresholdRules[] rules, ChangePointParameters[] changePoints) {
+        if (rules.length == 0 || rules.length != changePoints.length) {
+            throw new IllegalArgumentException("Every meter class needs threshold rules and change point parameters.");
+        }
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i] == null || changePoints[i] == null) {
+                throw new IllegalArgumentException("Meter class " + i + " is incomplete.");
+            }
+        }
+        _rules = rules.clone();
+        _changePoints = changePoints.clone();
+    }
+
+    /**
+     * Returns the current profiles. Read once per batch so a batch is evaluated against a single table.
+     */
+    public static MeterProfiles current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Publishes new profiles in this JVM; batches that start afterwards use them.
+     */
+    public static void publish(MeterProfiles profiles) {
+        if (profiles == null) {
+            throw new IllegalArgumentException("profiles must not be null.");
+        }
+        CURRENT.set(profiles);
+    }
+
+    /**
+     * Returns the profiles with only the default meter class, using NaturalGasSensor's built-in limits.
+     */
+    public static MeterProfiles defaults() {
+        return new MeterProfiles(new ThresholdRules[] {NaturalGasSensor.PPM_RULES},
+                new ChangePointParameters[] {NaturalGasSensor.PPM_CHANGE_POINT});
+    }
+
+    public int getMeterClassCount() {
+        return _rules.length;
+    }
+
+    public ThresholdRules getRules(int meterClass) {
+        return _rules[meterClass >= 0 && meterClass < _rules.length ? meterClass : DEFAULT_METER_CLASS];
+    }
+
+    public ChangePointParameters getChangePoint(int meterClass) {
+        return _changePoints[meterClass >= 0 && meterClass < _changePoints.length ? meterClass : DEFAULT_METER_CLASS];
+    }
+}
@@ -28,14 +28,24 @@ package com.scaleoutsoftware.demos;
 public class NaturalGasAlert {
     private String alertMessage;
     private long timestamp;
+    private long sourceTimestamp;   // timestamp of the sensor reading that raised the alert
 
-    NaturalGasAlert(String msg, long timestamp) {
+    NaturalGasAlert(String msg, long timestamp, long sourceTimestamp) {
         alertMessage = msg;
         this.timestamp = timestamp;
+        this.sourceTimestamp = sourceTimestamp;
     }
 
     public String getAlertMessage() {
         return alertMessage;
     }
 
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getSourceTimestamp() {
+        return sourceTimestamp;
+    }
+
 }
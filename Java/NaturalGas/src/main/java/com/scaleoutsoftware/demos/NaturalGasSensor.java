@@ -28,24 +28,48 @@ package com.scaleoutsoftware.demos;
 import com.scaleoutsoftware.digitaltwin.core.DigitalTwinBase;
 
 public class NaturalGasSensor extends DigitalTwinBase {
-    // static constants
+    // static constants, the limits of the default meter class (see MeterProfiles)
     public static final int MAX_READING_ALLOWED_PPM = 50;
     public static final int MAX_READING_ALLOWED_LIMIT_TIME_MINS = 15;
     public static final int	MAX_PPM_READING_SPIKE = 200;
+    public static final ThresholdRules PPM_RULES = ThresholdRules.single(
+            MAX_READING_ALLOWED_PPM, MAX_READING_ALLOWED_LIMIT_TIME_MINS * 60000L, MAX_PPM_READING_SPIKE);
+    // early warning for slow leaks: EWMA baseline over 20 readings, CUSUM k = 0.5 and h = 8 standard deviations
+    public static final ChangePointParameters PPM_CHANGE_POINT = new ChangePointParameters(0.1, 0.5, 8, 20, 2);
+
+    // change mask bits, used by the NaturalGasSensorDeltaCodec
+    public static final int FIELD_LAST_PPM_READING  = 1;
+    public static final int FIELD_LAST_PPM_TIME     = 1 << 1;
+    public static final int FIELD_DETECTOR          = 1 << 2;
+    public static final int FIELD_HISTORY           = 1 << 3;
+    public static final int FIELD_CHANGE_POINT      = 1 << 4;
+    public static final int FIELD_METER_CLASS       = 1 << 5;
+    public static final int FIELD_IDLE              = 1 << 6;
+    public static final int FIELD_REPORTING_INTERVAL = 1 << 7;
+    public static final int ALL_FIELDS              = (1 << 8) - 1;
 
     // state variables
     private int		_lastPpmReading;
     private long	_lastPpmTime;
-    private boolean	_limitExceeded = false;
-    private boolean	_alarmSounded  = false;
-    private long	_limitStartTime;
-    private int		_numEvents;
+    private ThresholdDetector _detector;
+    private PpmHistory  _history;
+    private ChangePointDetector _changePoint;
+    private int         _meterClass;
+    private long        _lastActiveTime;    // timestamp of the last reading with a limit exceeded or an early warning
+    private boolean     _compacted;
+    private int         _reportingInterval; // last interval sent to the meter in milliseconds, 0 if none was sent
+    private long        _version;
+    private transient int _changeMask;
+    private transient long _changeMaskVersion = -1;   // version the changes were committed as by incrementVersion()
 
     public int getLastPpmReading() {
         return _lastPpmReading;
     }
 
     public void setLastPpmReading(int lastPpmReading) {
+        if (_lastPpmReading != lastPpmReading) {
+            _changeMask |= FIELD_LAST_PPM_READING;
+        }
         _lastPpmReading = lastPpmReading;
     }
 
@@ -54,39 +78,171 @@ public class NaturalGasSensor extends DigitalTwinBase {
     }
 
     public void setLastPpmTime(long lastPpmTime) {
+        if (_lastPpmTime != lastPpmTime) {
+            _changeMask |= FIELD_LAST_PPM_TIME;
+        }
         _lastPpmTime = lastPpmTime;
     }
 
-    public boolean isLimitExceeded() {
-        return _limitExceeded;
+    public int getMeterClass() {
+        return _meterClass;
     }
 
-    public void setLimitExceeded(boolean limitExceeded) {
-        _limitExceeded = limitExceeded;
+    public void setMeterClass(int meterClass) {
+        if (_meterClass != meterClass) {
+            _changeMask |= FIELD_METER_CLASS;
+        }
+        _meterClass = meterClass;
     }
 
-    public boolean isAlarmSounded() {
-        return _alarmSounded;
+    public long getLastActiveTime() {
+        return _lastActiveTime;
     }
 
-    public void setAlarmSounded(boolean alarmSounded) {
-        _alarmSounded = alarmSounded;
+    public void setLastActiveTime(long lastActiveTime) {
+        if (_lastActiveTime != lastActiveTime) {
+            _changeMask |= FIELD_IDLE;
+        }
+        _lastActiveTime = lastActiveTime;
     }
 
-    public long getLimitStartTime() {
-        return _limitStartTime;
+    public int getReportingInterval() {
+        return _reportingInterval;
+    }
+
+    public void setReportingInterval(int reportingInterval) {
+        if (_reportingInterval != reportingInterval) {
+            _changeMask |= FIELD_REPORTING_INTERVAL;
+        }
+        _reportingInterval = reportingInterval;
+    }
+
+    public boolean isCompacted() {
+        return _compacted;
+    }
+
+    /**
+     * Collapses an idle sensor to its summary form: the reading history is released and readings are no longer
+     * recorded in it until expand() is called. The last reading, detector states and event counts are kept.
+     */
+    public void compact() {
+        if (!_compacted) {
+            if (_history != null) {
+                _history.clear();
+            }
+            _compacted = true;
+            _changeMask |= FIELD_IDLE;
+        }
+    }
+
+    /**
+     * Resumes recording readings in the history after compact().
+     */
+    public void expand() {
+        if (_compacted) {
+            _compacted = false;
+            _changeMask |= FIELD_IDLE;
+        }
+    }
+
+    void setCompacted(boolean compacted) {
+        _compacted = compacted;
+    }
+
+    public ThresholdDetector getDetector() {
+        if (_detector == null) {
+            _detector = new ThresholdDetector();
+        }
+        return _detector;
+    }
+
+    public boolean isLimitExceeded() {
+        return getDetector().isExceeded(0);
+    }
+
+    public boolean isAlarmSounded() {
+        return getDetector().isAlarmed(0);
     }
 
-    public void setLimitStartTime(long limitStartTime) {
-        _limitStartTime = limitStartTime;
+    public long getLimitStartTime() {
+        return getDetector().getStartTime(0);
     }
 
     public int getNumEvents() {
-        return _numEvents;
+        return getDetector().getEvents(0);
+    }
+
+    public ChangePointDetector getChangePointDetector() {
+        if (_changePoint == null) {
+            _changePoint = new ChangePointDetector();
+        }
+        return _changePoint;
+    }
+
+    public boolean isEarlyWarning() {
+        return _changePoint != null && _changePoint.isWarning();
+    }
+
+    public PpmHistory getHistory() {
+        if (_history == null) {
+            _history = new PpmHistory();
+        }
+        return _history;
+    }
+
+    /**
+     * Returns the fields changed since the last call to clearChanges(), including changes made through the detector
+     * and history.
+     * @return a mask of FIELD_* bits
+     */
+    public int getChangeMask() {
+        int mask = _changeMask;
+        if (_detector != null && _detector.isModified()) {
+            mask |= FIELD_DETECTOR;
+        }
+        if (_history != null && _history.isModified()) {
+            mask |= FIELD_HISTORY;
+        }
+        if (_changePoint != null && _changePoint.isModified()) {
+            mask |= FIELD_CHANGE_POINT;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns true if the change mask holds exactly the changes of the current version. It is false after the sensor
+     * is reloaded, since the changes are not persisted, and after a batch that cleared them but changed nothing.
+     */
+    public boolean isChangeMaskCurrent() {
+        return _changeMaskVersion == _version;
+    }
+
+    public void clearChanges() {
+        _changeMask = 0;
+        _changeMaskVersion = -1;
+        if (_detector != null) {
+            _detector.clearModified();
+        }
+        if (_history != null) {
+            _history.clearChanges();
+        }
+        if (_changePoint != null) {
+            _changePoint.clearModified();
+        }
+    }
+
+    public long getVersion() {
+        return _version;
+    }
+
+    public void incrementVersion() {
+        _version++;
+        _changeMaskVersion = _version;
     }
 
-    public void incrementNumEvents() {
-        _numEvents++;
+    void setVersion(long version) {
+        _version = version;
+        _changeMaskVersion = -1;
     }
 
     @Override
@@ -0,0 +1,162 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a NaturalGasSensor population into a local columnar file. Rows are buffered into a {@link NaturalGasSensorRowGroup}
+ * and each full group is appended to the file with a single sequential channel write.
+ *
+ * File layout: a header (magic, version, row group capacity) followed by row groups. Each row group is prefixed with its
+ * encoded length and carries its min/max last ppm reading so readers can skip groups that cannot match a predicate.
+ */
+public class NaturalGasSensorColumnarWriter implements Closeable {
+    static final int MAGIC = 0x4E475358; // "NGSX"
+    static final int VERSION = 1;
+    public static final int DEFAULT_ROW_GROUP_SIZE = 65536;
+
+    private final FileChannel _channel;
+    private final NaturalGasSensorRowGroup _rowGroup;
+    private long _rowsWritten;
+
+    /**
+     * Creates (or truncates) a columnar file using the default row group size.
+     * @param file the file to write
+     * @throws IOException if the file cannot be opened
+     */
+    public NaturalGasSensorColumnarWriter(Path file) throws IOException {
+        this(file, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Creates (or truncates) a columnar file.
+     * @param file the file to write
+     * @param rowGroupSize the number of rows per row group
+     * @throws IOException if the file cannot be opened
+     */
+    public NaturalGasSensorColumnarWriter(Path file, int rowGroupSize) throws IOException {
+        if (rowGroupSize <= 0) {
+            throw new IllegalArgumentException("rowGroupSize must be positive.");
+        }
+        _rowGroup = new NaturalGasSensorRowGroup(rowGroupSize);
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rowGroupSize);
+            header.flip();
+            writeFully(header);
+        } catch (IOException | RuntimeException e) {
+            closeAfterFailure(e);
+            throw e;
+        }
+    }
+
+    // closes the channel when the constructor fails after opening it, keeping the original failure
+    private void closeAfterFailure(Exception failure) {
+        try {
+            _channel.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Exports every natural gas sensor to a columnar file.
+     * @param sensors the natural gas sensors to export
+     * @param file the file to write
+     * @return the number of rows written
+     * @throws IOException if the file cannot be written
+     */
+    public static long export(Iterable<NaturalGasSensor> sensors, Path file) throws IOException {
+        try (NaturalGasSensorColumnarWriter writer = new NaturalGasSensorColumnarWriter(file)) {
+            for (NaturalGasSensor sensor : sensors) {
+                writer.append(sensor.getId(), sensor);
+            }
+            writer.flush();
+            return writer.getRowsWritten();
+        }
+    }
+
+    /**
+     * Appends one natural gas sensor, writing out the current row group when it is full.
+     * @param id the digital twin id
+     * @param sensor the natural gas sensor
+     * @throws IOException if a row group cannot be written
+     */
+    public void append(String id, NaturalGasSensor sensor) throws IOException {
+        _rowGroup.add(id, sensor);
+        if (_rowGroup.getRowCount() == _rowGroup.getCapacity()) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes out the buffered rows as a (possibly partial) row group.
+     * @throws IOException if the row group cannot be written
+     */
+    public void flush() throws IOException {
+        if (_rowGroup.getRowCount() == 0) {
+            return;
+        }
+        ByteBuffer columns = _rowGroup.encode();
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        length.putInt(columns.remaining());
+        length.flip();
+        writeFully(length);
+        writeFully(columns);
+        _rowsWritten += _rowGroup.getRowCount();
+        _rowGroup.clear();
+    }
+
+    /**
+     * Returns the number of rows written to the file so far.
+     * @return the row count
+     */
+    public long getRowsWritten() {
+        return _rowsWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            _channel.close();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            _channel.write(buffer);
+        }
+    }
+}
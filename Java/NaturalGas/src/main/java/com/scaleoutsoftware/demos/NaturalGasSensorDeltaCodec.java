@@ -0,0 +1,124 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes NaturalGasSensor write-backs as field-level deltas. A delta carries only the fields in the sensor's change
+ * mask; for the reading history only the chunks appended to since the base version are sent. When the receiver is not
+ * exactly one version behind, or the change mask does not belong to the current version (it is not persisted, and a
+ * batch that changes nothing clears it without creating a version), a full snapshot is sent instead.
+ *
+ * Layout: kind byte, [base version varint (deltas only)], version varint, field mask byte, then the masked fields in
+ * bit order. Ints and timestamps are zig-zag varints, doubles are 8 bytes and flags are a byte.
+ *
+ * The message processor does not call this codec: the hosting service writes back whole twins. It is a library for
+ * replicas and stores that want to ship the smaller deltas themselves, using the change mask the processor maintains.
+ */
+public class NaturalGasSensorDeltaCodec {
+    public static final byte KIND_SNAPSHOT = 0;
+    public static final byte KIND_DELTA    = 1;
+
+    /**
+     * Encodes a sensor for a receiver that holds the given version of it.
+     * @param sensor the sensor, with the change mask of its latest version
+     * @param receiverVersion the version the receiver currently holds
+     * @return a delta when the receiver is one version behind and the change mask is current, otherwise a snapshot
+     */
+    public static byte[] encode(NaturalGasSensor sensor, long receiverVersion) {
+        if (receiverVersion != sensor.getVersion() - 1 || !sensor.isChangeMaskCurrent()) {
+            return encodeSnapshot(sensor);
+        }
+        return write(sensor, KIND_DELTA, receiverVersion, sensor.getChangeMask());
+    }
+
+    public static byte[] encodeSnapshot(NaturalGasSensor sensor) {
+        return write(sensor, KIND_SNAPSHOT, 0, NaturalGasSensor.ALL_FIELDS);
+    }
+
+    /**
+     * Applies a snapshot or delta to a sensor.
+     * @param encoded the encoded snapshot or delta
+     * @param target the sensor to update; for a delta it must hold the delta's base version
+     * @throws IllegalStateException if a delta does not apply to the target's version and a snapshot is required
+     * @throws IllegalArgumentException if the encoding is truncated or corrupt
+     */
+    public static void apply(byte[] encoded, NaturalGasSensor target) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(encoded);
+            byte kind = in.get();
+            if (kind == KIND_DELTA) {
+                long baseVersion = VarInts.readVarLong(in);
+                if (baseVersion != target.getVersion()) {
+                    throw new IllegalStateException("Delta applies to version " + baseVersion + " but the target is at version "
+                            + target.getVersion() + "; a snapshot is required.");
+                }
+            } else if (kind != KIND_SNAPSHOT) {
+                throw new IllegalArgumentException("Unknown encoding kind " + kind + ".");
+            }
+            target.setVersion(VarInts.readVarLong(in));
+            int mask = in.get() & 0xFF;
+            if ((mask & NaturalGasSensor.FIELD_LAST_PPM_READING) != 0) target.setLastPpmReading(VarInts.readZigZagInt(in));
+            if ((mask & NaturalGasSensor.FIELD_LAST_PPM_TIME) != 0) target.setLastPpmTime(VarInts.readZigZagLong(in));
+            if ((mask & NaturalGasSensor.FIELD_DETECTOR) != 0) target.getDetector().readFrom(in);
+            if ((mask & NaturalGasSensor.FIELD_HISTORY) != 0) target.getHistory().readChanges(in);
+            if ((mask & NaturalGasSensor.FIELD_CHANGE_POINT) != 0) target.getChangePointDetector().readFrom(in);
+            if ((mask & NaturalGasSensor.FIELD_METER_CLASS) != 0) target.setMeterClass(VarInts.readZigZagInt(in));
+            if ((mask & NaturalGasSensor.FIELD_IDLE) != 0) {
+                target.setLastActiveTime(VarInts.readZigZagLong(in));
+                target.setCompacted(in.get() != 0);
+            }
+            if ((mask & NaturalGasSensor.FIELD_REPORTING_INTERVAL) != 0) target.setReportingInterval(VarInts.readZigZagInt(in));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated natural gas sensor encoding.", e);
+        }
+    }
+
+    private static byte[] write(NaturalGasSensor sensor, byte kind, long baseVersion, int mask) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(kind);
+        if (kind == KIND_DELTA) {
+            VarInts.writeVarLong(out, baseVersion);
+        }
+        VarInts.writeVarLong(out, sensor.getVersion());
+        out.write(mask);
+        if ((mask & NaturalGasSensor.FIELD_LAST_PPM_READING) != 0) VarInts.writeZigZag(out, sensor.getLastPpmReading());
+        if ((mask & NaturalGasSensor.FIELD_LAST_PPM_TIME) != 0) VarInts.writeZigZag(out, sensor.getLastPpmTime());
+        if ((mask & NaturalGasSensor.FIELD_DETECTOR) != 0) sensor.getDetector().writeTo(out);
+        if ((mask & NaturalGasSensor.FIELD_HISTORY) != 0) sensor.getHistory().writeChanges(out, kind == KIND_SNAPSHOT);
+        if ((mask & NaturalGasSensor.FIELD_CHANGE_POINT) != 0) sensor.getChangePointDetector().writeTo(out);
+        if ((mask & NaturalGasSensor.FIELD_METER_CLASS) != 0) VarInts.writeZigZag(out, sensor.getMeterClass());
+        if ((mask & NaturalGasSensor.FIELD_IDLE) != 0) {
+            VarInts.writeZigZag(out, sensor.getLastActiveTime());
+            out.write(sensor.isCompacted() ? 1 : 0);
+        }
+        if ((mask & NaturalGasSensor.FIELD_REPORTING_INTERVAL) != 0) VarInts.writeZigZag(out, sensor.getReportingInterval());
+        return out.toByteArray();
+    }
+}
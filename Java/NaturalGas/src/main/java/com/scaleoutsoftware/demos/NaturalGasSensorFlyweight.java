@@ -0,0 +1,179 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes a NaturalGasSensor stored in a {@link NaturalGasSensorSlabStore} slot in place. The threshold
+ * and change point detector states are loaded into scratch detectors owned by the flyweight, so evaluating readings
+ * does not allocate; call storeDetector() and storeChangePointDetector() to write them back to the slot.
+ */
+public class NaturalGasSensorFlyweight {
+    private final NaturalGasSensorSlabStore _store;
+    private final ThresholdDetector _detector = new ThresholdDetector();
+    private final ChangePointDetector _changePoint = new ChangePointDetector();
+    private ByteBuffer _slab;
+    private int _base;
+    private int _slot = -1;
+
+    NaturalGasSensorFlyweight(NaturalGasSensorSlabStore store) {
+        _store = store;
+    }
+
+    public NaturalGasSensorFlyweight moveTo(int slot) {
+        _slab = _store.slab(slot);
+        _base = NaturalGasSensorSlabStore.offset(slot);
+        _slot = slot;
+        return this;
+    }
+
+    public int getSlot() {
+        return _slot;
+    }
+
+    public String getId() {
+        int length = _slab.getShort(_base + NaturalGasSensorSlabStore.OFFSET_ID_LENGTH);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = _slab.getChar(_base + NaturalGasSensorSlabStore.OFFSET_ID + 2 * i);
+        }
+        return new String(chars);
+    }
+
+
+    void initialize(String id) {
+        for (int i = 0; i < NaturalGasSensorSlabStore.SLOT_SIZE; i++) {
+            _slab.put(_base + i, (byte)0);
+        }
+        _slab.putShort(_base + NaturalGasSensorSlabStore.OFFSET_ID_LENGTH, (short)id.length());
+        for (int i = 0; i < id.length(); i++) {
+            _slab.putChar(_base + NaturalGasSensorSlabStore.OFFSET_ID + 2 * i, id.charAt(i));
+        }
+    }
+
+    public int getLastPpmReading() {
+        return _slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_LAST_PPM);
+    }
+
+    public void setLastPpmReading(int lastPpmReading) {
+        _slab.putInt(_base + NaturalGasSensorSlabStore.OFFSET_LAST_PPM, lastPpmReading);
+    }
+
+    public long getLastPpmTime() {
+        return _slab.getLong(_base + NaturalGasSensorSlabStore.OFFSET_LAST_TIME);
+    }
+
+    public void setLastPpmTime(long lastPpmTime) {
+        _slab.putLong(_base + NaturalGasSensorSlabStore.OFFSET_LAST_TIME, lastPpmTime);
+    }
+
+    public long getVersion() {
+        return _slab.getLong(_base + NaturalGasSensorSlabStore.OFFSET_VERSION);
+    }
+
+    public void incrementVersion() {
+        _slab.putLong(_base + NaturalGasSensorSlabStore.OFFSET_VERSION, getVersion() + 1);
+    }
+
+    public int getMeterClass() {
+        return _slab.get(_base + NaturalGasSensorSlabStore.OFFSET_METER_CLASS) & 0xFF;
+    }
+
+    public void setMeterClass(int meterClass) {
+        if (meterClass < 0 || meterClass > 0xFF) {
+            throw new IllegalArgumentException("Slab-stored sensors support meter classes 0 to 255.");
+        }
+        _slab.put(_base + NaturalGasSensorSlabStore.OFFSET_METER_CLASS, (byte)meterClass);
+    }
+
+    public boolean isLimitExceeded() {
+        return (_slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_EXCEEDED) & 1) != 0;
+    }
+
+    public boolean isAlarmSounded() {
+        return (_slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_ALARMED) & 1) != 0;
+    }
+
+    public int getNumEvents() {
+        return _slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_RULES + 8);
+    }
+
+    /**
+     * Loads the slot's detector state into the flyweight's scratch detector.
+     * @return the scratch detector
+     */
+    public ThresholdDetector loadDetector() {
+        _detector.setMasks(_slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_EXCEEDED),
+                _slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_ALARMED));
+        for (int rule = 0; rule < NaturalGasSensorSlabStore.MAX_RULES; rule++) {
+            int offset = _base + NaturalGasSensorSlabStore.OFFSET_RULES + rule * NaturalGasSensorSlabStore.RULE_SIZE;
+            _detector.setRuleState(rule, _slab.getLong(offset), _slab.getInt(offset + 8));
+        }
+        _detector.clearModified();
+        return _detector;
+    }
+
+    /**
+     * Writes the scratch detector's state back to the slot.
+     */
+    public void storeDetector() {
+        _slab.putInt(_base + NaturalGasSensorSlabStore.OFFSET_EXCEEDED, _detector.getExceededMask());
+        _slab.putInt(_base + NaturalGasSensorSlabStore.OFFSET_ALARMED, _detector.getAlarmedMask());
+        for (int rule = 0; rule < NaturalGasSensorSlabStore.MAX_RULES; rule++) {
+            int offset = _base + NaturalGasSensorSlabStore.OFFSET_RULES + rule * NaturalGasSensorSlabStore.RULE_SIZE;
+            _slab.putLong(offset, _detector.getStartTime(rule));
+            _slab.putInt(offset + 8, _detector.getEvents(rule));
+        }
+    }
+
+    /**
+     * Loads the slot's change point detector state into the flyweight's scratch detector.
+     * @return the scratch detector
+     */
+    public ChangePointDetector loadChangePointDetector() {
+        _changePoint.setState(_slab.getDouble(_base + NaturalGasSensorSlabStore.OFFSET_CP_MEAN),
+                _slab.getDouble(_base + NaturalGasSensorSlabStore.OFFSET_CP_VARIANCE),
+                _slab.getDouble(_base + NaturalGasSensorSlabStore.OFFSET_CP_CUSUM),
+                _slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_CP_SAMPLES),
+                _slab.get(_base + NaturalGasSensorSlabStore.OFFSET_CP_WARNING) != 0,
+                _slab.getInt(_base + NaturalGasSensorSlabStore.OFFSET_CP_WARNING_SAMPLES));
+        _changePoint.clearModified();
+        return _changePoint;
+    }
+
+    /**
+     * Writes the scratch change point detector's state back to the slot.
+     */
+    public void storeChangePointDetector() {
+        _slab.putDouble(_base + NaturalGasSensorSlabStore.OFFSET_CP_MEAN, _changePoint.getMean());
+        _slab.putDouble(_base + NaturalGasSensorSlabStore.OFFSET_CP_VARIANCE, _changePoint.getVariance());
+        _slab.putDouble(_base + NaturalGasSensorSlabStore.OFFSET_CP_CUSUM, _changePoint.getCusum());
+        _slab.putInt(_base + NaturalGasSensorSlabStore.OFFSET_CP_SAMPLES, _changePoint.getSamples());
+        _slab.put(_base + NaturalGasSensorSlabStore.OFFSET_CP_WARNING, _changePoint.isWarning() ? (byte)1 : (byte)0);
+        _slab.putInt(_base + NaturalGasSensorSlabStore.OFFSET_CP_WARNING_SAMPLES, _changePoint.getWarningSamples());
+    }
+}
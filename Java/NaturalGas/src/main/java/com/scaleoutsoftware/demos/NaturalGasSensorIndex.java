@@ -0,0 +1,81 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Secondary indexes over a NaturalGasSensor population, kept up to date by the
+ * {@link NaturalGasSensorMessageProcessor}. Tracks which sensors have sounded an alarm and which are currently over
+ * the ppm limit so those queries don't need to scan every sensor. An index lives in the process that created it and
+ * only sees sensors updated there; see {@link NaturalGasSensorMessageProcessor#setIndex}.
+ */
+public class NaturalGasSensorIndex {
+    private final Set<String> _sensors = new HashSet<>();
+    private final Set<String> _alarmSounded = new HashSet<>();
+    private final Set<String> _limitExceeded = new HashSet<>();
+
+    public synchronized void update(String id, NaturalGasSensor sensor) {
+        _sensors.add(id);
+        updateMembership(_alarmSounded, id, sensor.isAlarmSounded());
+        updateMembership(_limitExceeded, id, sensor.isLimitExceeded());
+    }
+
+    public synchronized void remove(String id) {
+        _sensors.remove(id);
+        _alarmSounded.remove(id);
+        _limitExceeded.remove(id);
+    }
+
+    public synchronized int size() {
+        return _sensors.size();
+    }
+
+    public synchronized int getAlarmSoundedCount() {
+        return _alarmSounded.size();
+    }
+
+    public synchronized int getLimitExceededCount() {
+        return _limitExceeded.size();
+    }
+
+    public synchronized Set<String> getAlarmSoundedSensors() {
+        return new HashSet<>(_alarmSounded);
+    }
+
+    public synchronized Set<String> getLimitExceededSensors() {
+        return new HashSet<>(_limitExceeded);
+    }
+
+    private static void updateMembership(Set<String> set, String id, boolean member) {
+        if (member) {
+            set.add(id);
+        } else {
+            set.remove(id);
+        }
+    }
+}
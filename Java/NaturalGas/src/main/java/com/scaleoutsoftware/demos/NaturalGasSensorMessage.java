@@ -25,20 +25,164 @@
  */
 package com.scaleoutsoftware.demos;
 
+/**
+ * One ppm reading, or a packed batch of readings buffered by the meter. A batch carries its first reading in the
+ * single-reading fields and every later reading as a delta from the one before it, so a batch of n readings costs two
+ * int arrays of n - 1 entries instead of n messages.
+ *
+ * A meter can also report its meter class (see {@link MeterProfiles}), e.g. with its first message after starting;
+ * the sensor keeps the class until a later message reports a different one.
+ */
 public class NaturalGasSensorMessage {
     private int	    _ppmReading;
     private long    _timestamp;
+    private int[]   _timeDeltas;    // milliseconds since the previous reading, batches only
+    private int[]   _readingDeltas; // change in ppm since the previous reading, batches only
+    private Integer _meterClass;    // meter class reported by the meter, null if not reported
 
     public NaturalGasSensorMessage(int reading, long time) {
         _ppmReading = reading;
         _timestamp = time;
     }
 
+    public NaturalGasSensorMessage(int reading, long time, int meterClass) {
+        _ppmReading = reading;
+        _timestamp = time;
+        setMeterClass(meterClass);
+    }
+
+    NaturalGasSensorMessage(int reading, long time, int[] timeDeltas, int[] readingDeltas) {
+        _ppmReading = reading;
+        _timestamp = time;
+        _timeDeltas = timeDeltas;
+        _readingDeltas = readingDeltas;
+        String problem = validate();
+        if (problem != null) {
+            throw new IllegalArgumentException("Invalid natural gas sensor message: " + problem + ".");
+        }
+    }
+
+    /**
+     * Packs readings into one message.
+     * @param times the readings' timestamps in milliseconds, in order
+     * @param readings the ppm readings
+     * @param offset the index of the first reading
+     * @param count the number of readings
+     * @return the batch message
+     */
+    public static NaturalGasSensorMessage batch(long[] times, int[] readings, int offset, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("A batch needs at least one reading.");
+        }
+        NaturalGasSensorMessage msg = new NaturalGasSensorMessage(readings[offset], times[offset]);
+        if (count > 1) {
+            msg._timeDeltas = new int[count - 1];
+            msg._readingDeltas = new int[count - 1];
+            for (int i = 1; i < count; i++) {
+                long delta = times[offset + i] - times[offset + i - 1];
+                if (delta < 0 || delta > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Batched readings must be in time order and less than 24 days apart.");
+                }
+                msg._timeDeltas[i - 1] = (int)delta;
+                msg._readingDeltas[i - 1] = readings[offset + i] - readings[offset + i - 1];
+            }
+        }
+        return msg;
+    }
+
+    /**
+     * Returns the reading, or the first reading of a batch.
+     */
     public int getPpmReading() {
         return _ppmReading;
     }
 
+    /**
+     * Returns the reading's timestamp, or the first reading's timestamp for a batch.
+     */
     public long getTimestamp() {
         return _timestamp;
     }
+
+    public boolean hasMeterClass() {
+        return _meterClass != null;
+    }
+
+    /**
+     * Returns the meter class reported with this message; only meaningful if hasMeterClass() is true.
+     */
+    public int getMeterClass() {
+        return _meterClass == null ? MeterProfiles.DEFAULT_METER_CLASS : _meterClass;
+    }
+
+    public void setMeterClass(int meterClass) {
+        if (meterClass < 0) {
+            throw new IllegalArgumentException("Meter classes are not negative.");
+        }
+        _meterClass = meterClass;
+    }
+
+    public int getReadingCount() {
+        return _timeDeltas == null ? 1 : _timeDeltas.length + 1;
+    }
+
+    /**
+     * Checks the batch fields of a message, which may have been deserialized without going through batch(): the two
+     * delta arrays must be both absent or both present with the same length, and time deltas must not be negative.
+     * @return the reason the message is invalid, or null if it is valid
+     */
+    public String validate() {
+        if (_meterClass != null && _meterClass < 0) {
+            return "negative meter class";
+        }
+        if (_timeDeltas == null && _readingDeltas == null) {
+            return null;
+        }
+        if (_timeDeltas == null || _readingDeltas == null) {
+            return "only one of the delta arrays is present";
+        }
+        if (_timeDeltas.length != _readingDeltas.length) {
+            return "delta arrays have different lengths";
+        }
+        for (int delta : _timeDeltas) {
+            if (delta < 0) {
+                return "negative time delta";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the last reading of a batch, or the reading.
+     */
+    public int getLastPpmReading() {
+        int reading = _ppmReading;
+        if (_readingDeltas != null) {
+            for (int delta : _readingDeltas) {
+                reading += delta;
+            }
+        }
+        return reading;
+    }
+
+    /**
+     * Returns the last reading's timestamp of a batch, or the reading's timestamp.
+     */
+    public long getLastTimestamp() {
+        long time = _timestamp;
+        if (_timeDeltas != null) {
+            for (int delta : _timeDeltas) {
+                time += delta;
+            }
+        }
+        return time;
+    }
+
+    int[] getTimeDeltas() {
+        return _timeDeltas;
+    }
+
+    int[] getReadingDeltas() {
+        return _readingDeltas;
+    }
 }
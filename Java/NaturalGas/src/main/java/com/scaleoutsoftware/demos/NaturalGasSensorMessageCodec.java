@@ -0,0 +1,117 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary wire format for NaturalGasSensorMessages, single readings and packed batches alike.
+ *
+ * Layout: magic byte, version byte, reading count varint, first reading (zig-zag varint), first timestamp (varint),
+ * meter class plus one (varint, 0 if the message has no meter class), then for each later reading the time delta
+ * (varint) and the reading delta (zig-zag varint). A 1 Hz batch costs about three bytes per reading. Version 1
+ * messages, which have no meter class field, are still decoded.
+ */
+public class NaturalGasSensorMessageCodec implements MessageCodec<NaturalGasSensorMessage> {
+    public static final byte MAGIC   = (byte)0xA8;  // never the first byte of UTF-8 JSON
+    public static final byte VERSION = 2;
+
+    /**
+     * Creates a registry that decodes both this format and JSON.
+     */
+    public static MessageCodecRegistry<NaturalGasSensorMessage> registry() {
+        return new MessageCodecRegistry<>(new JsonMessageCodec<>(NaturalGasSensorMessage.class))
+                .register(MAGIC, new NaturalGasSensorMessageCodec());
+    }
+
+    @Override
+    public byte[] encode(NaturalGasSensorMessage message) {
+        int count = message.getReadingCount();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + 2 * count);
+        out.write(MAGIC);
+        out.write(VERSION);
+        VarInts.writeVarLong(out, count);
+        VarInts.writeVarLong(out, VarInts.zigZag(message.getPpmReading()));
+        VarInts.writeVarLong(out, message.getTimestamp());
+        VarInts.writeVarLong(out, message.hasMeterClass() ? message.getMeterClass() + 1L : 0);
+        int[] timeDeltas = message.getTimeDeltas();
+        int[] readingDeltas = message.getReadingDeltas();
+        for (int i = 0; i < count - 1; i++) {
+            VarInts.writeVarLong(out, timeDeltas[i]);
+            VarInts.writeVarLong(out, VarInts.zigZag(readingDeltas[i]));
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public NaturalGasSensorMessage decode(byte[] bytes) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            if (in.get() != MAGIC) {
+                throw new IllegalArgumentException("Not a binary natural gas sensor message.");
+            }
+            byte version = in.get();
+            if (version != 1 && version != VERSION) {
+                throw new IllegalArgumentException("Unsupported natural gas sensor message version " + version + ".");
+            }
+            long count = VarInts.readVarLong(in);
+            if (count < 1 || count - 1 > in.remaining() / 2) {
+                throw new IllegalArgumentException("Invalid reading count " + count + ".");
+            }
+            int reading = VarInts.readZigZagInt(in);
+            long time = VarInts.readVarLong(in);
+            long meterClass = version == 1 ? 0 : VarInts.readVarLong(in);
+            if (meterClass < 0 || meterClass - 1 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid meter class " + (meterClass - 1) + ".");
+            }
+            NaturalGasSensorMessage message;
+            if (count == 1) {
+                message = new NaturalGasSensorMessage(reading, time);
+            } else {
+                int[] timeDeltas = new int[(int)count - 1];
+                int[] readingDeltas = new int[(int)count - 1];
+                for (int i = 0; i < timeDeltas.length; i++) {
+                    // time deltas are written unsigned, so anything past an int is a negative or corrupt delta
+                    long timeDelta = VarInts.readVarLong(in);
+                    if (timeDelta < 0 || timeDelta > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("Invalid time delta " + timeDelta + ".");
+                    }
+                    timeDeltas[i] = (int)timeDelta;
+                    readingDeltas[i] = VarInts.readZigZagInt(in);
+                }
+                message = new NaturalGasSensorMessage(reading, time, timeDeltas, readingDeltas);
+            }
+            if (meterClass > 0) {
+                message.setMeterClass((int)(meterClass - 1));
+            }
+            return message;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated natural gas sensor message.", e);
+        }
+    }
+}
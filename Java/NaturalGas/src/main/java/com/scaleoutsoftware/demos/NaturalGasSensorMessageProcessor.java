@@ -31,39 +31,310 @@ import com.scaleoutsoftware.digitaltwin.core.ProcessingContext;
 import com.scaleoutsoftware.digitaltwin.core.ProcessingResult;
 
 import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
 
 public class NaturalGasSensorMessageProcessor extends MessageProcessor<NaturalGasSensor, NaturalGasSensorMessage> {
+    static final String ALERT_MESSAGE = "Warning: dangerous air quality.";
+    static final String EARLY_WARNING_MESSAGE = "Early warning: gas concentration is rising.";
+
+    // optional secondary index, local to this process
+    private transient NaturalGasSensorIndex _index;
+    // reading to alert latency for this model; created on first use
+    private transient volatile LatencyRecorder _latency;
+    // quiet period after which a sensor's history is released, 0 to disable idle compaction
+    private transient long _idleCompactionMillis;
+    // skip threshold evaluation for runs of in-band readings
+    private transient boolean _coalesce;
+    // recommends each meter's reporting interval, null to leave meters at their own rate
+    private transient ReportingRatePolicy _ratePolicy;
+    // messages that failed validation and were skipped; created on first use
+    private transient volatile MessageQuarantine _quarantine;
+    // rate-limited logging of rejected messages and processing failures; created on first use
+    private transient volatile ErrorReporter _errorReporter;
+
+    /**
+     * Attaches a secondary index that is updated after every message that changes a sensor. The index is transient:
+     * it is not serialized with the processor, so a processor deployed to the service starts without one and the index
+     * must be attached in each process that hosts the model. It only covers the sensors that process has updated since
+     * the index was attached; it is not a store-wide view and is rebuilt from scratch after a restart.
+     * @param index the index to maintain, or null to stop maintaining one
+     */
+    public void setIndex(NaturalGasSensorIndex index) {
+        _index = index;
+    }
+
+    public NaturalGasSensorIndex getIndex() {
+        return _index;
+    }
+
+    /**
+     * Enables idle compaction: once a sensor's readings have been below its limits without an early warning for the
+     * quiet period (in reading time), its history is released and in-band readings are no longer recorded. The history
+     * resumes with the next reading that exceeds a limit or raises an early warning.
+     * @param idleCompactionMillis the quiet period in milliseconds, or 0 to disable idle compaction
+     */
+    public void setIdleCompactionMillis(long idleCompactionMillis) {
+        _idleCompactionMillis = idleCompactionMillis;
+    }
+
+    public long getIdleCompactionMillis() {
+        return _idleCompactionMillis;
+    }
+
+    /**
+     * Enables coalescing: once a sensor's readings are back in band (no rule exceeded), the following in-band readings
+     * are not run through the threshold rules, since they cannot change the detector's state. The run is evaluated
+     * once, by the reading that ended the exceedance. Readings are still scored by the change-point detector, whose
+     * baseline depends on every value, and recorded in the history, so alerts, warnings and history are unchanged.
+     * @param coalesce true to coalesce runs of in-band readings
+     */
+    public void setCoalescing(boolean coalesce) {
+        _coalesce = coalesce;
+    }
+
+    public boolean isCoalescing() {
+        return _coalesce;
+    }
+
+    /**
+     * Enables adaptive rate control: after each batch the policy recommends a reporting interval from the sensor's
+     * state, and when it changes a {@link RateControlCommand} is sent to the meter through the data source. Not applied
+     * to slab-stored sensors.
+     * @param ratePolicy the policy, or null to disable rate control
+     */
+    public void setReportingRatePolicy(ReportingRatePolicy ratePolicy) {
+        _ratePolicy = ratePolicy;
+    }
+
+    public ReportingRatePolicy getReportingRatePolicy() {
+        return _ratePolicy;
+    }
+
+    public void setQuarantine(MessageQuarantine quarantine) {
+        _quarantine = quarantine;
+    }
+
+    /**
+     * Returns the quarantine that receives messages that fail validation. Invalid messages are skipped so the rest of
+     * their batch is still applied.
+     */
+    public MessageQuarantine getQuarantine() {
+        MessageQuarantine quarantine = _quarantine;
+        if (quarantine == null) {
+            synchronized (this) {
+                quarantine = _quarantine;
+                if (quarantine == null) {
+                    quarantine = new MessageQuarantine();
+                    _quarantine = quarantine;
+                }
+            }
+        }
+        return quarantine;
+    }
+
+    public void setErrorReporter(ErrorReporter errorReporter) {
+        _errorReporter = errorReporter;
+    }
+
+    public ErrorReporter getErrorReporter() {
+        ErrorReporter errorReporter = _errorReporter;
+        if (errorReporter == null) {
+            synchronized (this) {
+                errorReporter = _errorReporter;
+                if (errorReporter == null) {
+                    errorReporter = new ErrorReporter();
+                    _errorReporter = errorReporter;
+                }
+            }
+        }
+        return errorReporter;
+    }
+
+    public LatencyRecorder getLatencyRecorder() {
+        LatencyRecorder latency = _latency;
+        if (latency == null) {
+            synchronized (this) {
+                latency = _latency;
+                if (latency == null) {
+                    latency = new LatencyRecorder();
+                    _latency = latency;
+                }
+            }
+        }
+        return latency;
+    }
+
     @Override
     public ProcessingResult processMessages(ProcessingContext processingContext,
                                             NaturalGasSensor naturalGasSensor,
                                             Iterable<NaturalGasSensorMessage> messages) throws Exception {
+        try {
+            naturalGasSensor.clearChanges();
+            MeterProfiles profiles = MeterProfiles.current();
+            ThresholdRules rules = profiles.getRules(naturalGasSensor.getMeterClass());
+            ChangePointParameters changePointParameters = profiles.getChangePoint(naturalGasSensor.getMeterClass());
+            ThresholdDetector detector = naturalGasSensor.getDetector();
+            ChangePointDetector changePoint = naturalGasSensor.getChangePointDetector();
+            for (NaturalGasSensorMessage msg : messages)
+            {
+                String problem = validate(msg);
+                if (problem != null) {
+                    reject(processingContext, naturalGasSensor.getId(), msg, problem);
+                    continue;
+                }
+                if (msg.hasMeterClass() && msg.getMeterClass() != naturalGasSensor.getMeterClass()) {
+                    naturalGasSensor.setMeterClass(msg.getMeterClass());
+                    rules = profiles.getRules(msg.getMeterClass());
+                    changePointParameters = profiles.getChangePoint(msg.getMeterClass());
+                }
+                processReadings(processingContext, msg, rules, changePointParameters, detector, changePoint, naturalGasSensor);
+                naturalGasSensor.setLastPpmReading(msg.getLastPpmReading());
+                naturalGasSensor.setLastPpmTime(msg.getLastTimestamp());
+            }
+            if (_idleCompactionMillis > 0 && !naturalGasSensor.isCompacted()
+                    && naturalGasSensor.getLastPpmTime() - naturalGasSensor.getLastActiveTime() >= _idleCompactionMillis) {
+                naturalGasSensor.compact();
+            }
+            if (_ratePolicy != null) {
+                int interval = _ratePolicy.recommend(naturalGasSensor, rules);
+                if (interval != naturalGasSensor.getReportingInterval()) {
+                    naturalGasSensor.setReportingInterval(interval);
+                    processingContext.sendToDataSource(new RateControlCommand(interval).encode());
+                }
+            }
+            if (naturalGasSensor.getChangeMask() == 0) {
+                return ProcessingResult.NoUpdate;
+            }
+            naturalGasSensor.incrementVersion();
+            if (_index != null) {
+                _index.update(naturalGasSensor.getId(), naturalGasSensor);
+            }
+            return ProcessingResult.UpdateDigitalTwin;
+        } catch (Exception e) {
+            // log the full exception, rate limited so a failing sensor cannot flood the model log
+            getErrorReporter().report(processingContext, Level.SEVERE, "processing_failed", naturalGasSensor.getId(),
+                    e.toString(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Processes messages for a sensor held in a {@link NaturalGasSensorSlabStore}, reading and writing the slot in
+     * place. The reading history is not kept for slab-stored sensors.
+     */
+    public ProcessingResult processMessages(ProcessingContext processingContext,
+                                            NaturalGasSensorFlyweight sensor,
+                                            Iterable<NaturalGasSensorMessage> messages) throws Exception {
+        MeterProfiles profiles = MeterProfiles.current();
+        ThresholdRules rules = slabRules(profiles, sensor.getMeterClass());
+        ChangePointParameters changePointParameters = profiles.getChangePoint(sensor.getMeterClass());
+        ThresholdDetector detector = sensor.loadDetector();
+        ChangePointDetector changePoint = sensor.loadChangePointDetector();
+        boolean modified = false;
         for (NaturalGasSensorMessage msg : messages)
         {
-            naturalGasSensor.setLastPpmReading(msg.getPpmReading());
-            naturalGasSensor.setLastPpmTime(msg.getTimestamp());
+            String problem = validate(msg);
+            if (problem != null) {
+                reject(processingContext, sensor.getId(), msg, problem);
+                continue;
+            }
+            if (msg.hasMeterClass() && msg.getMeterClass() != sensor.getMeterClass()) {
+                rules = slabRules(profiles, msg.getMeterClass());
+                changePointParameters = profiles.getChangePoint(msg.getMeterClass());
+                sensor.setMeterClass(msg.getMeterClass());
+                modified = true;
+            }
+            processReadings(processingContext, msg, rules, changePointParameters, detector, changePoint, null);
+            int reading = msg.getLastPpmReading();
+            long time = msg.getLastTimestamp();
+            modified |= sensor.getLastPpmReading() != reading || sensor.getLastPpmTime() != time;
+            sensor.setLastPpmReading(reading);
+            sensor.setLastPpmTime(time);
+        }
+        if (!modified && !detector.isModified() && !changePoint.isModified()) {
+            return ProcessingResult.NoUpdate;
+        }
+        sensor.storeDetector();
+        sensor.storeChangePointDetector();
+        sensor.incrementVersion();
+        return ProcessingResult.UpdateDigitalTwin;
+    }
 
-            if (msg.getPpmReading() > NaturalGasSensor.MAX_READING_ALLOWED_PPM) // handles 50+
+    private static ThresholdRules slabRules(MeterProfiles profiles, int meterClass) {
+        ThresholdRules rules = profiles.getRules(meterClass);
+        if (rules.getRuleCount() > NaturalGasSensorSlabStore.MAX_RULES) {
+            throw new IllegalStateException("Slab-stored sensors support up to " + NaturalGasSensorSlabStore.MAX_RULES + " rules.");
+        }
+        return rules;
+    }
+
+    /**
+     * Runs a single reading, or every reading of a packed batch rebuilt from its deltas, through the threshold and
+     * change-point detectors. Within a batch, each distinct exceedance sends one alert (when its rule first fires) and
+     * each change point one early warning, rather than one per reading. The sensor is null for slab-stored sensors,
+     * which keep no history.
+     */
+    private void processReadings(ProcessingContext processingContext, NaturalGasSensorMessage msg,
+                                 ThresholdRules rules, ChangePointParameters changePointParameters,
+                                 ThresholdDetector detector, ChangePointDetector changePoint,
+                                 NaturalGasSensor naturalGasSensor) {
+        int[] timeDeltas = msg.getTimeDeltas();
+        int[] readingDeltas = msg.getReadingDeltas();
+        long time = msg.getTimestamp();
+        int reading = msg.getPpmReading();
+        // rules that have already alerted for their current exceedance in this message
+        int alerted = 0;
+        for (int i = 0, count = msg.getReadingCount(); ; )
+        {
+            int fired = inBand(rules, detector, reading) ? 0 : detector.process(rules, time, reading);
+            if ((fired & ~alerted) != 0)
             {
-                if (!naturalGasSensor.isLimitExceeded())
-                {
-                    naturalGasSensor.setLimitExceeded(true);
-                    naturalGasSensor.setLimitStartTime(msg.getTimestamp());
-                    naturalGasSensor.incrementNumEvents();
+                sendAlert(processingContext, ALERT_MESSAGE, time);
+                //processingContext.sendToDigitalTwin("NaturalGasMeterManager", "23", "");
+            }
+            alerted = (alerted | fired) & detector.getExceededMask();
+            if (changePoint.process(changePointParameters, reading) && !detector.isExceeded(0))
+            {
+                sendAlert(processingContext, EARLY_WARNING_MESSAGE, time);
+            }
+            if (naturalGasSensor != null) {
+                if (detector.getExceededMask() != 0 || changePoint.isWarning()) {
+                    naturalGasSensor.setLastActiveTime(time);
+                    naturalGasSensor.expand();
+                } else if (naturalGasSensor.getLastActiveTime() == 0) {
+                    naturalGasSensor.setLastActiveTime(time);
                 }
-                if ((naturalGasSensor.getLastPpmTime() - naturalGasSensor.getLimitStartTime()) > NaturalGasSensor.MAX_READING_ALLOWED_LIMIT_TIME_MINS ||
-                        naturalGasSensor.getLastPpmReading() >= NaturalGasSensor.MAX_PPM_READING_SPIKE)
-                {
-                    naturalGasSensor.setAlarmSounded(true);
-                    Gson gson = new Gson();
-                    NaturalGasAlert alert = new NaturalGasAlert("Warning: dangerous air quality.", System.currentTimeMillis());
-                    String serializedMsg = gson.toJson(alert);
-                    processingContext.sendToDataSource(serializedMsg.getBytes(StandardCharsets.UTF_8));
-                    //processingContext.sendToDigitalTwin("NaturalGasMeterManager", "23", "");
+                if (!naturalGasSensor.isCompacted()) {
+                    naturalGasSensor.getHistory().append(time, reading);
                 }
-            } else if(naturalGasSensor.isLimitExceeded()) {
-                naturalGasSensor.setLimitExceeded(false);
             }
+            if (++i == count) {
+                break;
+            }
+            time += timeDeltas[i - 1];
+            reading += readingDeltas[i - 1];
         }
-        return ProcessingResult.UpdateDigitalTwin;
+    }
+
+    static String validate(NaturalGasSensorMessage msg) {
+        return msg == null ? "null message" : msg.validate();
+    }
+
+    private void reject(ProcessingContext processingContext, String id, NaturalGasSensorMessage msg, String problem) {
+        getQuarantine().add(id, msg, problem);
+        getErrorReporter().report(processingContext, Level.WARNING, "invalid_message", id, problem, null);
+    }
+
+    private boolean inBand(ThresholdRules rules, ThresholdDetector detector, int reading) {
+        return _coalesce && detector.getExceededMask() == 0 && reading <= rules.getMinLimit();
+    }
+
+    private void sendAlert(ProcessingContext processingContext, String message, long sourceTimestamp) {
+        long now = System.currentTimeMillis();
+        Gson gson = new Gson();
+        NaturalGasAlert alert = new NaturalGasAlert(message, now, sourceTimestamp);
+        String serializedMsg = gson.toJson(alert);
+        processingContext.sendToDataSource(serializedMsg.getBytes(StandardCharsets.UTF_8));
+        getLatencyRecorder().recordSince(sourceTimestamp, now);
     }
 }
@@ -0,0 +1,145 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A chunk of NaturalGasSensor rows stored column by column, one primitive array per field.
+ */
+public class NaturalGasSensorRowGroup {
+    // ids are stored with an unsigned 16-bit length prefix
+    public static final int MAX_ID_BYTES = 0xFFFF;
+
+    public final String[] ids;
+    public final int[] lastPpmReadings;
+    public final long[] lastPpmTimes;
+    public final boolean[] limitExceeded;
+    public final boolean[] alarmSounded;
+    public final long[] limitStartTimes;
+    public final int[] numEvents;
+
+    private int _rowCount;
+    private int _minPpmReading = Integer.MAX_VALUE;
+    private int _maxPpmReading = Integer.MIN_VALUE;
+
+    public NaturalGasSensorRowGroup(int capacity) {
+        ids = new String[capacity];
+        lastPpmReadings = new int[capacity];
+        lastPpmTimes = new long[capacity];
+        limitExceeded = new boolean[capacity];
+        alarmSounded = new boolean[capacity];
+        limitStartTimes = new long[capacity];
+        numEvents = new int[capacity];
+    }
+
+    public int getRowCount() {
+        return _rowCount;
+    }
+
+    public int getCapacity() {
+        return ids.length;
+    }
+
+    public int getMinPpmReading() {
+        return _minPpmReading;
+    }
+
+    public int getMaxPpmReading() {
+        return _maxPpmReading;
+    }
+
+    public void add(String id, NaturalGasSensor sensor) {
+        // a UTF-16 char never takes more than 3 UTF-8 bytes, so short ids need no encoding to check
+        if (id.length() > MAX_ID_BYTES / 3 && id.getBytes(StandardCharsets.UTF_8).length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Sensor id is longer than " + MAX_ID_BYTES + " UTF-8 bytes.");
+        }
+        int row = _rowCount++;
+        ids[row] = id;
+        lastPpmReadings[row] = sensor.getLastPpmReading();
+        lastPpmTimes[row] = sensor.getLastPpmTime();
+        limitExceeded[row] = sensor.isLimitExceeded();
+        alarmSounded[row] = sensor.isAlarmSounded();
+        limitStartTimes[row] = sensor.getLimitStartTime();
+        numEvents[row] = sensor.getNumEvents();
+        _minPpmReading = Math.min(_minPpmReading, sensor.getLastPpmReading());
+        _maxPpmReading = Math.max(_maxPpmReading, sensor.getLastPpmReading());
+    }
+
+    public void clear() {
+        _rowCount = 0;
+        _minPpmReading = Integer.MAX_VALUE;
+        _maxPpmReading = Integer.MIN_VALUE;
+    }
+
+    ByteBuffer encode() {
+        byte[][] encodedIds = new byte[_rowCount][];
+        int size = 3 * Integer.BYTES;
+        for (int row = 0; row < _rowCount; row++) {
+            encodedIds[row] = ids[row].getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + encodedIds[row].length;
+        }
+        size += _rowCount * (2 * Integer.BYTES + 2 * Long.BYTES + 2);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(_rowCount);
+        buffer.putInt(_minPpmReading);
+        buffer.putInt(_maxPpmReading);
+        for (int row = 0; row < _rowCount; row++) {
+            buffer.putShort((short)encodedIds[row].length);
+            buffer.put(encodedIds[row]);
+        }
+        for (int row = 0; row < _rowCount; row++) buffer.putInt(lastPpmReadings[row]);
+        for (int row = 0; row < _rowCount; row++) buffer.putLong(lastPpmTimes[row]);
+        for (int row = 0; row < _rowCount; row++) buffer.put(limitExceeded[row] ? (byte)1 : (byte)0);
+        for (int row = 0; row < _rowCount; row++) buffer.put(alarmSounded[row] ? (byte)1 : (byte)0);
+        for (int row = 0; row < _rowCount; row++) buffer.putLong(limitStartTimes[row]);
+        for (int row = 0; row < _rowCount; row++) buffer.putInt(numEvents[row]);
+        buffer.flip();
+        return buffer;
+    }
+
+    static NaturalGasSensorRowGroup decode(ByteBuffer buffer) {
+        int rowCount = buffer.getInt();
+        NaturalGasSensorRowGroup group = new NaturalGasSensorRowGroup(rowCount);
+        group._rowCount = rowCount;
+        group._minPpmReading = buffer.getInt();
+        group._maxPpmReading = buffer.getInt();
+        for (int row = 0; row < rowCount; row++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            group.ids[row] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        for (int row = 0; row < rowCount; row++) group.lastPpmReadings[row] = buffer.getInt();
+        for (int row = 0; row < rowCount; row++) group.lastPpmTimes[row] = buffer.getLong();
+        for (int row = 0; row < rowCount; row++) group.limitExceeded[row] = buffer.get() != 0;
+        for (int row = 0; row < rowCount; row++) group.alarmSounded[row] = buffer.get() != 0;
+        for (int row = 0; row < rowCount; row++) group.limitStartTimes[row] = buffer.getLong();
+        for (int row = 0; row < rowCount; row++) group.numEvents[row] = buffer.getInt();
+        return group;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap storage for large local NaturalGasSensor populations. Each sensor occupies a fixed-size slot in a direct
+ * ByteBuffer slab, found through an open-addressing map of id hashes to slots held in primitive arrays, and is read
+ * and written in place through a {@link NaturalGasSensorFlyweight}.
+ *
+ * Slots hold the last reading, the version, the threshold detector state for up to MAX_RULES rules and the change
+ * point detector state. The compressed reading history is variable-length and is not kept in the store.
+ *
+ * find() and flyweights positioned on different slots may be used concurrently. Adding sensors with findOrAdd() is
+ * not thread-safe and must not run concurrently with any other access to the store.
+ */
+public class NaturalGasSensorSlabStore {
+    public static final int MAX_ID_LENGTH = 24;
+    public static final int MAX_RULES = 4;
+
+    static final int OFFSET_ID_LENGTH   = 0;    // short
+    static final int OFFSET_ID          = 2;    // MAX_ID_LENGTH chars
+    static final int OFFSET_LAST_PPM    = 52;   // int
+    static final int OFFSET_LAST_TIME   = 56;   // long
+    static final int OFFSET_VERSION     = 64;   // long
+    static final int OFFSET_EXCEEDED    = 72;   // int
+    static final int OFFSET_ALARMED     = 76;   // int
+    static final int OFFSET_RULES       = 80;   // MAX_RULES entries
+    static final int RULE_SIZE          = 12;   // long start time, int events
+    static final int OFFSET_CP_MEAN     = OFFSET_RULES + MAX_RULES * RULE_SIZE;  // double
+    static final int OFFSET_CP_VARIANCE = OFFSET_CP_MEAN + 8;                    // double
+    static final int OFFSET_CP_CUSUM    = OFFSET_CP_MEAN + 16;                   // double
+    static final int OFFSET_CP_SAMPLES  = OFFSET_CP_MEAN + 24;                   // int
+    static final int OFFSET_CP_WARNING  = OFFSET_CP_MEAN + 28;                   // byte
+    static final int OFFSET_METER_CLASS = OFFSET_CP_MEAN + 29;                   // byte
+    static final int OFFSET_CP_WARNING_SAMPLES = OFFSET_CP_MEAN + 32;            // int
+    // rounded up to a multiple of 8 so the longs and doubles of every slot stay 8-byte aligned
+    static final int SLOT_SIZE          = (OFFSET_CP_WARNING_SAMPLES + 4 + 7) & ~7;
+
+    private static final int SLOTS_PER_SLAB = 1 << 16;
+
+    private final ByteBuffer[] _slabs;
+    private final int _capacity;
+    private int _size;
+
+    // id -> slot map: parallel arrays of id hashes and slot numbers plus one (0 marks an empty entry)
+    private final int[] _hashes;
+    private final int[] _slots;
+    private final int _mask;
+
+    public NaturalGasSensorSlabStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+        _capacity = capacity;
+        _slabs = new ByteBuffer[(capacity + SLOTS_PER_SLAB - 1) / SLOTS_PER_SLAB];
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        _hashes = new int[tableSize];
+        _slots = new int[tableSize];
+        _mask = tableSize - 1;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * Creates a reusable flyweight over this store's slots. Use one per thread.
+     * @return the flyweight
+     */
+    public NaturalGasSensorFlyweight flyweight() {
+        return new NaturalGasSensorFlyweight(this);
+    }
+
+    /**
+     * Returns the slot of a sensor.
+     * @param id the digital twin id
+     * @return the slot, or -1 if the sensor is not in the store
+     */
+    public int find(String id) {
+        int hash = hash(id);
+        for (int i = hash & _mask; _slots[i] != 0; i = (i + 1) & _mask) {
+            if (_hashes[i] == hash && idEquals(_slots[i] - 1, id)) {
+                return _slots[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of a sensor, adding a zeroed sensor if it is not in the store.
+     * @param id the digital twin id
+     * @return the slot
+     */
+    public int findOrAdd(String id) {
+        if (id.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Ids are limited to " + MAX_ID_LENGTH + " characters.");
+        }
+        int hash = hash(id);
+        int i = hash & _mask;
+        for (; _slots[i] != 0; i = (i + 1) & _mask) {
+            if (_hashes[i] == hash && idEquals(_slots[i] - 1, id)) {
+                return _slots[i] - 1;
+            }
+        }
+        if (_size == _capacity) {
+            throw new IllegalStateException("The slab store is full (" + _capacity + " sensors).");
+        }
+        int slot = _size;
+        int index = slot / SLOTS_PER_SLAB;
+        if (_slabs[index] == null) {
+            int slots = Math.min(SLOTS_PER_SLAB, _capacity - index * SLOTS_PER_SLAB);
+            _slabs[index] = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        }
+        _size++;
+        _hashes[i] = hash;
+        _slots[i] = slot + 1;
+        new NaturalGasSensorFlyweight(this).moveTo(slot).initialize(id);
+        return slot;
+    }
+
+    ByteBuffer slab(int slot) {
+        if (slot < 0 || slot >= _size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " is not in use.");
+        }
+        // allocated by findOrAdd() when the slab's first slot was added
+        return _slabs[slot / SLOTS_PER_SLAB];
+    }
+
+    private boolean idEquals(int slot, String id) {
+        ByteBuffer slab = slab(slot);
+        int base = offset(slot);
+        int length = slab.getShort(base + OFFSET_ID_LENGTH);
+        if (length != id.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (slab.getChar(base + OFFSET_ID + 2 * i) != id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int offset(int slot) {
+        return (slot % SLOTS_PER_SLAB) * SLOT_SIZE;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,415 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compressed history of a sensor's ppm readings, stored inside the digital twin.
+ *
+ * Readings are appended to fixed-size chunks. Within a chunk timestamps are delta-of-delta encoded and readings are
+ * delta encoded, both as zig-zag varints, and runs of readings that repeat both the previous interval and the previous
+ * value collapse into a single run-length token. A meter reporting a steady value at a fixed rate costs a couple of
+ * bytes per run instead of 12 bytes per reading. Full chunks are sealed (trimmed to their encoded length) and the
+ * oldest chunk is dropped once MAX_CHUNKS is reached, so the history is bounded.
+ */
+public class PpmHistory {
+    public static final int CHUNK_SIZE = 512;
+    public static final int MAX_CHUNKS = 16;
+
+    // token tags, stored in the low two bits of each token's leading varint
+    private static final int TAG_REPEAT       = 0;
+    private static final int TAG_TIME_ONLY    = 1;
+    private static final int TAG_TIME_READING = 2;
+
+    // worst case: a pending run token plus a token with a 64-bit delta-of-delta and a 32-bit reading delta
+    private static final int MAX_APPEND_BYTES = 5 + 10 + 5;
+    private static final int INITIAL_CHUNK_CAPACITY = 32;
+
+    private List<Chunk> _chunks = new ArrayList<>();
+    // sequence number of the oldest chunk, incremented as chunks are dropped
+    private long _firstSequence;
+    // sequence number of the oldest chunk changed since the last call to clearChanges()
+    private transient long _dirtySequence = Long.MAX_VALUE;
+
+    static class Chunk {
+        private long    _startTime;
+        private long    _endTime;
+        private int     _count;
+        private byte[]  _data;
+        private int     _length;
+        // encoder state
+        private long    _prevTime;
+        private long    _prevDelta;
+        private int     _prevReading;
+        private int     _pendingRun;
+
+        Chunk(long startTime) {
+            _startTime = startTime;
+            _endTime = startTime;
+            _prevTime = startTime;
+            _data = new byte[INITIAL_CHUNK_CAPACITY];
+        }
+
+        void writeTo(ByteArrayOutputStream out) {
+            VarInts.writeZigZag(out, _startTime);
+            VarInts.writeZigZag(out, _endTime);
+            VarInts.writeZigZag(out, _count);
+            VarInts.writeZigZag(out, _length);
+            out.write(_data, 0, _length);
+            VarInts.writeZigZag(out, _prevTime);
+            VarInts.writeZigZag(out, _prevDelta);
+            VarInts.writeZigZag(out, _prevReading);
+            VarInts.writeZigZag(out, _pendingRun);
+        }
+
+        static Chunk readFrom(ByteBuffer in, boolean active) {
+            Chunk chunk = new Chunk(VarInts.readZigZagLong(in));
+            chunk._endTime = VarInts.readZigZagLong(in);
+            chunk._count = VarInts.readZigZagInt(in);
+            chunk._length = VarInts.readZigZagInt(in);
+            if (chunk._count < 0 || chunk._length < 0 || chunk._length > CHUNK_SIZE) {
+                throw new IllegalArgumentException("Corrupt history chunk: " + chunk._count + " readings in "
+                        + chunk._length + " bytes.");
+            }
+            // the active chunk keeps room to grow, sealed chunks are exactly their encoded length
+            chunk._data = new byte[active ? Math.max(INITIAL_CHUNK_CAPACITY, chunk._length) : chunk._length];
+            in.get(chunk._data, 0, chunk._length);
+            chunk._prevTime = VarInts.readZigZagLong(in);
+            chunk._prevDelta = VarInts.readZigZagLong(in);
+            chunk._prevReading = VarInts.readZigZagInt(in);
+            chunk._pendingRun = VarInts.readZigZagInt(in);
+            if (chunk._pendingRun < 0) {
+                throw new IllegalArgumentException("Corrupt history chunk: a run of " + chunk._pendingRun + " readings.");
+            }
+            return chunk;
+        }
+
+        boolean hasRoom() {
+            return _length + MAX_APPEND_BYTES <= CHUNK_SIZE;
+        }
+
+        void append(long time, int reading) {
+            if (_length + MAX_APPEND_BYTES > _data.length) {
+                // grow the active chunk gradually so sparse histories stay small when serialized
+                _data = Arrays.copyOf(_data, Math.min(CHUNK_SIZE, Math.max(INITIAL_CHUNK_CAPACITY, _data.length * 2)));
+            }
+            long delta = time - _prevTime;
+            long deltaOfDelta = delta - _prevDelta;
+            int readingDelta = reading - _prevReading;
+            if (_count > 0 && deltaOfDelta == 0 && readingDelta == 0) {
+                _pendingRun++;
+            } else {
+                flushRun();
+                if (readingDelta == 0) {
+                    writeVarLong((VarInts.zigZag(deltaOfDelta) << 2) | TAG_TIME_ONLY);
+                } else {
+                    writeVarLong((VarInts.zigZag(deltaOfDelta) << 2) | TAG_TIME_READING);
+                    writeVarLong(VarInts.zigZag(readingDelta));
+                }
+            }
+            _prevTime = time;
+            _prevDelta = delta;
+            _prevReading = reading;
+            _endTime = Math.max(_endTime, time);
+            _count++;
+        }
+
+        void seal() {
+            flushRun();
+            _data = Arrays.copyOf(_data, _length);
+        }
+
+        private void flushRun() {
+            if (_pendingRun > 0) {
+                writeVarLong(((long)_pendingRun << 2) | TAG_REPEAT);
+                _pendingRun = 0;
+            }
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                _data[_length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            _data[_length++] = (byte)value;
+        }
+    }
+
+    /**
+     * Iterates over the readings of a PpmHistory, oldest first, without allocating per reading.
+     */
+    public static class Cursor {
+        private final List<Chunk> _chunks;
+        private final long _from;
+        private final long _to;
+        private int _chunkIndex = -1;
+        private Chunk _chunk;
+        private int _position;
+        private int _run;
+        private int _decoded;
+        private long _time;
+        private long _delta;
+        private int _reading;
+
+        Cursor(List<Chunk> chunks, long from, long to) {
+            _chunks = chunks;
+            _from = from;
+            _to = to;
+        }
+
+        /**
+         * Advances to the next reading in the cursor's time range.
+         * @return false once there are no more readings
+         */
+        public boolean next() {
+            while (true) {
+                if (_chunk == null || _decoded == _chunk._count) {
+                    if (!nextChunk()) {
+                        return false;
+                    }
+                }
+                decodeOne();
+                if (_time >= _from && _time <= _to) {
+                    return true;
+                }
+            }
+        }
+
+        public long getTimestamp() {
+            return _time;
+        }
+
+        public int getReading() {
+            return _reading;
+        }
+
+        private boolean nextChunk() {
+            while (++_chunkIndex < _chunks.size()) {
+                Chunk chunk = _chunks.get(_chunkIndex);
+                if (chunk._count > 0 && chunk._endTime >= _from && chunk._startTime <= _to) {
+                    _chunk = chunk;
+                    _position = 0;
+                    _run = 0;
+                    _decoded = 0;
+                    _time = chunk._startTime;
+                    _delta = 0;
+                    _reading = 0;
+                    return true;
+                }
+            }
+            _chunk = null;
+            return false;
+        }
+
+        private void decodeOne() {
+            _decoded++;
+            if (_run > 0) {
+                _run--;
+                _time += _delta;
+                return;
+            }
+            if (_position == _chunk._length) {
+                // the active chunk's trailing run has not been written out yet
+                _run = _chunk._pendingRun - 1;
+                _time += _delta;
+                return;
+            }
+            long token = readVarLong();
+            int tag = (int)(token & 3);
+            if (tag == TAG_REPEAT) {
+                _run = (int)(token >>> 2) - 1;
+                _time += _delta;
+                return;
+            }
+            _delta += VarInts.unZigZag(token >>> 2);
+            _time += _delta;
+            if (tag == TAG_TIME_READING) {
+                _reading += (int)VarInts.unZigZag(readVarLong());
+            }
+        }
+
+        private long readVarLong() {
+            byte[] data = _chunk._data;
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[_position++];
+                value |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * Appends a reading to the history.
+     * @param time the reading's timestamp in milliseconds
+     * @param reading the ppm reading
+     */
+    public void append(long time, int reading) {
+        Chunk active = _chunks.isEmpty() ? null : _chunks.get(_chunks.size() - 1);
+        if (active == null || !active.hasRoom()) {
+            if (active != null) {
+                active.seal();
+                markDirty(_firstSequence + _chunks.size() - 1);
+            }
+            if (_chunks.size() == MAX_CHUNKS) {
+                _chunks.remove(0);
+                _firstSequence++;
+            }
+            active = new Chunk(time);
+            _chunks.add(active);
+        }
+        active.append(time, reading);
+        markDirty(_firstSequence + _chunks.size() - 1);
+    }
+
+    /**
+     * Releases every chunk. Sequence numbers continue, so a delta written after clearing also clears the receiver's copy.
+     */
+    public void clear() {
+        if (_chunks.isEmpty()) {
+            return;
+        }
+        _firstSequence += _chunks.size();
+        _chunks = new ArrayList<>();
+        markDirty(_firstSequence);
+    }
+
+    /**
+     * Returns true if readings were appended since the last call to clearChanges().
+     * @return true if the history changed
+     */
+    public boolean isModified() {
+        return _dirtySequence != Long.MAX_VALUE;
+    }
+
+    public void clearChanges() {
+        _dirtySequence = Long.MAX_VALUE;
+    }
+
+    /**
+     * Writes the chunks changed since the last call to clearChanges(), or every chunk.
+     * @param out the output
+     * @param all true to write every chunk
+     */
+    void writeChanges(ByteArrayOutputStream out, boolean all) {
+        long from = all ? _firstSequence : Math.max(_firstSequence, Math.min(_dirtySequence, _firstSequence + _chunks.size()));
+        VarInts.writeZigZag(out, _firstSequence);
+        VarInts.writeZigZag(out, from);
+        int start = (int)(from - _firstSequence);
+        VarInts.writeZigZag(out, _chunks.size() - start);
+        for (int i = start; i < _chunks.size(); i++) {
+            _chunks.get(i).writeTo(out);
+        }
+    }
+
+    /**
+     * Applies chunks written by writeChanges: drops chunks older than the writer's oldest chunk and replaces every
+     * chunk from the first changed one onwards. The chunks are read before the history is touched, so truncated input
+     * leaves it unchanged.
+     * @param in the input
+     * @throws IllegalArgumentException if the input is corrupt
+     * @throws java.nio.BufferUnderflowException if the input is truncated
+     * @throws IllegalStateException if the changes do not line up with this history and a snapshot is required
+     */
+    void readChanges(ByteBuffer in) {
+        long firstSequence = VarInts.readZigZagLong(in);
+        long from = VarInts.readZigZagLong(in);
+        int count = VarInts.readZigZagInt(in);
+        if (count < 0 || count > MAX_CHUNKS || from < firstSequence) {
+            throw new IllegalArgumentException("Corrupt history changes: " + count + " chunks from " + from + ".");
+        }
+        List<Chunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(Chunk.readFrom(in, i == count - 1));
+        }
+        while (!_chunks.isEmpty() && _firstSequence < firstSequence) {
+            _chunks.remove(0);
+            _firstSequence++;
+        }
+        if (_chunks.isEmpty()) {
+            _firstSequence = firstSequence;
+        }
+        if (from < _firstSequence || from > _firstSequence + _chunks.size()) {
+            throw new IllegalStateException("History changes do not line up with this history; a snapshot is required.");
+        }
+        _chunks.subList((int)(from - _firstSequence), _chunks.size()).clear();
+        _chunks.addAll(chunks);
+    }
+
+    private void markDirty(long sequence) {
+        _dirtySequence = Math.min(_dirtySequence, sequence);
+    }
+
+    /**
+     * Returns a cursor over every reading in the history.
+     * @return the cursor
+     */
+    public Cursor cursor() {
+        return new Cursor(_chunks, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a cursor over the readings taken in [from, to]. Chunks outside the range are skipped without decoding.
+     * @param from the earliest timestamp (inclusive)
+     * @param to the latest timestamp (inclusive)
+     * @return the cursor
+     */
+    public Cursor cursor(long from, long to) {
+        return new Cursor(_chunks, from, to);
+    }
+
+    public int getCount() {
+        int count = 0;
+        for (Chunk chunk : _chunks) {
+            count += chunk._count;
+        }
+        return count;
+    }
+
+    public long getOldestTimestamp() {
+        return _chunks.isEmpty() ? 0 : _chunks.get(0)._startTime;
+    }
+
+    /**
+     * Returns the number of bytes used by the encoded readings.
+     * @return the encoded size in bytes
+     */
+    public int getEncodedSize() {
+        int size = 0;
+        for (Chunk chunk : _chunks) {
+            size += chunk._length;
+        }
+        return size;
+    }
+}
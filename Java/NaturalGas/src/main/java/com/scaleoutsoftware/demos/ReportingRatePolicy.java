@@ -0,0 +1,96 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+/**
+ * Recommends how often a meter should report, from its twin's state:
+ * <ul>
+ *     <li>fast while a limit is exceeded or an early warning is raised,</li>
+ *     <li>normal while the change-point detector sees an upward trend or the last reading is near the lowest limit,</li>
+ *     <li>slow otherwise, when the meter is far below its limits.</li>
+ * </ul>
+ * Two forms of hysteresis keep the rate from oscillating. A meter moves to the normal rate once a reading reaches
+ * nearFraction of the limit but only returns to the slow rate below farFraction. A slower rate only takes effect once
+ * the meter has been free of exceedances and warnings for holdMillis, measured in reading time. Faster rates take
+ * effect immediately.
+ */
+public final class ReportingRatePolicy {
+    public static final int DEFAULT_FAST_MILLIS = 1000;
+    public static final int DEFAULT_NORMAL_MILLIS = 10000;
+    public static final int DEFAULT_SLOW_MILLIS = 60000;
+    public static final long DEFAULT_HOLD_MILLIS = 5 * 60000L;
+
+    private final int    _fastMillis;
+    private final int    _normalMillis;
+    private final int    _slowMillis;
+    private final double _nearFraction;
+    private final double _farFraction;
+    private final long   _holdMillis;
+
+    public ReportingRatePolicy() {
+        this(DEFAULT_FAST_MILLIS, DEFAULT_NORMAL_MILLIS, DEFAULT_SLOW_MILLIS, 0.5, 0.4, DEFAULT_HOLD_MILLIS);
+    }
+
+    public ReportingRatePolicy(int fastMillis, int normalMillis, int slowMillis, double nearFraction, double farFraction,
+                               long holdMillis) {
+        if (fastMillis <= 0 || normalMillis < fastMillis || slowMillis < normalMillis) {
+            throw new IllegalArgumentException("Intervals must be positive and ordered fast <= normal <= slow.");
+        }
+        if (farFraction > nearFraction || holdMillis < 0) {
+            throw new IllegalArgumentException("farFraction must not exceed nearFraction and holdMillis must not be negative.");
+        }
+        _fastMillis = fastMillis;
+        _normalMillis = normalMillis;
+        _slowMillis = slowMillis;
+        _nearFraction = nearFraction;
+        _farFraction = farFraction;
+        _holdMillis = holdMillis;
+    }
+
+    /**
+     * Returns the reporting interval a sensor should use.
+     * @param sensor the sensor, after its latest readings were processed
+     * @param rules the sensor's threshold rules
+     * @return the interval in milliseconds
+     */
+    public int recommend(NaturalGasSensor sensor, ThresholdRules rules) {
+        int current = sensor.getReportingInterval();
+        int interval;
+        if (sensor.getDetector().getExceededMask() != 0 || sensor.isEarlyWarning()) {
+            interval = _fastMillis;
+        } else {
+            boolean near = current > 0 && current <= _normalMillis;
+            double band = rules.getMinLimit() * (near ? _farFraction : _nearFraction);
+            boolean trending = sensor.getChangePointDetector().getCusum() > 0;
+            interval = trending || sensor.getLastPpmReading() >= band ? _normalMillis : _slowMillis;
+        }
+        if (current > 0 && interval > current
+                && sensor.getLastPpmTime() - sensor.getLastActiveTime() < _holdMillis) {
+            return current;
+        }
+        return interval;
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-signal state for evaluating {@link ThresholdRules}. The state is a handful of primitives, so a detector can be
+ * embedded in any digital twin and serialized with it; the rules themselves are shared and passed in on each call.
+ * Evaluating readings does not allocate.
+ *
+ * Results are returned as bit masks with one bit per rule (bit i is rule i).
+ */
+public class ThresholdDetector {
+    private int     _exceededMask;  // rules whose limit is currently exceeded
+    private int     _alarmedMask;   // rules that have fired at least once
+    private long[]  _startTimes;    // start of the current exceedance, per rule
+    private int[]   _events;        // number of exceedances, per rule
+    private transient boolean _modified;
+
+    /**
+     * Evaluates one reading.
+     * @param rules the rules to evaluate
+     * @param time the reading's timestamp in milliseconds
+     * @param value the reading
+     * @return the mask of rules that fired for this reading
+     */
+    public int process(ThresholdRules rules, long time, double value) {
+        ensureCapacity(rules.getRuleCount());
+        return step(rules, time, value);
+    }
+
+    /**
+     * Evaluates a batch of readings in order.
+     * @param rules the rules to evaluate
+     * @param times the readings' timestamps in milliseconds
+     * @param values the readings
+     * @param offset the index of the first reading
+     * @param count the number of readings
+     * @return the mask of rules that fired for at least one reading
+     */
+    public int process(ThresholdRules rules, long[] times, int[] values, int offset, int count) {
+        ensureCapacity(rules.getRuleCount());
+        int fired = 0;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            fired |= step(rules, times[i], values[i]);
+        }
+        return fired;
+    }
+
+    /**
+     * Evaluates a batch of readings in order.
+     * @param rules the rules to evaluate
+     * @param times the readings' timestamps in milliseconds
+     * @param values the readings
+     * @param offset the index of the first reading
+     * @param count the number of readings
+     * @return the mask of rules that fired for at least one reading
+     */
+    public int process(ThresholdRules rules, long[] times, double[] values, int offset, int count) {
+        ensureCapacity(rules.getRuleCount());
+        int fired = 0;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            fired |= step(rules, times[i], values[i]);
+        }
+        return fired;
+    }
+
+    public boolean isExceeded(int rule) {
+        return (_exceededMask & (1 << rule)) != 0;
+    }
+
+    public boolean isAlarmed(int rule) {
+        return (_alarmedMask & (1 << rule)) != 0;
+    }
+
+    public int getExceededMask() {
+        return _exceededMask;
+    }
+
+    public int getAlarmedMask() {
+        return _alarmedMask;
+    }
+
+    public long getStartTime(int rule) {
+        return _startTimes == null || rule >= _startTimes.length ? 0 : _startTimes[rule];
+    }
+
+    public int getEvents(int rule) {
+        return _events == null || rule >= _events.length ? 0 : _events[rule];
+    }
+
+    /**
+     * Clears the current exceedances and alarms. Event counts are kept.
+     */
+    public void reset() {
+        _modified |= _exceededMask != 0 || _alarmedMask != 0;
+        _exceededMask = 0;
+        _alarmedMask = 0;
+    }
+
+    /**
+     * Returns true if the detector's state changed since the last call to clearModified().
+     * @return true if the state changed
+     */
+    public boolean isModified() {
+        return _modified;
+    }
+
+    public void clearModified() {
+        _modified = false;
+    }
+
+    void setMasks(int exceededMask, int alarmedMask) {
+        _exceededMask = exceededMask;
+        _alarmedMask = alarmedMask;
+    }
+
+    void setRuleState(int rule, long startTime, int events) {
+        ensureCapacity(rule + 1);
+        _startTimes[rule] = startTime;
+        _events[rule] = events;
+    }
+
+    void writeTo(ByteArrayOutputStream out) {
+        int rules = _startTimes == null ? 0 : _startTimes.length;
+        VarInts.writeZigZag(out, _exceededMask);
+        VarInts.writeZigZag(out, _alarmedMask);
+        out.write(rules);
+        for (int rule = 0; rule < rules; rule++) {
+            VarInts.writeZigZag(out, _startTimes[rule]);
+            VarInts.writeZigZag(out, _events[rule]);
+        }
+    }
+
+    void readFrom(ByteBuffer in) {
+        _exceededMask = VarInts.readZigZagInt(in);
+        _alarmedMask = VarInts.readZigZagInt(in);
+        int rules = in.get() & 0xFF;
+        if (rules > ThresholdRules.MAX_RULES) {
+            throw new IllegalArgumentException("Corrupt threshold detector: " + rules + " rules.");
+        }
+        _startTimes = rules == 0 ? null : new long[rules];
+        _events = rules == 0 ? null : new int[rules];
+        for (int rule = 0; rule < rules; rule++) {
+            _startTimes[rule] = VarInts.readZigZagLong(in);
+            _events[rule] = VarInts.readZigZagInt(in);
+        }
+    }
+
+    private int step(ThresholdRules rules, long time, double value) {
+        int fired = 0;
+        for (int rule = 0, count = rules.getRuleCount(); rule < count; rule++) {
+            int bit = 1 << rule;
+            if (value > rules.getLimit(rule)) {
+                if ((_exceededMask & bit) == 0) {
+                    _exceededMask |= bit;
+                    _startTimes[rule] = time;
+                    _events[rule]++;
+                    _modified = true;
+                }
+                if (time - _startTimes[rule] > rules.getMinDuration(rule) || value >= rules.getSpikeLevel(rule)) {
+                    fired |= bit;
+                }
+            } else if (value <= rules.getClearLevel(rule) && (_exceededMask & bit) != 0) {
+                _exceededMask &= ~bit;
+                _modified = true;
+            }
+        }
+        if ((_alarmedMask | fired) != _alarmedMask) {
+            _alarmedMask |= fired;
+            _modified = true;
+        }
+        return fired;
+    }
+
+    private void ensureCapacity(int ruleCount) {
+        if (_startTimes == null || _startTimes.length < ruleCount) {
+            long[] startTimes = new long[ruleCount];
+            int[] events = new int[ruleCount];
+            if (_startTimes != null) {
+                System.arraycopy(_startTimes, 0, startTimes, 0, _startTimes.length);
+                System.arraycopy(_events, 0, events, 0, _events.length);
+            }
+            _startTimes = startTimes;
+            _events = events;
+        }
+    }
+}
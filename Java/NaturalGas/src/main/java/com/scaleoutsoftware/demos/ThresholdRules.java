@@ -0,0 +1,109 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+/**
+ * Immutable set of threshold rules evaluated by a {@link ThresholdDetector}. Each rule has:
+ * <ul>
+ *     <li>a limit: a value above the limit starts an exceedance,</li>
+ *     <li>a clear level (at or below the limit): the exceedance ends once a value is at or below it (hysteresis),</li>
+ *     <li>a minimum duration: the rule fires when an exceedance lasts longer than this many milliseconds,</li>
+ *     <li>a spike level: the rule fires immediately for any value above the limit that is at or above this level.</li>
+ * </ul>
+ * Rules are shared by every twin that uses them; only the detector's state lives in the twin.
+ */
+public final class ThresholdRules {
+    public static final int MAX_RULES = 32;
+
+    private final double[] _limits;
+    private final double[] _clearLevels;
+    private final long[]   _minDurations;
+    private final double[] _spikeLevels;
+    private final double   _minLimit;
+
+    public ThresholdRules(double[] limits, double[] clearLevels, long[] minDurationsMillis, double[] spikeLevels) {
+        int count = limits.length;
+        if (count == 0 || count > MAX_RULES) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_RULES + " rules are supported.");
+        }
+        if (clearLevels.length != count || minDurationsMillis.length != count || spikeLevels.length != count) {
+            throw new IllegalArgumentException("Every rule needs a limit, clear level, minimum duration and spike level.");
+        }
+        for (int i = 0; i < count; i++) {
+            if (clearLevels[i] > limits[i]) {
+                throw new IllegalArgumentException("The clear level of rule " + i + " is above its limit.");
+            }
+        }
+        _limits = limits.clone();
+        _clearLevels = clearLevels.clone();
+        _minDurations = minDurationsMillis.clone();
+        _spikeLevels = spikeLevels.clone();
+        double minLimit = limits[0];
+        for (int i = 1; i < count; i++) {
+            minLimit = Math.min(minLimit, limits[i]);
+        }
+        _minLimit = minLimit;
+    }
+
+    /**
+     * Creates a single rule without hysteresis: the exceedance ends as soon as a value is at or below the limit.
+     * @param limit the limit
+     * @param minDurationMillis how long the limit may be exceeded before the rule fires
+     * @param spikeLevel the level at which the rule fires immediately
+     * @return the rules
+     */
+    public static ThresholdRules single(double limit, long minDurationMillis, double spikeLevel) {
+        return new ThresholdRules(new double[] {limit}, new double[] {limit}, new long[] {minDurationMillis}, new double[] {spikeLevel});
+    }
+
+    public int getRuleCount() {
+        return _limits.length;
+    }
+
+    /**
+     * Returns the lowest limit of any rule; a value at or below it cannot start an exceedance.
+     * @return the lowest limit
+     */
+    public double getMinLimit() {
+        return _minLimit;
+    }
+
+    public double getLimit(int rule) {
+        return _limits[rule];
+    }
+
+    public double getClearLevel(int rule) {
+        return _clearLevels[rule];
+    }
+
+    public long getMinDuration(int rule) {
+        return _minDurations[rule];
+    }
+
+    public double getSpikeLevel(int rule) {
+        return _spikeLevels[rule];
+    }
+}
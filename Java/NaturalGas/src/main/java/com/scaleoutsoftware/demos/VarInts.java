@@ -0,0 +1,104 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Zig-zag and varint helpers shared by the binary encodings in this package. Varints are little-endian base 128;
+ * zig-zag maps signed values to unsigned ones so small negative numbers stay short. Input that ends early surfaces as a
+ * BufferUnderflowException.
+ */
+final class VarInts {
+    private VarInts() {
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeZigZag(ByteArrayOutputStream out, long value) {
+        writeVarLong(out, zigZag(value));
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+
+    /**
+     * Reads a varint.
+     * @throws IllegalArgumentException if the varint is longer than 10 bytes
+     * @throws java.nio.BufferUnderflowException if the input ends inside the varint
+     */
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IllegalArgumentException("Malformed varint.");
+            }
+            b = in.get();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    static long readZigZagLong(ByteBuffer in) {
+        return unZigZag(readVarLong(in));
+    }
+
+    /**
+     * Reads a zig-zag varint that must fit in an int.
+     * @throws IllegalArgumentException if the value is out of int range
+     */
+    static int readZigZagInt(ByteBuffer in) {
+        long value = unZigZag(readVarLong(in));
+        if (value != (int)value) {
+            throw new IllegalArgumentException("Value " + value + " is out of int range.");
+        }
+        return (int)value;
+    }
+
+    /**
+     * Writes a long as 8 bytes, big-endian as ByteBuffer.getLong() reads it; used for doubles.
+     */
+    static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int)(value >>> shift));
+        }
+    }
+}
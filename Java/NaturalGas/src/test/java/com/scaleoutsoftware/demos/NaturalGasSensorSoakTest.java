@@ -0,0 +1,116 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import com.google.gson.Gson;
+import com.scaleoutsoftware.digitaltwin.core.DigitalTwinBase;
+import com.scaleoutsoftware.digitaltwin.core.SendingResult;
+import com.scaleoutsoftware.digitaltwin.mock.MockEndpoint;
+import com.scaleoutsoftware.digitaltwin.mock.MockEnvironment;
+import com.scaleoutsoftware.digitaltwin.mock.MockEnvironmentBuilder;
+import com.scaleoutsoftware.soak.SoakMonitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Endurance test: pushes hours of synthetic sensor readings through the processor at accelerated time and fails if
+ * a sensor's state outgrows its budget, the heap keeps growing once every sensor is warm, or GC pauses exceed their
+ * budget. Excluded from the regular test task; run with gradle soakTest and tune with -Dsoak.* properties.
+ *
+ * Sensor state is measured by its snapshot encoding, so the budget covers the twin alone. The heap is compared against
+ * the end of the first hour rather than the start, so the mock environment's fixed overhead and the first history
+ * chunks do not count as a leak; any later growth does.
+ */
+public class NaturalGasSensorSoakTest {
+    private static final Logger LOG = Logger.getLogger(NaturalGasSensorSoakTest.class.getName());
+
+    private static final int    HOURS               = Integer.getInteger("soak.hours", 6);
+    private static final int    SENSORS             = Integer.getInteger("soak.sensors", 500);
+    private static final long   INTERVAL_MILLIS     = Long.getLong("soak.intervalMillis", 10000);
+    private static final long   MAX_BYTES_PER_TWIN  = Long.getLong("soak.maxBytesPerTwin", 32 * 1024);
+    private static final long   MAX_GROWTH_PER_TWIN = Long.getLong("soak.maxGrowthBytesPerTwin", 1024);
+    private static final long   MAX_PAUSE_P99_MILLIS = Long.getLong("soak.maxPauseP99Millis", 200);
+
+    @Test
+    public void testBoundedSensorState() throws Exception {
+        try (SoakMonitor monitor = new SoakMonitor()) {
+            MockEnvironment environment = new MockEnvironmentBuilder()
+                    .addDigitalTwin(
+                            "NaturalGasMeter",
+                            new NaturalGasSensorMessageProcessor(),
+                            NaturalGasSensor.class,
+                            NaturalGasSensorMessage.class)
+                    .build();
+
+            Gson gson = new Gson();
+            Random random = new Random(42);
+            int[] levels = new int[SENSORS];
+            long time = System.currentTimeMillis() - HOURS * 3600000L;
+            long readingsPerHour = 3600000L / INTERVAL_MILLIS;
+            long warmHeap = 0;
+            for (int hour = 1; hour <= HOURS; hour++) {
+                for (long r = 0; r < readingsPerHour; r++) {
+                    time += INTERVAL_MILLIS;
+                    for (int s = 0; s < SENSORS; s++) {
+                        // a bounded random walk with rare spikes
+                        levels[s] = Math.max(0, Math.min(40, levels[s] + random.nextInt(3) - 1));
+                        int reading = random.nextInt(100000) == 0 ? 250 : levels[s];
+                        NaturalGasSensorMessage msg = new NaturalGasSensorMessage(reading, time);
+                        Assert.assertEquals(SendingResult.Handled,
+                                MockEndpoint.send("NaturalGasMeter", Integer.toString(s), gson.toJson(msg)));
+                    }
+                }
+                for (int s = 0; s < SENSORS; s++) {
+                    MockEndpoint.receive("NaturalGasMeter", Integer.toString(s));
+                }
+
+                int maxStateBytes = 0;
+                for (DigitalTwinBase instance : environment.getInstances("NaturalGasMeter").values()) {
+                    NaturalGasSensor sensor = (NaturalGasSensor)instance;
+                    Assert.assertTrue(sensor.getHistory().getEncodedSize() <= (PpmHistory.MAX_CHUNKS + 1) * PpmHistory.CHUNK_SIZE);
+                    maxStateBytes = Math.max(maxStateBytes, NaturalGasSensorDeltaCodec.encodeSnapshot(sensor).length);
+                }
+                long heap = SoakMonitor.usedHeap();
+                if (hour == 1) {
+                    warmHeap = heap;
+                }
+                long growthPerTwin = (heap - warmHeap) / SENSORS;
+                LOG.info(String.format("hour %d: largest sensor %d bytes, heap growth %d bytes per sensor, GC %s",
+                        hour, maxStateBytes, growthPerTwin, monitor.describePauses()));
+                Assert.assertTrue("Sensor state grew to " + maxStateBytes + " bytes", maxStateBytes <= MAX_BYTES_PER_TWIN);
+                Assert.assertTrue("Heap grew by " + growthPerTwin + " bytes per sensor after the first hour",
+                        growthPerTwin <= MAX_GROWTH_PER_TWIN);
+            }
+
+            long pauseP99 = monitor.getPausePercentile(0.99);
+            Assert.assertTrue("GC pause p99 was " + pauseP99 + " ms", pauseP99 <= MAX_PAUSE_P99_MILLIS);
+            environment.shutdown();
+        }
+    }
+}
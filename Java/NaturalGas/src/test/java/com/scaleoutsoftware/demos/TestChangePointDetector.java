@@ -0,0 +1,118 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestChangePointDetector {
+    @Test
+    public void testSlowLeakWarnsBeforeLimit() {
+        ChangePointDetector detector = new ChangePointDetector();
+        int[] readings = new int[200];
+        for (int i = 0; i < readings.length; i++) {
+            // steady 10-14 ppm for 60 readings, then rising by 0.5 ppm per reading
+            readings[i] = 10 + (i % 5) + (i < 60 ? 0 : (i - 60) / 2);
+        }
+        int raised = detector.process(NaturalGasSensor.PPM_CHANGE_POINT, readings, 0, readings.length);
+        Assert.assertTrue(raised > 60);
+        Assert.assertTrue(readings[raised] < NaturalGasSensor.MAX_READING_ALLOWED_PPM);
+        Assert.assertTrue(detector.isWarning());
+    }
+
+    @Test
+    public void testNoiseDoesNotWarn() {
+        ChangePointDetector detector = new ChangePointDetector();
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertFalse(detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 10 + (i * 7919) % 7));
+        }
+        Assert.assertFalse(detector.isWarning());
+        Assert.assertEquals(13, detector.getMean(), 1);
+    }
+
+    @Test
+    public void testWarningRearms() {
+        ChangePointDetector detector = new ChangePointDetector();
+        for (int i = 0; i < 30; i++) {
+            detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 10);
+        }
+        int warnings = 0;
+        for (int i = 0; i < 10; i++) {
+            warnings += detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 30) ? 1 : 0;
+        }
+        Assert.assertEquals(1, warnings);
+        // evidence drains once readings fall back below the baseline
+        for (int i = 0; i < 50; i++) {
+            detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 5);
+        }
+        Assert.assertFalse(detector.isWarning());
+        Assert.assertTrue(detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 60));
+    }
+
+    @Test
+    public void testPermanentShiftRebaselines() {
+        ChangePointParameters parameters = new ChangePointParameters(0.1, 0.5, 8, 20, 2, 100);
+        ChangePointDetector detector = new ChangePointDetector();
+        for (int i = 0; i < 30; i++) {
+            detector.process(parameters, 10 + i % 3);
+        }
+        // the meter settles at a new, higher level for good
+        int warnings = 0;
+        for (int i = 0; i < 1000; i++) {
+            warnings += detector.process(parameters, 30 + i % 3) ? 1 : 0;
+        }
+        Assert.assertEquals(1, warnings);
+        Assert.assertFalse(detector.isWarning());
+        Assert.assertEquals(31, detector.getMean(), 1);
+
+        // without re-baselining the warning never clears
+        ChangePointParameters sticky = new ChangePointParameters(0.1, 0.5, 8, 20, 2, 0);
+        ChangePointDetector stuck = new ChangePointDetector();
+        for (int i = 0; i < 30; i++) {
+            stuck.process(sticky, 10 + i % 3);
+        }
+        for (int i = 0; i < 1000; i++) {
+            stuck.process(sticky, 30 + i % 3);
+        }
+        Assert.assertTrue(stuck.isWarning());
+        Assert.assertEquals(1000, stuck.getWarningSamples());
+    }
+
+    @Test
+    public void testSteadyReadingsDoNotModify() {
+        ChangePointDetector detector = new ChangePointDetector();
+        for (int i = 0; i < 30; i++) {
+            detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 10);
+        }
+        detector.clearModified();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 10));
+        }
+        Assert.assertFalse(detector.isModified());
+        detector.process(NaturalGasSensor.PPM_CHANGE_POINT, 11);
+        Assert.assertTrue(detector.isModified());
+    }
+}
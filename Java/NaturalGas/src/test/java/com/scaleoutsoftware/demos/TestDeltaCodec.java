@@ -0,0 +1,237 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class TestDeltaCodec {
+    @Test
+    public void testSnapshotRoundTrip() {
+        NaturalGasSensor source = new NaturalGasSensor();
+        long time = 1_000_000L;
+        for (int i = 0; i < 3000; i++) {
+            record(source, time + i * 1000L, 20 + (i % 7 == 0 ? 40 : i % 3));
+        }
+        source.setMeterClass(2);
+        source.setReportingInterval(5000);
+        source.incrementVersion();
+        source.incrementVersion();
+
+        // the receiver is more than one version behind
+        NaturalGasSensor replica = new NaturalGasSensor();
+        byte[] snapshot = NaturalGasSensorDeltaCodec.encode(source, 0);
+        Assert.assertEquals(NaturalGasSensorDeltaCodec.KIND_SNAPSHOT, snapshot[0]);
+        NaturalGasSensorDeltaCodec.apply(snapshot, replica);
+        assertSameSensor(source, replica);
+    }
+
+    @Test
+    public void testDeltaRoundTrip() {
+        NaturalGasSensor source = new NaturalGasSensor();
+        long time = 1_000_000L;
+        for (int i = 0; i < 3000; i++) {
+            record(source, time + i * 1000L, 20 + i % 3);
+        }
+        source.incrementVersion();
+        NaturalGasSensor replica = new NaturalGasSensor();
+        NaturalGasSensorDeltaCodec.apply(NaturalGasSensorDeltaCodec.encodeSnapshot(source), replica);
+
+        // a few more readings touch only the last reading, its time and the active history chunk
+        source.clearChanges();
+        for (int i = 3000; i < 3010; i++) {
+            record(source, time + i * 1000L, 25);
+        }
+        source.incrementVersion();
+        byte[] delta = NaturalGasSensorDeltaCodec.encode(source, replica.getVersion());
+        Assert.assertEquals(NaturalGasSensorDeltaCodec.KIND_DELTA, delta[0]);
+        Assert.assertTrue(delta.length * 4 < NaturalGasSensorDeltaCodec.encodeSnapshot(source).length);
+        NaturalGasSensorDeltaCodec.apply(delta, replica);
+        assertSameSensor(source, replica);
+
+        // compaction clears the history on the replica too
+        source.clearChanges();
+        source.compact();
+        source.incrementVersion();
+        NaturalGasSensorDeltaCodec.apply(NaturalGasSensorDeltaCodec.encode(source, replica.getVersion()), replica);
+        Assert.assertTrue(replica.isCompacted());
+        assertSameSensor(source, replica);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDeltaRejectsWrongBase() {
+        NaturalGasSensor source = new NaturalGasSensor();
+        source.incrementVersion();
+        source.incrementVersion();
+        source.clearChanges();
+        source.setLastPpmReading(30);
+        source.incrementVersion();
+        NaturalGasSensorDeltaCodec.apply(NaturalGasSensorDeltaCodec.encode(source, 2), new NaturalGasSensor());
+    }
+
+    @Test
+    public void testNoOpBatchThenEncode() {
+        NaturalGasSensor source = new NaturalGasSensor();
+        record(source, 1_000_000L, 20);
+        source.incrementVersion();
+        NaturalGasSensor replica = new NaturalGasSensor();
+        NaturalGasSensorDeltaCodec.apply(NaturalGasSensorDeltaCodec.encodeSnapshot(source), replica);
+
+        source.clearChanges();
+        record(source, 1_001_000L, 35);
+        source.incrementVersion();
+        Assert.assertTrue(source.isChangeMaskCurrent());
+
+        // a batch that changes nothing clears the mask without creating a version, as the processor does
+        source.clearChanges();
+        Assert.assertFalse(source.isChangeMaskCurrent());
+        byte[] encoded = NaturalGasSensorDeltaCodec.encode(source, replica.getVersion());
+        Assert.assertEquals(NaturalGasSensorDeltaCodec.KIND_SNAPSHOT, encoded[0]);
+        NaturalGasSensorDeltaCodec.apply(encoded, replica);
+        assertSameSensor(source, replica);
+        Assert.assertEquals(35, replica.getLastPpmReading());
+    }
+
+    @Test
+    public void testTruncatedEncoding() {
+        NaturalGasSensor source = new NaturalGasSensor();
+        for (int i = 0; i < 100; i++) {
+            record(source, 1_000_000L + i * 1000L, 20 + i % 5);
+        }
+        source.incrementVersion();
+        byte[] snapshot = NaturalGasSensorDeltaCodec.encodeSnapshot(source);
+        for (int length : new int[] {0, 1, 9, snapshot.length / 2, snapshot.length - 1}) {
+            try {
+                NaturalGasSensorDeltaCodec.apply(Arrays.copyOf(snapshot, length), new NaturalGasSensor());
+                Assert.fail("Applied a snapshot truncated to " + length + " bytes.");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testHistoryChanges() {
+        PpmHistory source = new PpmHistory();
+        PpmHistory replica = new PpmHistory();
+        long time = 1_000_000L;
+        int next = 0;
+        for (; next < 2000; next++) {
+            source.append(time + next * 1000L, 20 + next % 9);
+        }
+        readChanges(replica, writeChanges(source, true));
+        assertSameHistory(source, replica);
+
+        // deltas across enough chunks that the oldest are evicted from both copies
+        for (int round = 0; round < 20; round++) {
+            source.clearChanges();
+            for (int end = next + 700; next < end; next++) {
+                source.append(time + next * 1000L, 20 + next % 9);
+            }
+            byte[] delta = writeChanges(source, false);
+            Assert.assertTrue(delta.length < writeChanges(source, true).length);
+            readChanges(replica, delta);
+            assertSameHistory(source, replica);
+        }
+
+        source.clearChanges();
+        source.clear();
+        readChanges(replica, writeChanges(source, false));
+        Assert.assertEquals(0, replica.getCount());
+    }
+
+    @Test
+    public void testTruncatedHistoryLeavesReplicaUnchanged() {
+        PpmHistory source = new PpmHistory();
+        for (int i = 0; i < 1000; i++) {
+            source.append(1_000_000L + i * 1000L, 20 + i % 4);
+        }
+        PpmHistory replica = new PpmHistory();
+        readChanges(replica, writeChanges(source, true));
+
+        source.clearChanges();
+        source.append(2_000_000L, 60);
+        byte[] delta = writeChanges(source, false);
+        try {
+            readChanges(replica, Arrays.copyOf(delta, delta.length - 1));
+            Assert.fail("Applied truncated history changes.");
+        } catch (BufferUnderflowException e) {
+            // expected
+        }
+        Assert.assertEquals(1000, replica.getCount());
+        readChanges(replica, delta);
+        assertSameHistory(source, replica);
+    }
+
+    private static void record(NaturalGasSensor sensor, long time, int reading) {
+        sensor.setLastPpmReading(reading);
+        sensor.setLastPpmTime(time);
+        sensor.getDetector().process(NaturalGasSensor.PPM_RULES, time, reading);
+        sensor.getChangePointDetector().process(NaturalGasSensor.PPM_CHANGE_POINT, reading);
+        sensor.getHistory().append(time, reading);
+    }
+
+    private static byte[] writeChanges(PpmHistory history, boolean all) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        history.writeChanges(out, all);
+        return out.toByteArray();
+    }
+
+    private static void readChanges(PpmHistory history, byte[] changes) {
+        history.readChanges(ByteBuffer.wrap(changes));
+    }
+
+    private static void assertSameSensor(NaturalGasSensor expected, NaturalGasSensor actual) {
+        Assert.assertEquals(expected.getVersion(), actual.getVersion());
+        Assert.assertEquals(expected.getLastPpmReading(), actual.getLastPpmReading());
+        Assert.assertEquals(expected.getLastPpmTime(), actual.getLastPpmTime());
+        Assert.assertEquals(expected.isLimitExceeded(), actual.isLimitExceeded());
+        Assert.assertEquals(expected.isAlarmSounded(), actual.isAlarmSounded());
+        Assert.assertEquals(expected.getNumEvents(), actual.getNumEvents());
+        Assert.assertEquals(expected.getChangePointDetector().getCusum(), actual.getChangePointDetector().getCusum(), 0.0);
+        Assert.assertEquals(expected.getMeterClass(), actual.getMeterClass());
+        Assert.assertEquals(expected.getReportingInterval(), actual.getReportingInterval());
+        Assert.assertEquals(expected.isCompacted(), actual.isCompacted());
+        assertSameHistory(expected.getHistory(), actual.getHistory());
+    }
+
+    private static void assertSameHistory(PpmHistory expected, PpmHistory actual) {
+        Assert.assertEquals(expected.getCount(), actual.getCount());
+        PpmHistory.Cursor e = expected.cursor();
+        PpmHistory.Cursor a = actual.cursor();
+        while (e.next()) {
+            Assert.assertTrue(a.next());
+            Assert.assertEquals(e.getTimestamp(), a.getTimestamp());
+            Assert.assertEquals(e.getReading(), a.getReading());
+        }
+        Assert.assertFalse(a.next());
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+public class TestMessageCodec {
+    @Test
+    public void testBinaryAndJsonCoexist() {
+        long[] times = new long[600];
+        int[] readings = new int[600];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = 1700000000000L + i * 1000L;
+            readings[i] = 20 + (i % 5);
+        }
+        NaturalGasSensorMessage batch = NaturalGasSensorMessage.batch(times, readings, 0, times.length);
+        byte[] binary = new NaturalGasSensorMessageCodec().encode(batch);
+        byte[] json = new JsonMessageCodec<>(NaturalGasSensorMessage.class).encode(batch);
+        Assert.assertTrue(binary.length <= 3 * times.length + 16);
+        Assert.assertTrue(binary.length * 2 < json.length);
+
+        MessageCodecRegistry<NaturalGasSensorMessage> registry = NaturalGasSensorMessageCodec.registry();
+        for (byte[] encoded : new byte[][] {binary, json}) {
+            NaturalGasSensorMessage decoded = registry.decode(encoded);
+            Assert.assertEquals(times.length, decoded.getReadingCount());
+            Assert.assertEquals(times[0], decoded.getTimestamp());
+            Assert.assertEquals(readings[0], decoded.getPpmReading());
+            Assert.assertArrayEquals(batch.getTimeDeltas(), decoded.getTimeDeltas());
+            Assert.assertArrayEquals(batch.getReadingDeltas(), decoded.getReadingDeltas());
+        }
+
+        NaturalGasSensorMessage single = registry.decode(new NaturalGasSensorMessageCodec().encode(new NaturalGasSensorMessage(51, times[0])));
+        Assert.assertEquals(1, single.getReadingCount());
+        Assert.assertEquals(51, single.getPpmReading());
+        Assert.assertFalse(single.hasMeterClass());
+
+        NaturalGasSensorMessage classified = registry.decode(new NaturalGasSensorMessageCodec().encode(new NaturalGasSensorMessage(51, times[0], 3)));
+        Assert.assertTrue(classified.hasMeterClass());
+        Assert.assertEquals(3, classified.getMeterClass());
+    }
+
+    @Test
+    public void testInvalidTimeDeltaRejected() {
+        // a negative delta, as an old encoder wrote it, and one that would wrap to a small positive delta
+        for (long timeDelta : new long[] {-1000L & 0xFFFFFFFFL, (1L << 32) + 1000}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(NaturalGasSensorMessageCodec.MAGIC);
+            out.write(NaturalGasSensorMessageCodec.VERSION);
+            VarInts.writeVarLong(out, 2);
+            VarInts.writeVarLong(out, VarInts.zigZag(20));
+            VarInts.writeVarLong(out, 1700000000000L);
+            VarInts.writeVarLong(out, 0);
+            VarInts.writeVarLong(out, timeDelta);
+            VarInts.writeVarLong(out, VarInts.zigZag(1));
+            try {
+                new NaturalGasSensorMessageCodec().decode(out.toByteArray());
+                Assert.fail("Decoded time delta " + timeDelta + ".");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedMessage() {
+        byte[] binary = new NaturalGasSensorMessageCodec().encode(
+                NaturalGasSensorMessage.batch(new long[] {1000, 2000, 3000}, new int[] {20, 21, 22}, 0, 3));
+        new NaturalGasSensorMessageCodec().decode(java.util.Arrays.copyOf(binary, binary.length - 1));
+    }
+}
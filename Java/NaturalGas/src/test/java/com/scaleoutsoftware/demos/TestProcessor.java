@@ -26,6 +26,9 @@
 package com.scaleoutsoftware.demos;
 
 import com.google.gson.Gson;
+import com.scaleoutsoftware.digitaltwin.core.DigitalTwinBase;
+import com.scaleoutsoftware.digitaltwin.core.ProcessingContext;
+import com.scaleoutsoftware.digitaltwin.core.ProcessingResult;
 import com.scaleoutsoftware.digitaltwin.core.SendingResult;
 import com.scaleoutsoftware.digitaltwin.mock.MockEndpoint;
 import com.scaleoutsoftware.digitaltwin.mock.MockEnvironment;
@@ -34,6 +37,10 @@ import com.scaleoutsoftware.digitaltwin.mock.MockEnvironmentException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class TestProcessor {
@@ -107,5 +114,462 @@ public class TestProcessor {
 
     }
 
+    @Test
+    public void testReadingHistory() throws MockEnvironmentException {
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        new NaturalGasSensorMessageProcessor(),
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            NaturalGasSensorMessage msg = new NaturalGasSensorMessage(10 + (i % 7), start + i * 1000L);
+            Assert.assertEquals(SendingResult.Handled, MockEndpoint.send("NaturalGasMeter", "42", gson.toJson(msg)));
+        }
+
+        NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("42");
+        PpmHistory history = sensor.getHistory();
+        Assert.assertEquals(100, history.getCount());
+
+        PpmHistory.Cursor cursor = history.cursor(start + 10000, start + 19000);
+        int i = 10;
+        while (cursor.next()) {
+            Assert.assertEquals(start + i * 1000L, cursor.getTimestamp());
+            Assert.assertEquals(10 + (i % 7), cursor.getReading());
+            i++;
+        }
+        Assert.assertEquals(20, i);
+        environment.shutdown();
+    }
+
+    @Test
+    public void testAlertLatency() throws MockEnvironmentException {
+        NaturalGasSensorMessageProcessor processor = new NaturalGasSensorMessageProcessor();
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        processor,
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        long readingTime = System.currentTimeMillis() - 250;
+        NaturalGasSensorMessage spike = new NaturalGasSensorMessage(250, readingTime);
+        Assert.assertEquals(SendingResult.Handled, MockEndpoint.send("NaturalGasMeter", "24", gson.toJson(spike)));
+
+        List<String> receivedMessages = MockEndpoint.receive("NaturalGasMeter", "24");
+        Assert.assertEquals(1, receivedMessages.size());
+        NaturalGasAlert alert = gson.fromJson(receivedMessages.get(0), NaturalGasAlert.class);
+        Assert.assertEquals(readingTime, alert.getSourceTimestamp());
+        Assert.assertTrue(alert.getTimestamp() >= readingTime);
+
+        LatencyRecorder.Snapshot latency = processor.getLatencyRecorder().snapshot();
+        Assert.assertEquals(1, latency.getCount());
+        Assert.assertTrue(latency.getP50() >= 250);
+        environment.shutdown();
+    }
+
+    @Test
+    public void testBatchMessage() throws MockEnvironmentException {
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        new NaturalGasSensorMessageProcessor(),
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        // two hours of 1 Hz readings with two separate 1000 second exceedances of the limit
+        long start = System.currentTimeMillis() - 7200000;
+        long[] times = new long[7200];
+        int[] readings = new int[7200];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = start + i * 1000L;
+            boolean high = (i >= 2400 && i < 3400) || (i >= 4800 && i < 5800);
+            readings[i] = high ? 60 : 20 + (i % 3);
+        }
+        Gson gson = new Gson();
+        NaturalGasSensorMessage batch = NaturalGasSensorMessage.batch(times, readings, 0, times.length);
+        Assert.assertEquals(7200, batch.getReadingCount());
+        Assert.assertEquals(SendingResult.Handled, MockEndpoint.send("NaturalGasMeter", "25", gson.toJson(batch)));
+
+        NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("25");
+        int recorded = sensor.getHistory().getCount();
+        Assert.assertTrue(recorded > 0);
+        Assert.assertEquals(readings[7199], sensor.getLastPpmReading());
+        Assert.assertEquals(times[7199], sensor.getLastPpmTime());
+        Assert.assertTrue(sensor.isAlarmSounded());
+
+        // one alert per exceedance, each when the limit has been exceeded for more than 15 minutes (the 901st reading)
+        List<Long> alertTimes = new ArrayList<>();
+        for (String msg : MockEndpoint.receive("NaturalGasMeter", "25")) {
+            NaturalGasAlert alert = gson.fromJson(msg, NaturalGasAlert.class);
+            if (alert.getAlertMessage().equals("Warning: dangerous air quality.")) {
+                alertTimes.add(alert.getSourceTimestamp());
+            }
+        }
+        Assert.assertEquals(2, alertTimes.size());
+        Assert.assertEquals(times[2400 + 901], (long)alertTimes.get(0));
+        Assert.assertEquals(times[4800 + 901], (long)alertTimes.get(1));
+
+        // a batch whose delta arrays do not match is skipped
+        String malformed = "{\"_ppmReading\":60,\"_timestamp\":" + times[7199] + ",\"_timeDeltas\":[1000,1000],\"_readingDeltas\":[1]}";
+        MockEndpoint.send("NaturalGasMeter", "25", malformed);
+        Assert.assertEquals(recorded, sensor.getHistory().getCount());
+        Assert.assertEquals(readings[7199], sensor.getLastPpmReading());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testMeterProfiles() throws MockEnvironmentException {
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        new NaturalGasSensorMessageProcessor(),
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        MeterProfiles defaults = MeterProfiles.current();
+        try {
+            // meter class 1 fires immediately at 100 ppm
+            MeterProfiles.publish(new MeterProfiles(
+                    new ThresholdRules[] {NaturalGasSensor.PPM_RULES, ThresholdRules.single(50, 15 * 60000L, 100)},
+                    new ChangePointParameters[] {NaturalGasSensor.PPM_CHANGE_POINT, NaturalGasSensor.PPM_CHANGE_POINT}));
+
+            Gson gson = new Gson();
+            long now = System.currentTimeMillis();
+            MockEndpoint.send("NaturalGasMeter", "26", gson.toJson(new NaturalGasSensorMessage(100, now)));
+            // meter 27 reports its class with its first reading and keeps it for later readings
+            MockEndpoint.send("NaturalGasMeter", "27", gson.toJson(new NaturalGasSensorMessage(10, now, 1)));
+            MockEndpoint.send("NaturalGasMeter", "27", gson.toJson(new NaturalGasSensorMessage(100, now + 1000)));
+
+            Assert.assertFalse(((NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("26")).isAlarmSounded());
+            Assert.assertEquals(1, ((NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("27")).getMeterClass());
+            Assert.assertTrue(((NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("27")).isAlarmSounded());
+        } finally {
+            MeterProfiles.publish(defaults);
+        }
+        environment.shutdown();
+    }
+
+    @Test
+    public void testIdleCompaction() throws MockEnvironmentException {
+        NaturalGasSensorMessageProcessor processor = new NaturalGasSensorMessageProcessor();
+        processor.setIdleCompactionMillis(3600000);
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        processor,
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        // two quiet hours of readings, one a minute
+        long start = System.currentTimeMillis() - 3 * 3600000L;
+        long[] times = new long[120];
+        int[] readings = new int[120];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = start + i * 60000L;
+            readings[i] = 10 + (i % 3);
+        }
+        Gson gson = new Gson();
+        MockEndpoint.send("NaturalGasMeter", "28", gson.toJson(NaturalGasSensorMessage.batch(times, readings, 0, times.length)));
+        NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("28");
+        Assert.assertTrue(sensor.isCompacted());
+        Assert.assertEquals(0, sensor.getHistory().getCount());
+
+        // in-band readings are not recorded while compacted; the next exceedance rebuilds the history
+        long next = times[119] + 60000;
+        MockEndpoint.send("NaturalGasMeter", "28", gson.toJson(new NaturalGasSensorMessage(12, next)));
+        MockEndpoint.send("NaturalGasMeter", "28", gson.toJson(new NaturalGasSensorMessage(60, next + 60000)));
+        sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("28");
+        Assert.assertFalse(sensor.isCompacted());
+        Assert.assertEquals(1, sensor.getHistory().getCount());
+        Assert.assertEquals(60, sensor.getLastPpmReading());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testCoalescing() throws MockEnvironmentException {
+        NaturalGasSensorMessageProcessor plain = new NaturalGasSensorMessageProcessor();
+        NaturalGasSensorMessageProcessor coalescing = new NaturalGasSensorMessageProcessor();
+        coalescing.setCoalescing(true);
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("NaturalGasMeter", plain, NaturalGasSensor.class, NaturalGasSensorMessage.class)
+                .addDigitalTwin("CoalescedMeter", coalescing, NaturalGasSensor.class, NaturalGasSensorMessage.class)
+                .build();
+
+        // in band, 20 minutes over the limit, back in band, a spike, in band again
+        long start = System.currentTimeMillis() - 3 * 3600000L;
+        long[] times = new long[120];
+        int[] readings = new int[120];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = start + i * 60000L;
+            readings[i] = i >= 30 && i < 50 ? 60 : i == 90 ? 250 : 10 + (i % 3);
+        }
+        Gson gson = new Gson();
+        for (int offset = 0; offset < times.length; offset += 40) {
+            String json = gson.toJson(NaturalGasSensorMessage.batch(times, readings, offset, 40));
+            MockEndpoint.send("NaturalGasMeter", "29", json);
+            MockEndpoint.send("CoalescedMeter", "29", json);
+        }
 
+        NaturalGasSensor expected = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("29");
+        NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("CoalescedMeter").get("29");
+        Assert.assertEquals(2, sensor.getDetector().getEvents(0));
+        Assert.assertEquals(expected.getDetector().getEvents(0), sensor.getDetector().getEvents(0));
+        Assert.assertEquals(expected.getDetector().getAlarmedMask(), sensor.getDetector().getAlarmedMask());
+        Assert.assertEquals(expected.getDetector().getExceededMask(), sensor.getDetector().getExceededMask());
+        Assert.assertEquals(expected.getChangePointDetector().getMean(), sensor.getChangePointDetector().getMean(), 0);
+        Assert.assertEquals(expected.getHistory().getCount(), sensor.getHistory().getCount());
+        Assert.assertEquals(MockEndpoint.receive("NaturalGasMeter", "29").size(), MockEndpoint.receive("CoalescedMeter", "29").size());
+        Assert.assertEquals(plain.getLatencyRecorder().getCount(), coalescing.getLatencyRecorder().getCount());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testReportingRate() throws MockEnvironmentException {
+        NaturalGasSensorMessageProcessor processor = new NaturalGasSensorMessageProcessor();
+        processor.setReportingRatePolicy(new ReportingRatePolicy());
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        processor,
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        // half an hour far below the limit
+        long time = System.currentTimeMillis() - 4 * 3600000L;
+        long[] times = new long[150];
+        int[] readings = new int[150];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = time + i * 60000L;
+            readings[i] = 10;
+        }
+        Gson gson = new Gson();
+        MockEndpoint.send("NaturalGasMeter", "30", gson.toJson(NaturalGasSensorMessage.batch(times, readings, 0, 30)));
+        NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("30");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_SLOW_MILLIS, sensor.getReportingInterval());
+
+        // rising toward the limit, then over it
+        MockEndpoint.send("NaturalGasMeter", "30", gson.toJson(new NaturalGasSensorMessage(26, times[30])));
+        sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("30");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_NORMAL_MILLIS, sensor.getReportingInterval());
+        MockEndpoint.send("NaturalGasMeter", "30", gson.toJson(new NaturalGasSensorMessage(60, times[31])));
+        sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("30");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_FAST_MILLIS, sensor.getReportingInterval());
+
+        // back in band: the rate stays up through the hold period, then drops once the sensor is quiet
+        MockEndpoint.send("NaturalGasMeter", "30", gson.toJson(NaturalGasSensorMessage.batch(times, readings, 32, 2)));
+        sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("30");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_FAST_MILLIS, sensor.getReportingInterval());
+        MockEndpoint.send("NaturalGasMeter", "30", gson.toJson(NaturalGasSensorMessage.batch(times, readings, 34, 116)));
+        sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("30");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_SLOW_MILLIS, sensor.getReportingInterval());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testMessageQuarantine() throws MockEnvironmentException {
+        NaturalGasSensorMessageProcessor processor = new NaturalGasSensorMessageProcessor();
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("NaturalGasMeter", processor, NaturalGasSensor.class, NaturalGasSensorMessage.class)
+                .build();
+
+        // a meter sending batches with a missing reading delta array
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 15; i++) {
+            MockEndpoint.send("NaturalGasMeter", "31", "{\"_ppmReading\":20,\"_timestamp\":" + (now + i) + ",\"_timeDeltas\":[1000]}");
+        }
+        MockEndpoint.send("NaturalGasMeter", "31", new Gson().toJson(new NaturalGasSensorMessage(21, now + 15)));
+
+        NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("31");
+        Assert.assertEquals(21, sensor.getLastPpmReading());
+        Assert.assertEquals(15, processor.getQuarantine().getTotal());
+        Assert.assertEquals("only one of the delta arrays is present", processor.getQuarantine().getEntries().get(0).getReason());
+        Assert.assertEquals("31", processor.getQuarantine().getEntries().get(0).getTwinId());
+        Assert.assertEquals(ErrorReporter.DEFAULT_MAX_PER_INTERVAL, processor.getErrorReporter().getLoggedCount());
+        Assert.assertEquals(15 - ErrorReporter.DEFAULT_MAX_PER_INTERVAL, processor.getErrorReporter().getSuppressedCount());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testEarlyWarningAlert() throws MockEnvironmentException {
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        new NaturalGasSensorMessageProcessor(),
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        // steady 10-14 ppm for a minute, then a slow leak rising by 0.5 ppm per second that stays below the limit
+        long start = System.currentTimeMillis() - 3600000;
+        long[] times = new long[120];
+        int[] readings = new int[120];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = start + i * 1000L;
+            readings[i] = 10 + (i % 5) + (i < 60 ? 0 : (i - 60) / 2);
+        }
+        Assert.assertTrue(readings[times.length - 1] < NaturalGasSensor.MAX_READING_ALLOWED_PPM);
+        Gson gson = new Gson();
+        MockEndpoint.send("NaturalGasMeter", "41", gson.toJson(NaturalGasSensorMessage.batch(times, readings, 0, times.length)));
+
+        List<String> received = MockEndpoint.receive("NaturalGasMeter", "41");
+        Assert.assertNotNull(received);
+        Assert.assertEquals(1, received.size());
+        NaturalGasAlert alert = gson.fromJson(received.get(0), NaturalGasAlert.class);
+        Assert.assertEquals(NaturalGasSensorMessageProcessor.EARLY_WARNING_MESSAGE, alert.getAlertMessage());
+        Assert.assertTrue(alert.getSourceTimestamp() > times[60]);
+        Assert.assertTrue(alert.getSourceTimestamp() <= times[times.length - 1]);
+        NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get("41");
+        Assert.assertTrue(sensor.getChangePointDetector().isWarning());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testSensorIndex() throws MockEnvironmentException {
+        NaturalGasSensorMessageProcessor processor = new NaturalGasSensorMessageProcessor();
+        NaturalGasSensorIndex index = new NaturalGasSensorIndex();
+        processor.setIndex(index);
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("NaturalGasMeter", processor, NaturalGasSensor.class, NaturalGasSensorMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        long now = System.currentTimeMillis();
+        MockEndpoint.send("NaturalGasMeter", "quiet", gson.toJson(new NaturalGasSensorMessage(20, now)));
+        MockEndpoint.send("NaturalGasMeter", "spike", gson.toJson(new NaturalGasSensorMessage(200, now)));
+        MockEndpoint.send("NaturalGasMeter", "high", gson.toJson(new NaturalGasSensorMessage(60, now)));
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(1, index.getAlarmSoundedCount());
+        Assert.assertTrue(index.getAlarmSoundedSensors().contains("spike"));
+        Assert.assertEquals(2, index.getLimitExceededCount());
+        Assert.assertTrue(index.getLimitExceededSensors().contains("high"));
+        Assert.assertTrue(index.getLimitExceededSensors().contains("spike"));
+
+        // recovering clears the limit but the alarm stays sounded
+        MockEndpoint.send("NaturalGasMeter", "spike", gson.toJson(new NaturalGasSensorMessage(20, now + 1000)));
+        MockEndpoint.send("NaturalGasMeter", "high", gson.toJson(new NaturalGasSensorMessage(30, now + 1000)));
+        Assert.assertEquals(0, index.getLimitExceededCount());
+        Assert.assertEquals(1, index.getAlarmSoundedCount());
+
+        index.remove("spike");
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(0, index.getAlarmSoundedCount());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testColumnarExport() throws Exception {
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "NaturalGasMeter",
+                        new NaturalGasSensorMessageProcessor(),
+                        NaturalGasSensor.class,
+                        NaturalGasSensorMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            int ppm = i < 5 ? 20 : 200;
+            MockEndpoint.send("NaturalGasMeter", Integer.toString(i), gson.toJson(new NaturalGasSensorMessage(ppm, now)));
+        }
+
+        List<NaturalGasSensor> sensors = new ArrayList<>();
+        for (DigitalTwinBase instance : environment.getInstances("NaturalGasMeter").values()) {
+            sensors.add((NaturalGasSensor)instance);
+        }
+        Path file = Files.createTempFile("naturalgas", ".col");
+        try {
+            Assert.assertEquals(10, NaturalGasSensorColumnarWriter.export(sensors, file));
+
+            int[] alarmedRows = new int[1];
+            try (NaturalGasSensorColumnarReader reader = new NaturalGasSensorColumnarReader(file)) {
+                reader.scan(200, Integer.MAX_VALUE, group -> {
+                    for (int row = 0; row < group.getRowCount(); row++) {
+                        if (group.alarmSounded[row]) {
+                            Assert.assertEquals(200, group.lastPpmReadings[row]);
+                            Assert.assertEquals(now, group.lastPpmTimes[row]);
+                            Assert.assertTrue(Integer.parseInt(group.ids[row]) >= 5);
+                            alarmedRows[0]++;
+                        }
+                    }
+                });
+            }
+            Assert.assertEquals(5, alarmedRows[0]);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // ids are stored with a 16-bit length, so longer ids are rejected before anything is buffered
+        char[] longId = new char[NaturalGasSensorRowGroup.MAX_ID_BYTES + 1];
+        Arrays.fill(longId, 'x');
+        NaturalGasSensorRowGroup group = new NaturalGasSensorRowGroup(1);
+        try {
+            group.add(new String(longId), sensors.get(0));
+            Assert.fail("Added an id longer than " + NaturalGasSensorRowGroup.MAX_ID_BYTES + " bytes.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(0, group.getRowCount());
+        }
+        environment.shutdown();
+    }
+
+    @Test
+    public void testSlabStore() throws MockEnvironmentException {
+        NaturalGasSensorSlabStore store = new NaturalGasSensorSlabStore(20);
+        NaturalGasSensorFlyweight flyweight = store.flyweight();
+        // every batch is applied to the digital twin and, with the same context, to the sensor's slab slot
+        NaturalGasSensorMessageProcessor processor = new NaturalGasSensorMessageProcessor() {
+            @Override
+            public ProcessingResult processMessages(ProcessingContext processingContext,
+                                                    NaturalGasSensor naturalGasSensor,
+                                                    Iterable<NaturalGasSensorMessage> messages) throws Exception {
+                ProcessingResult result = super.processMessages(processingContext, naturalGasSensor, messages);
+                processMessages(processingContext, flyweight.moveTo(store.findOrAdd(naturalGasSensor.getId())), messages);
+                return result;
+            }
+        };
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("NaturalGasMeter", processor, NaturalGasSensor.class, NaturalGasSensorMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        long start = System.currentTimeMillis() - 3600000;
+        for (int i = 0; i < 20; i++) {
+            String id = "sensor-" + i;
+            // an hour of 1 Hz readings; sensor i exceeds the limit for i minutes and then recovers
+            long[] times = new long[3600];
+            int[] readings = new int[3600];
+            for (int j = 0; j < times.length; j++) {
+                times[j] = start + j * 1000L;
+                readings[j] = j >= 1200 && j < 1200 + i * 60 ? 60 + i : 20 + (j % 3);
+            }
+            for (int offset = 0; offset < times.length; offset += 600) {
+                MockEndpoint.send("NaturalGasMeter", id, gson.toJson(NaturalGasSensorMessage.batch(times, readings, offset, 600)));
+            }
+
+            NaturalGasSensor sensor = (NaturalGasSensor)environment.getInstances("NaturalGasMeter").get(id);
+            flyweight.moveTo(store.find(id));
+            Assert.assertEquals(id, flyweight.getId());
+            Assert.assertEquals(sensor.getLastPpmReading(), flyweight.getLastPpmReading());
+            Assert.assertEquals(sensor.getLastPpmTime(), flyweight.getLastPpmTime());
+            Assert.assertEquals(sensor.isLimitExceeded(), flyweight.isLimitExceeded());
+            Assert.assertEquals(sensor.isAlarmSounded(), flyweight.isAlarmSounded());
+            Assert.assertEquals(sensor.getNumEvents(), flyweight.getNumEvents());
+            Assert.assertEquals(sensor.getChangePointDetector().getCusum(), flyweight.loadChangePointDetector().getCusum(), 0.0);
+            Assert.assertEquals(i > 15, flyweight.isAlarmSounded());
+        }
+        Assert.assertEquals(20, store.size());
+        Assert.assertEquals(-1, store.find("missing"));
+        environment.shutdown();
+    }
 }
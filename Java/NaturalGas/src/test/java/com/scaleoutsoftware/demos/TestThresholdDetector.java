@@ -0,0 +1,73 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestThresholdDetector {
+    // rule 0: above 50 for more than a minute, or a spike at 200; clears at 40
+    // rule 1: above 100, fires immediately
+    private static final ThresholdRules RULES = new ThresholdRules(
+            new double[] {50, 100},
+            new double[] {40, 100},
+            new long[] {60000, 0},
+            new double[] {200, 100});
+
+    @Test
+    public void testDurationWithHysteresis() {
+        ThresholdDetector detector = new ThresholdDetector();
+        Assert.assertEquals(0, detector.process(RULES, 0, 60));
+        Assert.assertTrue(detector.isExceeded(0));
+        // dropping into the hysteresis band keeps the exceedance open
+        Assert.assertEquals(0, detector.process(RULES, 30000, 45));
+        Assert.assertTrue(detector.isExceeded(0));
+        Assert.assertEquals(1, detector.process(RULES, 60001, 55));
+        Assert.assertTrue(detector.isAlarmed(0));
+        Assert.assertEquals(1, detector.getEvents(0));
+
+        // clearing below 40 starts a new exceedance next time
+        Assert.assertEquals(0, detector.process(RULES, 70000, 40));
+        Assert.assertFalse(detector.isExceeded(0));
+        Assert.assertEquals(0, detector.process(RULES, 80000, 51));
+        Assert.assertEquals(80000, detector.getStartTime(0));
+        Assert.assertEquals(2, detector.getEvents(0));
+    }
+
+    @Test
+    public void testBatchSpike() {
+        ThresholdDetector detector = new ThresholdDetector();
+        long[] times = {0, 1000, 2000, 3000};
+        int[] values = {10, 20, 150, 30};
+        Assert.assertEquals(0, detector.process(RULES, times, values, 0, 2));
+        // 150 is above rule 1's limit with no minimum duration, but below rule 0's spike level
+        Assert.assertEquals(2, detector.process(RULES, times, values, 2, 2));
+        Assert.assertFalse(detector.isAlarmed(0));
+        Assert.assertTrue(detector.isAlarmed(1));
+        Assert.assertFalse(detector.isExceeded(1));
+        Assert.assertEquals(3, detector.process(RULES, new long[] {4000}, new int[] {250}, 0, 1));
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable table of the alert levels the Status Tracker rules assign, per region and node type, compiled into one flat
+ * int array. The current table is published through a single atomic reference: processors read one snapshot per
+ * batch, and operators can tune levels at runtime by publishing a new table without redeploying.
+ *
+ * Unknown regions (code 0) have their own rows, which default to the same levels as every other region. The rows for
+ * unknown node types (code 0) are left at 0 by {@link #defaults()}, since the rules only look up the infrastructure
+ * and controller rows.
+ *
+ * The current table is a static of this JVM. Publishing it does not reach processors hosted in other processes; each
+ * host of a deployed model has to publish the table itself, e.g. from its startup or configuration code.
+ */
+public final class AlertProfiles {
+    /* Rule levels, one per Status Tracker rule */
+    public static final int LEVEL_NORMAL                  = 0;
+    public static final int LEVEL_MINOR                   = 1;
+    public static final int LEVEL_SEVERE                  = 2;
+    public static final int LEVEL_MODERATE_AFTER_SEVERE   = 3;    // moderate incident after a severe incident
+    public static final int LEVEL_MODERATE_FIRST          = 4;    // moderate incident, no severe or false incidents
+    public static final int LEVEL_MODERATE_MOSTLY_FALSE   = 5;    // moderate incident, at least half were false
+    public static final int LEVEL_MODERATE_MOSTLY_REAL    = 6;    // moderate incident, less than half were false
+    public static final int LEVEL_COUNT                   = 7;
+
+    private static final AtomicReference<AlertProfiles> CURRENT = new AtomicReference<>(defaults());
+
+    // [region][type][level]
+    private final int[] _levels;
+
+    private AlertProfiles(int[] levels) {
+        _levels = levels;
+    }
+
+    /**
+     * Returns the current profiles. Read once per batch so a batch is evaluated against a single table.
+     * @return the current profiles
+     */
+    public static AlertProfiles current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Publishes new profiles in this JVM; batches that start afterwards use them. Processors on other hosts keep their
+     * own profiles, so a deployed model needs each host to publish the table.
+     * @param profiles the profiles
+     */
+    public static void publish(AlertProfiles profiles) {
+        if(profiles == null) {
+            throw new IllegalArgumentException("profiles must not be null.");
+        }
+        CURRENT.set(profiles);
+    }
+
+    /**
+     * Returns the profiles built from the alert levels in {@link Constants}.
+     * @return the default profiles
+     */
+    public static AlertProfiles defaults() {
+        Builder builder = new Builder();
+        builder.setAlertLevel(NodeCodes.TYPE_INFRASTRUCTURE, LEVEL_NORMAL, Constants.INFRASTRUCTURE_NORMAL_ALERTLEVEL);
+        builder.setAlertLevel(NodeCodes.TYPE_INFRASTRUCTURE, LEVEL_MINOR, Constants.INFRASTRUCTURE_MINOR_ALERTLEVEL);
+        builder.setAlertLevel(NodeCodes.TYPE_INFRASTRUCTURE, LEVEL_SEVERE, Constants.INFRASTRUCTURE_SEVERE_ALERTLEVEL);
+        builder.setAlertLevel(NodeCodes.TYPE_INFRASTRUCTURE, LEVEL_MODERATE_AFTER_SEVERE, Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL + 1);
+        builder.setAlertLevel(NodeCodes.TYPE_INFRASTRUCTURE, LEVEL_MODERATE_FIRST, Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL + 2);
+        builder.setAlertLevel(NodeCodes.TYPE_INFRASTRUCTURE, LEVEL_MODERATE_MOSTLY_FALSE, Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL + 3);
+        builder.setAlertLevel(NodeCodes.TYPE_INFRASTRUCTURE, LEVEL_MODERATE_MOSTLY_REAL, Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL + 4);
+        builder.setAlertLevel(NodeCodes.TYPE_CONTROLLER, LEVEL_NORMAL, Constants.CONTROLLER_NORMAL_ALERTLEVEL);
+        builder.setAlertLevel(NodeCodes.TYPE_CONTROLLER, LEVEL_MINOR, Constants.CONTROLLER_MINOR_ALERT_LEVEL);
+        builder.setAlertLevel(NodeCodes.TYPE_CONTROLLER, LEVEL_SEVERE, Constants.CONTROLLER_SEVERE_ALERTLEVEL);
+        builder.setAlertLevel(NodeCodes.TYPE_CONTROLLER, LEVEL_MODERATE_AFTER_SEVERE, Constants.CONTROLLER_MODERATE_ALERTLEVEL + 3);
+        builder.setAlertLevel(NodeCodes.TYPE_CONTROLLER, LEVEL_MODERATE_FIRST, Constants.CONTROLLER_MODERATE_ALERTLEVEL + 4);
+        builder.setAlertLevel(NodeCodes.TYPE_CONTROLLER, LEVEL_MODERATE_MOSTLY_FALSE, Constants.CONTROLLER_MODERATE_ALERTLEVEL + 5);
+        builder.setAlertLevel(NodeCodes.TYPE_CONTROLLER, LEVEL_MODERATE_MOSTLY_REAL, Constants.CONTROLLER_MODERATE_ALERTLEVEL + 6);
+        return builder.build();
+    }
+
+    /**
+     * Returns the alert level a rule assigns.
+     * @param regionCode the node's region code
+     * @param typeCode the node's type code
+     * @param level the rule level (LEVEL_*)
+     * @return the alert level
+     */
+    public int getAlertLevel(int regionCode, int typeCode, int level) {
+        return _levels[(regionCode * NodeCodes.TYPE_COUNT + typeCode) * LEVEL_COUNT + level];
+    }
+
+    /**
+     * Returns a builder initialized with these profiles, for publishing a modified copy.
+     * @return the builder
+     */
+    public Builder toBuilder() {
+        return new Builder(_levels);
+    }
+
+    /**
+     * Builds AlertProfiles. Levels set without a region apply to every region.
+     */
+    public static final class Builder {
+        private final int[] _levels;
+
+        public Builder() {
+            _levels = new int[NodeCodes.REGION_COUNT * NodeCodes.TYPE_COUNT * LEVEL_COUNT];
+        }
+
+        private Builder(int[] levels) {
+            _levels = levels.clone();
+        }
+
+        /**
+         * Sets the alert level a rule assigns to a node type in every region.
+         * @param typeCode the node type code
+         * @param level the rule level (LEVEL_*)
+         * @param alertLevel the alert level
+         * @return this builder
+         */
+        public Builder setAlertLevel(int typeCode, int level, int alertLevel) {
+            for(int region = 0; region < NodeCodes.REGION_COUNT; region++) {
+                setAlertLevel(region, typeCode, level, alertLevel);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the alert level a rule assigns to a node type in one region.
+         * @param regionCode the region code
+         * @param typeCode the node type code
+         * @param level the rule level (LEVEL_*)
+         * @param alertLevel the alert level
+         * @return this builder
+         */
+        public Builder setAlertLevel(int regionCode, int typeCode, int level, int alertLevel) {
+            if(regionCode < 0 || regionCode >= NodeCodes.REGION_COUNT || typeCode < 0 || typeCode >= NodeCodes.TYPE_COUNT
+                    || level < 0 || level >= LEVEL_COUNT) {
+                throw new IllegalArgumentException("Invalid region, node type or level code.");
+            }
+            _levels[(regionCode * NodeCodes.TYPE_COUNT + typeCode) * LEVEL_COUNT + level] = alertLevel;
+            return this;
+        }
+
+        /**
+         * Builds the profiles.
+         * @return the profiles
+         */
+        public AlertProfiles build() {
+            return new AlertProfiles(_levels.clone());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the progress of a command broadcast by a {@link RegionalBroadcaster}. Counts are updated by the worker threads
+ * as each batch completes and can be read while the broadcast is still running.
+ */
+public class BroadcastResult {
+    private final int _total;
+    private final CountDownLatch _pendingBatches;
+    private final AtomicInteger _delivered = new AtomicInteger();
+    private final AtomicInteger _failed = new AtomicInteger();
+    private final List<String> _failedIds = new ArrayList<>();
+
+    BroadcastResult(int total, int batches) {
+        _total = total;
+        _pendingBatches = new CountDownLatch(batches);
+    }
+
+    void delivered() {
+        _delivered.incrementAndGet();
+    }
+
+    void failed(String id) {
+        _failed.incrementAndGet();
+        synchronized (_failedIds) {
+            _failedIds.add(id);
+        }
+    }
+
+    void batchComplete() {
+        _pendingBatches.countDown();
+    }
+
+    /**
+     * Waits for every batch of the broadcast to complete.
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if the broadcast completed, false if the timeout elapsed first
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return _pendingBatches.await(timeout, unit);
+    }
+
+    /**
+     * Returns true once every batch of the broadcast has completed.
+     * @return true if the broadcast is complete
+     */
+    public boolean isDone() {
+        return _pendingBatches.getCount() == 0;
+    }
+
+    /**
+     * Returns the number of digital twins the command was addressed to.
+     * @return the number of target twins
+     */
+    public int getTotal() {
+        return _total;
+    }
+
+    /**
+     * Returns the number of digital twins the command has been delivered to so far.
+     * @return the number of successful sends
+     */
+    public int getDelivered() {
+        return _delivered.get();
+    }
+
+    /**
+     * Returns the number of digital twins the command could not be delivered to so far.
+     * @return the number of failed sends
+     */
+    public int getFailed() {
+        return _failed.get();
+    }
+
+    /**
+     * Returns the ids of the digital twins the command could not be delivered to, so they can be retried.
+     * @return a snapshot of the failed ids
+     */
+    public List<String> getFailedIds() {
+        synchronized (_failedIds) {
+            return new ArrayList<>(_failedIds);
+        }
+    }
+}
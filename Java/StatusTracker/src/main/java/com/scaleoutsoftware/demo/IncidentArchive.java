@@ -0,0 +1,504 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold storage for incident reports evicted from a StatusTracker's incident list.
+ *
+ * Incidents are queued by the message processor and appended by a background writer thread to a directory of
+ * append-only segment files, so archiving only blocks message processing when the bounded queue is full. Each tracker has a sparse index with one
+ * entry per segment it appears in (the offsets of its first and last records and the segment's time range for that
+ * tracker), so reading a tracker's history only scans the part of each segment that contains it, a chunk at a time.
+ *
+ * Segment layout: int magic, int format version, then records. Record layout: int record length, short id length,
+ * id bytes (UTF-8), long timestamp, long source timestamp, short type length, type bytes.
+ */
+public class IncidentArchive implements Closeable {
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "incidents-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAX_WRITE_BATCH = 4096;
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    private static final int SEGMENT_MAGIC = 0x494E4341;   // "INCA"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    // record length of an empty id and type
+    private static final int MIN_RECORD_LENGTH = Short.BYTES + 2 * Long.BYTES + Short.BYTES;
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+    private static final int MAX_RECORD_LENGTH = MIN_RECORD_LENGTH + 2 * MAX_STRING_LENGTH;
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private static class Record {
+        final String trackerId;
+        final IncidentReport report;
+
+        Record(String trackerId, IncidentReport report) {
+            this.trackerId = trackerId;
+            this.report = report;
+        }
+    }
+
+    private static class IndexEntry {
+        final int segment;
+        final long offset;
+        long endOffset;     // end of the tracker's last record in the segment
+        long minTimestamp;
+        long maxTimestamp;
+
+        IndexEntry(int segment, long offset, long endOffset, long timestamp) {
+            this.segment = segment;
+            this.offset = offset;
+            this.endOffset = endOffset;
+            minTimestamp = timestamp;
+            maxTimestamp = timestamp;
+        }
+    }
+
+    private final Path _directory;
+    private final long _segmentSize;
+    private final BlockingQueue<Record> _queue;
+    private final Map<String, List<IndexEntry>> _index = new HashMap<>();
+    private final Thread _writer;
+    // guards the counters, _closed and _writeFailure, and is notified whenever the writer makes progress
+    private final Object _progress = new Object();
+    private long _enqueued;
+    private long _written;
+    private boolean _closed;
+    private IOException _writeFailure;
+
+    // active segment, only touched by the writer thread after construction
+    private FileChannel _activeChannel;
+    private int _activeSegment;
+    private long _activeSize;
+
+    /**
+     * Opens (or creates) an archive in a directory using the default segment size.
+     * @param directory the directory holding the segment files
+     * @throws IOException if the directory or its existing segments cannot be read
+     */
+    public IncidentArchive(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Opens (or creates) an archive in a directory. Existing segments are scanned to rebuild the index and new
+     * incidents are appended to the last segment.
+     * @param directory the directory holding the segment files
+     * @param segmentSize the size at which the active segment is rolled over
+     * @param queueCapacity the number of incidents that may wait for the writer before archive() blocks
+     * @throws IOException if the directory or its existing segments cannot be read, or a segment has an unsupported
+     * format
+     */
+    public IncidentArchive(Path directory, long segmentSize, int queueCapacity) throws IOException {
+        _directory = directory;
+        _segmentSize = segmentSize;
+        _queue = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(directory);
+        List<Integer> segments = listSegments();
+        long validLength = HEADER_SIZE;
+        for (int segment : segments) {
+            validLength = indexSegment(segment);
+        }
+        _activeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        openActiveSegment();
+        if (_activeSize > validLength) {
+            // drop a torn record left at the end of the last segment by a crash
+            _activeChannel.truncate(validLength);
+            _activeSize = validLength;
+        }
+        _writer = new Thread(this::writeLoop, "IncidentArchive-writer");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    /**
+     * Queues an incident report for archiving. The report is written by the background writer; this only blocks while
+     * the queue is full.
+     * @param trackerId the id of the status tracker the incident belongs to
+     * @param report the incident report
+     * @throws IllegalStateException if the archive is closed
+     * @throws UncheckedIOException if the writer has failed
+     */
+    public void archive(String trackerId, IncidentReport report) {
+        if (utf8Length(trackerId) > MAX_STRING_LENGTH || utf8Length(report.incidentType) > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Tracker ids and incident types are limited to " + MAX_STRING_LENGTH + " bytes.");
+        }
+        Record record = new Record(trackerId, report);
+        synchronized (_progress) {
+            // the check and the add happen under one lock, so close() cannot miss a record
+            while (true) {
+                checkOpen();
+                if (_queue.offer(record)) {
+                    _enqueued++;
+                    return;
+                }
+                try {
+                    _progress.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the incident archive queue.", e);
+                }
+            }
+        }
+    }
+
+    // called holding _progress
+    private void checkOpen() {
+        if (_writeFailure != null) {
+            throw new UncheckedIOException("The incident archive writer failed.", _writeFailure);
+        }
+        if (_closed) {
+            throw new IllegalStateException("The incident archive is closed.");
+        }
+    }
+
+    /**
+     * Blocks until every incident queued so far has been written to its segment.
+     * @throws IOException if the writer failed to write a batch
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws IOException, InterruptedException {
+        synchronized (_progress) {
+            long target = _enqueued;
+            if (_writeFailure != null) {
+                throw _writeFailure;
+            }
+            while (_written < target && _writeFailure == null) {
+                _progress.wait();
+            }
+            if (_writeFailure != null) {
+                throw _writeFailure;
+            }
+        }
+    }
+
+    /**
+     * Reads a tracker's archived incidents with a timestamp in [from, to], oldest first. Incidents that are still
+     * queued are flushed first.
+     * @param trackerId the status tracker id
+     * @param from the earliest timestamp (inclusive)
+     * @param to the latest timestamp (inclusive)
+     * @return the matching incident reports
+     * @throws IOException if a segment cannot be read
+     * @throws InterruptedException if interrupted while flushing queued incidents
+     */
+    public List<IncidentReport> read(String trackerId, long from, long to) throws IOException, InterruptedException {
+        flush();
+        List<IndexEntry> entries;
+        synchronized (_index) {
+            List<IndexEntry> indexed = _index.get(trackerId);
+            if (indexed == null) {
+                return Collections.emptyList();
+            }
+            entries = new ArrayList<>();
+            for (IndexEntry entry : indexed) {
+                if (entry.maxTimestamp >= from && entry.minTimestamp <= to) {
+                    entries.add(entry);
+                }
+            }
+        }
+        List<IncidentReport> reports = new ArrayList<>();
+        for (IndexEntry entry : entries) {
+            readEntry(entry, trackerId, from, to, reports);
+        }
+        return reports;
+    }
+
+    /**
+     * Reads the part of a segment an index entry covers, a chunk at a time, and collects the tracker's matching records.
+     */
+    private void readEntry(IndexEntry entry, String trackerId, long from, long to, List<IncidentReport> reports)
+            throws IOException {
+        Path path = segmentPath(entry.segment);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (entry.offset > channel.size()) {
+                throw new IOException("Index offset " + entry.offset + " is outside " + path + ".");
+            }
+            // the writer indexes a batch before appending it, so the end may not be on disk yet
+            long end = Math.min(entry.endOffset, channel.size());
+            ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(READ_CHUNK_SIZE, end - entry.offset));
+            buffer.limit(0);
+            long position = entry.offset;
+            while (true) {
+                while (buffer.remaining() >= Integer.BYTES) {
+                    int length = buffer.getInt(buffer.position());
+                    if (length < MIN_RECORD_LENGTH || length > MAX_RECORD_LENGTH) {
+                        throw new IOException("Corrupt record length " + length + " in " + path + ".");
+                    }
+                    if (length > buffer.remaining() - Integer.BYTES) {
+                        break;
+                    }
+                    buffer.position(buffer.position() + Integer.BYTES);
+                    int next = buffer.position() + length;
+                    String id = getString(buffer, next);
+                    if (id.equals(trackerId)) {
+                        long timestamp = buffer.getLong();
+                        long sourceTimestamp = buffer.getLong();
+                        if (timestamp >= from && timestamp <= to) {
+                            reports.add(new IncidentReport(timestamp, getString(buffer, next), sourceTimestamp));
+                        }
+                    }
+                    buffer.position(next);
+                }
+                if (position >= end) {
+                    // anything left is a batch the writer is still appending
+                    return;
+                }
+                buffer.compact();
+                if (!buffer.hasRemaining()) {
+                    // a record longer than a chunk
+                    ByteBuffer larger = ByteBuffer.allocate(Integer.BYTES + buffer.getInt(0));
+                    buffer.flip();
+                    buffer = larger.put(buffer);
+                }
+                buffer.limit((int)Math.min(buffer.capacity(), buffer.position() + end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    return;
+                }
+                position += read;
+                buffer.flip();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (_progress) {
+            _closed = true;
+            _progress.notifyAll();
+        }
+        try {
+            _writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        _activeChannel.close();
+        if (_writeFailure != null) {
+            throw _writeFailure;
+        }
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Record first = _queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    synchronized (_progress) {
+                        // nothing can be queued once closed, so an empty queue means every record was written
+                        if (_closed && _queue.isEmpty()) {
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                batch.add(first);
+                _queue.drainTo(batch, MAX_WRITE_BATCH - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                fail(new IOException("The incident archive writer was interrupted.", e));
+                return;
+            } catch (IOException e) {
+                fail(e);
+                return;
+            } catch (RuntimeException | Error e) {
+                // fail first so callers waiting in flush() or archive() get an exception instead of hanging
+                fail(new IOException("The incident archive writer failed.", e));
+                throw e;
+            }
+            synchronized (_progress) {
+                _written += batch.size();
+                _progress.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void fail(IOException e) {
+        synchronized (_progress) {
+            _writeFailure = e;
+            // nothing will drain the queue any more
+            _queue.clear();
+            _progress.notifyAll();
+        }
+    }
+
+    private void write(List<Record> batch) throws IOException {
+        if (_activeSize >= _segmentSize) {
+            _activeChannel.close();
+            _activeSegment++;
+            openActiveSegment();
+        }
+        byte[][] ids = new byte[batch.size()][];
+        byte[][] types = new byte[batch.size()][];
+        int size = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            ids[i] = record.trackerId.getBytes(StandardCharsets.UTF_8);
+            types[i] = record.report.incidentType.getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + Short.BYTES + ids[i].length + 2 * Long.BYTES + Short.BYTES + types[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            long offset = _activeSize + buffer.position();
+            int length = Short.BYTES + ids[i].length + 2 * Long.BYTES + Short.BYTES + types[i].length;
+            buffer.putInt(length);
+            buffer.putShort((short)ids[i].length).put(ids[i]);
+            buffer.putLong(record.report.timestamp);
+            buffer.putLong(record.report.sourceTimestamp);
+            buffer.putShort((short)types[i].length).put(types[i]);
+            addToIndex(record.trackerId, _activeSegment, offset, offset + Integer.BYTES + length, record.report.timestamp);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            _activeChannel.write(buffer);
+        }
+        _activeSize += size;
+    }
+
+    private void addToIndex(String trackerId, int segment, long offset, long endOffset, long timestamp) {
+        synchronized (_index) {
+            List<IndexEntry> entries = _index.computeIfAbsent(trackerId, k -> new ArrayList<>());
+            IndexEntry last = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+            if (last != null && last.segment == segment) {
+                last.endOffset = Math.max(last.endOffset, endOffset);
+                last.minTimestamp = Math.min(last.minTimestamp, timestamp);
+                last.maxTimestamp = Math.max(last.maxTimestamp, timestamp);
+            } else {
+                entries.add(new IndexEntry(segment, offset, endOffset, timestamp));
+            }
+        }
+    }
+
+    private long indexSegment(int segment) throws IOException {
+        byte[] contents = Files.readAllBytes(segmentPath(segment));
+        if (contents.length == 0) {
+            // created but not yet written by a crashed writer; openActiveSegment() adds the header
+            return HEADER_SIZE;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        if (contents.length < HEADER_SIZE || buffer.getInt() != SEGMENT_MAGIC) {
+            throw new IOException(segmentPath(segment) + " is not an incident archive segment.");
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(segmentPath(segment) + " has unsupported format version " + version + ".");
+        }
+        long validLength = HEADER_SIZE;
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if (length < MIN_RECORD_LENGTH || length > buffer.remaining()) {
+                // a torn record at the end of the segment
+                break;
+            }
+            int next = buffer.position() + length;
+            String id = getString(buffer, next);
+            addToIndex(id, segment, validLength, next, buffer.getLong());
+            buffer.position(next);
+            validLength = next;
+        }
+        return validLength;
+    }
+
+    private void openActiveSegment() throws IOException {
+        _activeChannel = FileChannel.open(segmentPath(_activeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        _activeSize = _activeChannel.size();
+        if (_activeSize == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION);
+            header.flip();
+            while (header.hasRemaining()) {
+                _activeChannel.write(header);
+            }
+            _activeSize = HEADER_SIZE;
+        }
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(_directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                segments.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(int segment) {
+        return _directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static String getString(ByteBuffer buffer, int recordEnd) throws IOException {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > recordEnd - buffer.position()) {
+            throw new IOException("String length " + length + " overruns its record.");
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -28,11 +28,17 @@ package com.scaleoutsoftware.demo;
 import java.io.Serializable;
 
 public class IncidentReport implements Serializable {
-    public long timestamp;
+    public long timestamp;          // time the incident was detected
     public String incidentType;
+    public long sourceTimestamp;    // time the device reported the incident (0 if unknown)
 
     public IncidentReport(long ts, String type) {
+        this(ts, type, 0);
+    }
+
+    public IncidentReport(long ts, String type, long sourceTs) {
         timestamp = ts;
         incidentType = type;
+        sourceTimestamp = sourceTs;
     }
 }
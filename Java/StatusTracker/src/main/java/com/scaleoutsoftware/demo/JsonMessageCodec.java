@@ -0,0 +1,68 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes messages as UTF-8 JSON, the format twin messages have always used.
+ * @param <T> the message type
+ */
+public class JsonMessageCodec<T> implements MessageCodec<T> {
+    private static final Gson GSON = new Gson();
+    private final Class<T> _messageClass;
+
+    /**
+     * Creates a JSON codec.
+     * @param messageClass the message class
+     */
+    public JsonMessageCodec(Class<T> messageClass) {
+        _messageClass = messageClass;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] encode(T message) {
+        return GSON.toJson(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T decode(byte[] bytes) {
+        try {
+            return GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), _messageClass);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Invalid JSON " + _messageClass.getSimpleName() + ".", e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency histogram. Values are recorded in milliseconds into log-linear buckets (exact below 32 ms, then
+ * 16 buckets per power of two, i.e. within about 6%), so recording is a couple of array operations and never allocates.
+ */
+public class LatencyRecorder {
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - 5) * SUB_BUCKETS;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * Percentiles captured from a LatencyRecorder.
+     */
+    public static class Snapshot {
+        private final long _count;
+        private final long _p50;
+        private final long _p99;
+        private final long _p999;
+        private final long _max;
+
+        Snapshot(long count, long p50, long p99, long p999, long max) {
+            _count = count;
+            _p50 = p50;
+            _p99 = p99;
+            _p999 = p999;
+            _max = max;
+        }
+
+        public long getCount() {
+            return _count;
+        }
+
+        public long getP50() {
+            return _p50;
+        }
+
+        public long getP99() {
+            return _p99;
+        }
+
+        public long getP999() {
+            return _p999;
+        }
+
+        public long getMax() {
+            return _max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + _count + " p50=" + _p50 + "ms p99=" + _p99 + "ms p999=" + _p999 + "ms max=" + _max + "ms";
+        }
+    }
+
+    /**
+     * Records one latency. Negative values (clock skew between the device and the service) are recorded as 0.
+     * @param latencyMillis the latency in milliseconds
+     */
+    public void record(long latencyMillis) {
+        long value = Math.max(0, latencyMillis);
+        _counts.incrementAndGet(bucket(value));
+        _count.incrementAndGet();
+        long max = _max.get();
+        while (value > max && !_max.compareAndSet(max, value)) {
+            max = _max.get();
+        }
+    }
+
+    /**
+     * Records the latency between a source event and now.
+     * @param sourceTimestamp the event's timestamp in milliseconds, or 0 if unknown (nothing is recorded)
+     * @param now the current time in milliseconds
+     */
+    public void recordSince(long sourceTimestamp, long now) {
+        if (sourceTimestamp > 0) {
+            record(now - sourceTimestamp);
+        }
+    }
+
+    /**
+     * Captures the current percentiles. Each percentile is reported as the upper bound of its bucket.
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        long max = _max.get();
+        return new Snapshot(total, percentile(counts, total, 0.5, max), percentile(counts, total, 0.99, max),
+                percentile(counts, total, 0.999, max), max);
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            _counts.set(i, 0);
+        }
+        _count.set(0);
+        _max.set(0);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return the count
+     */
+    public long getCount() {
+        return _count.get();
+    }
+
+    private static long percentile(long[] counts, long total, double fraction, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long)Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int top = (int)(value >>> (exponent - 4));
+        return LINEAR_BUCKETS + (exponent - 5) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 5;
+        long top = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << (exponent - 4)) - 1;
+    }
+}
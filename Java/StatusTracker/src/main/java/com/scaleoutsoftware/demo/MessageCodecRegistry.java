@@ -0,0 +1,82 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+/**
+ * Picks the codec for each incoming message from its first byte, so senders using different wire formats (e.g. JSON
+ * and binary during a migration) can share one endpoint. Messages whose first byte has no registered codec go to the
+ * fallback codec.
+ *
+ * Register codecs before decoding; lookups are not synchronized with registration.
+ * @param <T> the message type
+ */
+public class MessageCodecRegistry<T> {
+    private final MessageCodec<T>[] _codecs = newCodecArray(256);
+    private final MessageCodec<T> _fallback;
+
+    /**
+     * Creates a registry.
+     * @param fallback the codec for messages whose first byte has no registered codec
+     */
+    public MessageCodecRegistry(MessageCodec<T> fallback) {
+        _fallback = fallback;
+    }
+
+    /**
+     * Registers a codec for messages that start with a given byte.
+     * @param firstByte the first byte, e.g. a format's magic byte
+     * @param codec the codec
+     * @return this registry
+     */
+    public MessageCodecRegistry<T> register(byte firstByte, MessageCodec<T> codec) {
+        _codecs[firstByte & 0xFF] = codec;
+        return this;
+    }
+
+    /**
+     * Returns the codec for an encoded message.
+     * @param bytes the encoded message
+     * @return the codec
+     */
+    public MessageCodec<T> codecFor(byte[] bytes) {
+        MessageCodec<T> codec = bytes.length == 0 ? null : _codecs[bytes[0] & 0xFF];
+        return codec == null ? _fallback : codec;
+    }
+
+    /**
+     * Decodes a message with the codec for its first byte.
+     * @param bytes the encoded message
+     * @return the message
+     */
+    public T decode(byte[] bytes) {
+        return codecFor(bytes).decode(bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MessageCodec<T>[] newCodecArray(int length) {
+        return (MessageCodec<T>[])new MessageCodec<?>[length];
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+/**
+ * Small integer codes for the node type, node condition and region strings defined in {@link Constants}. The codes are
+ * dense so they can be used directly as array indexes; code 0 is reserved for values that are not recognized.
+ */
+public class NodeCodes {
+    public static final int UNKNOWN = 0;
+
+    /* Node type codes */
+    public static final int TYPE_INFRASTRUCTURE = 1;
+    public static final int TYPE_CONTROLLER     = 2;
+    public static final int TYPE_COUNT          = 3;
+
+    /* Node condition codes */
+    public static final int CONDITION_OFFLINE   = 1;
+    public static final int CONDITION_NORMAL    = 2;
+    public static final int CONDITION_MINOR     = 3;
+    public static final int CONDITION_MODERATE  = 4;
+    public static final int CONDITION_SEVERE    = 5;
+    public static final int CONDITION_COUNT     = 6;
+
+    /* Region codes */
+    public static final int REGION_NW    = 1;
+    public static final int REGION_SW    = 2;
+    public static final int REGION_MN    = 3;
+    public static final int REGION_MS    = 4;
+    public static final int REGION_NE    = 5;
+    public static final int REGION_SE    = 6;
+    public static final int REGION_COUNT = 7;
+
+    /**
+     * Returns the code for a node type.
+     * @param nodeType the node type
+     * @return the node type code, or UNKNOWN
+     */
+    public static int typeCode(String nodeType) {
+        if(Constants.NODE_TYPE_INFRASTRUCTURE.equals(nodeType)) return TYPE_INFRASTRUCTURE;
+        if(Constants.NODE_TYPE_CONTROLLER.equals(nodeType)) return TYPE_CONTROLLER;
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the node type for a code.
+     * @param code the node type code
+     * @return the node type, or an empty string for UNKNOWN
+     */
+    public static String typeName(int code) {
+        switch(code) {
+            case TYPE_INFRASTRUCTURE: return Constants.NODE_TYPE_INFRASTRUCTURE;
+            case TYPE_CONTROLLER: return Constants.NODE_TYPE_CONTROLLER;
+            default: return "";
+        }
+    }
+
+    /**
+     * Returns the code for a node condition.
+     * @param condition the node condition
+     * @return the node condition code, or UNKNOWN
+     */
+    public static int conditionCode(String condition) {
+        if(Constants.NODE_CONDITION_OFFLINE.equals(condition)) return CONDITION_OFFLINE;
+        if(Constants.NODE_CONDITION_NORMAL.equals(condition)) return CONDITION_NORMAL;
+        if(Constants.NODE_CONDITION_MINOR.equals(condition)) return CONDITION_MINOR;
+        if(Constants.NODE_CONDITION_MODERATE.equals(condition)) return CONDITION_MODERATE;
+        if(Constants.NODE_CONDITION_SEVERE.equals(condition)) return CONDITION_SEVERE;
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the node condition for a code.
+     * @param code the node condition code
+     * @return the node condition, or an empty string for UNKNOWN
+     */
+    public static String conditionName(int code) {
+        switch(code) {
+            case CONDITION_OFFLINE: return Constants.NODE_CONDITION_OFFLINE;
+            case CONDITION_NORMAL: return Constants.NODE_CONDITION_NORMAL;
+            case CONDITION_MINOR: return Constants.NODE_CONDITION_MINOR;
+            case CONDITION_MODERATE: return Constants.NODE_CONDITION_MODERATE;
+            case CONDITION_SEVERE: return Constants.NODE_CONDITION_SEVERE;
+            default: return "";
+        }
+    }
+
+    /**
+     * Returns the code for a region.
+     * @param region the region
+     * @return the region code, or UNKNOWN
+     */
+    public static int regionCode(String region) {
+        if(Constants.NODE_REGION_NW.equals(region)) return REGION_NW;
+        if(Constants.NODE_REGION_SW.equals(region)) return REGION_SW;
+        if(Constants.NODE_REGION_MN.equals(region)) return REGION_MN;
+        if(Constants.NODE_REGION_MS.equals(region)) return REGION_MS;
+        if(Constants.NODE_REGION_NE.equals(region)) return REGION_NE;
+        if(Constants.NODE_REGION_SE.equals(region)) return REGION_SE;
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the region for a code.
+     * @param code the region code
+     * @return the region, or an empty string for UNKNOWN
+     */
+    public static String regionName(int code) {
+        switch(code) {
+            case REGION_NW: return Constants.NODE_REGION_NW;
+            case REGION_SW: return Constants.NODE_REGION_SW;
+            case REGION_MN: return Constants.NODE_REGION_MN;
+            case REGION_MS: return Constants.NODE_REGION_MS;
+            case REGION_NE: return Constants.NODE_REGION_NE;
+            case REGION_SE: return Constants.NODE_REGION_SE;
+            default: return "";
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Command sent to a power grid node through the data source to change how often it reports its status.
+ *
+ * Layout: magic byte, version byte, reporting interval in milliseconds (int). The magic byte is never the first byte
+ * of UTF-8 JSON, so a node can tell the command from a JSON message.
+ */
+public final class RateControlCommand {
+    public static final byte MAGIC   = (byte)0xA9;
+    public static final byte VERSION = 1;
+    private static final int SIZE = 6;
+
+    private final int _intervalMillis;
+
+    /**
+     * Creates a command.
+     * @param intervalMillis the reporting interval in milliseconds
+     */
+    public RateControlCommand(int intervalMillis) {
+        if(intervalMillis <= 0) {
+            throw new IllegalArgumentException("The reporting interval must be positive.");
+        }
+        _intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Returns the reporting interval.
+     * @return the interval in milliseconds
+     */
+    public int getIntervalMillis() {
+        return _intervalMillis;
+    }
+
+    /**
+     * Encodes the command.
+     * @return the encoded command
+     */
+    public byte[] encode() {
+        return ByteBuffer.allocate(SIZE).put(MAGIC).put(VERSION).putInt(_intervalMillis).array();
+    }
+
+    /**
+     * Decodes a command.
+     * @param bytes the encoded command
+     * @return the command
+     * @throws IllegalArgumentException if the bytes are not a rate control command
+     */
+    public static RateControlCommand decode(byte[] bytes) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            if(in.get() != MAGIC) {
+                throw new IllegalArgumentException("Not a rate control command.");
+            }
+            byte version = in.get();
+            if(version != VERSION) {
+                throw new IllegalArgumentException("Unsupported rate control command version " + version + ".");
+            }
+            return new RateControlCommand(in.getInt());
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated rate control command.", e);
+        }
+    }
+}
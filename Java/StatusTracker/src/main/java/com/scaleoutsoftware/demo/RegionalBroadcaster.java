@@ -0,0 +1,149 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Fans a command out to every StatusTracker in a region or bounding box. Member ids are resolved from the
+ * {@link StatusTrackerIndex} maintained by the {@link StatusTrackerMessageProcessor}, split into batches and delivered
+ * by the executor's worker threads through a {@link CommandSender}, so clearing a region costs one task per batch
+ * rather than one round trip per node on the caller's thread.
+ */
+public class RegionalBroadcaster {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final StatusTrackerIndex _index;
+    private final CommandSender _sender;
+    private final ExecutorService _executor;
+    private final int _batchSize;
+
+    /**
+     * Creates a broadcaster with the default batch size.
+     * @param index the index used to resolve members
+     * @param sender delivers a command to one digital twin
+     * @param executor runs the batches; owned by the caller
+     */
+    public RegionalBroadcaster(StatusTrackerIndex index, CommandSender sender, ExecutorService executor) {
+        this(index, sender, executor, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a broadcaster.
+     * @param index the index used to resolve members
+     * @param sender delivers a command to one digital twin
+     * @param executor runs the batches; owned by the caller
+     * @param batchSize the number of digital twins handled by one task
+     */
+    public RegionalBroadcaster(StatusTrackerIndex index, CommandSender sender, ExecutorService executor, int batchSize) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        _index = index;
+        _sender = sender;
+        _executor = executor;
+        _batchSize = batchSize;
+    }
+
+    /**
+     * Creates a command that resets a StatusTracker's alert level to normal and resolves its current incident.
+     * @return the reset command
+     */
+    public static StatusTrackerMessage resetCommand() {
+        return new StatusTrackerMessage(Constants.MESSAGE_TYPE_RESET, null, null,
+                Constants.NODE_CONDITION_NORMAL, null, 0, 0, System.currentTimeMillis());
+    }
+
+    /**
+     * Sends a command to every indexed StatusTracker in a region.
+     * @param region the region
+     * @param command the command message
+     * @return the broadcast's progress
+     */
+    public BroadcastResult broadcastToRegion(String region, StatusTrackerMessage command) {
+        return broadcast(_index.regionMembers(region), command);
+    }
+
+    /**
+     * Sends a command to every indexed StatusTracker located within a bounding box.
+     * @param minLatitude the southern edge
+     * @param minLongitude the western edge
+     * @param maxLatitude the northern edge
+     * @param maxLongitude the eastern edge
+     * @param command the command message
+     * @return the broadcast's progress
+     */
+    public BroadcastResult broadcastWithin(double minLatitude, double minLongitude,
+                                           double maxLatitude, double maxLongitude,
+                                           StatusTrackerMessage command) {
+        return broadcast(_index.membersWithin(minLatitude, minLongitude, maxLatitude, maxLongitude), command);
+    }
+
+    /**
+     * Sends a command to a list of StatusTrackers, such as the failed ids of an earlier broadcast. If the executor
+     * rejects a batch (for example because it has been shut down), that batch and every later one are reported as
+     * failed so the result still completes.
+     * @param ids the digital twin ids
+     * @param command the command message
+     * @return the broadcast's progress
+     */
+    public BroadcastResult broadcast(List<String> ids, StatusTrackerMessage command) {
+        int batches = (ids.size() + _batchSize - 1) / _batchSize;
+        BroadcastResult result = new BroadcastResult(ids.size(), batches);
+        for(int start = 0; start < ids.size(); start += _batchSize) {
+            List<String> batch = ids.subList(start, Math.min(ids.size(), start + _batchSize));
+            try {
+                _executor.execute(() -> sendBatch(batch, command, result));
+            } catch (RejectedExecutionException e) {
+                for(int rejected = start; rejected < ids.size(); rejected += _batchSize) {
+                    for(String id : ids.subList(rejected, Math.min(ids.size(), rejected + _batchSize))) {
+                        result.failed(id);
+                    }
+                    result.batchComplete();
+                }
+                break;
+            }
+        }
+        return result;
+    }
+
+    private void sendBatch(List<String> batch, StatusTrackerMessage command, BroadcastResult result) {
+        try {
+            for(String id : batch) {
+                try {
+                    _sender.send(id, command);
+                    result.delivered();
+                } catch (Exception e) {
+                    result.failed(id);
+                }
+            }
+        } finally {
+            result.batchComplete();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+/**
+ * Recommends how often a power grid node should report, from its StatusTracker's state:
+ * <ul>
+ *     <li>fast while the node's condition is moderate or severe,</li>
+ *     <li>normal while the node is experiencing a lesser incident,</li>
+ *     <li>slow otherwise.</li>
+ * </ul>
+ * A slower rate only takes effect once the node has been out of any incident for holdMillis, measured from the time
+ * it last left one, so a node flapping between conditions stays at its faster rate instead of oscillating. Faster
+ * rates take effect immediately.
+ * <p>
+ * The decision follows the node condition set by the message processor rather than a raw alert level, since alert
+ * levels differ by node type and can be changed by republishing the {@link AlertProfiles}.
+ */
+public final class ReportingRatePolicy {
+    public static final int DEFAULT_FAST_MILLIS = 1000;
+    public static final int DEFAULT_NORMAL_MILLIS = 10000;
+    public static final int DEFAULT_SLOW_MILLIS = 60000;
+    public static final long DEFAULT_HOLD_MILLIS = 5 * 60000L;
+
+    private final int _fastMillis;
+    private final int _normalMillis;
+    private final int _slowMillis;
+    private final long _holdMillis;
+
+    /**
+     * Creates a policy with the default intervals and hold period.
+     */
+    public ReportingRatePolicy() {
+        this(DEFAULT_FAST_MILLIS, DEFAULT_NORMAL_MILLIS, DEFAULT_SLOW_MILLIS, DEFAULT_HOLD_MILLIS);
+    }
+
+    /**
+     * Creates a policy.
+     * @param fastMillis the interval during serious incidents
+     * @param normalMillis the interval during lesser incidents
+     * @param slowMillis the interval while the node is quiet
+     * @param holdMillis how long a node must be out of an incident before a slower interval takes effect
+     */
+    public ReportingRatePolicy(int fastMillis, int normalMillis, int slowMillis, long holdMillis) {
+        if(fastMillis <= 0 || normalMillis < fastMillis || slowMillis < normalMillis || holdMillis < 0) {
+            throw new IllegalArgumentException("Intervals must be positive and ordered fast <= normal <= slow.");
+        }
+        _fastMillis = fastMillis;
+        _normalMillis = normalMillis;
+        _slowMillis = slowMillis;
+        _holdMillis = holdMillis;
+    }
+
+    /**
+     * Returns the reporting interval a node should use.
+     * @param digitalTwin the node's status tracker, after its latest messages were applied
+     * @param now the current time in milliseconds
+     * @return the interval in milliseconds
+     */
+    public int recommend(StatusTracker digitalTwin, long now) {
+        int interval;
+        if(digitalTwin.experiencingModerateEvent() || digitalTwin.experiencingSevereEvent()) {
+            interval = _fastMillis;
+        } else if(digitalTwin.experiencingIncident) {
+            interval = _normalMillis;
+        } else {
+            interval = _slowMillis;
+        }
+        int current = digitalTwin.reportingInterval;
+        if(current > 0 && interval > current
+                && (digitalTwin.experiencingIncident || now - digitalTwin.incidentEndTime < _holdMillis)) {
+            return current;
+        }
+        return interval;
+    }
+}
@@ -27,6 +27,7 @@ package com.scaleoutsoftware.demo;
 
 import com.scaleoutsoftware.digitaltwin.core.DigitalTwinBase;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
@@ -34,7 +35,25 @@ import java.util.Objects;
 /**
  * StatusTracker class used to represent Infrastructure and Controller power grid nodes.
  */
-public class StatusTracker extends DigitalTwinBase {
+public class StatusTracker extends DigitalTwinBase implements StatusTrackerState {
+    /* Change mask bits, one per field, used by the StatusTrackerDeltaCodec */
+    public static final int FIELD_NODE_TYPE                 = 1;
+    public static final int FIELD_NODE_CONDITION            = 1 << 1;
+    public static final int FIELD_REGION                    = 1 << 2;
+    public static final int FIELD_LONGITUDE                 = 1 << 3;
+    public static final int FIELD_LATITUDE                  = 1 << 4;
+    public static final int FIELD_ALERT_LEVEL               = 1 << 5;
+    public static final int FIELD_MINOR_INCIDENT_COUNT      = 1 << 6;
+    public static final int FIELD_MODERATE_INCIDENT_COUNT   = 1 << 7;
+    public static final int FIELD_FALSE_INCIDENT_COUNT      = 1 << 8;
+    public static final int FIELD_SEVERE_INCIDENT_COUNT     = 1 << 9;
+    public static final int FIELD_TOTAL_INCIDENTS           = 1 << 10;
+    public static final int FIELD_TOTAL_RESOLVED_INCIDENTS  = 1 << 11;
+    public static final int FIELD_EXPERIENCING_INCIDENT     = 1 << 12;
+    public static final int FIELD_INCIDENT_LIST             = 1 << 13;
+    public static final int FIELD_REPORTING_INTERVAL        = 1 << 14;
+    public static final int ALL_FIELDS                      = (1 << 15) - 1;
+
     // State variables
     public String node_type;
     public String node_condition;
@@ -51,9 +70,23 @@ public class StatusTracker extends DigitalTwinBase {
     public int totalIncidents;
     public int totalResolvedIncidents;
     public boolean experiencingIncident;
+    public int reportingInterval;   // last reporting interval sent to the node in milliseconds, 0 if none was sent
+    public long incidentEndTime;    // time the node last left an incident in milliseconds, 0 if it never has
 
     // Dynamic incident report list
     public List<IncidentReport> incidentList;
+    // Sequence number of the oldest report in incidentList, advanced as reports are evicted or released by compact()
+    public long firstIncidentSequence;
+
+    // Incremented each time a batch of messages changes this twin
+    private long version;
+
+    // Fields changed through this class's methods since the last call to clearChanges(), and the version they were
+    // committed as by incrementVersion(); not persisted
+    private transient int changeMask;
+    private transient long changeMaskVersion = -1;
+    // Sequence number of the oldest incident report added since the last call to clearChanges(); not persisted
+    private transient long incidentDirtySequence = Long.MAX_VALUE;
 
     /**
      * Default constructor.
@@ -77,14 +110,28 @@ public class StatusTracker extends DigitalTwinBase {
      * @param statusTrackerType the power grid node's type ("controller" or "infrastructure")
      */
     public void setStatusTrackerType(String statusTrackerType) {
+        if(!Objects.equals(node_type, statusTrackerType)) {
+            changeMask |= FIELD_NODE_TYPE;
+        }
         node_type = statusTrackerType;
     }
 
+    /**
+     * Returns the code of the power grid node's region.
+     * @return the {@link NodeCodes} region code
+     */
+    public int getRegionCode() {
+        return NodeCodes.regionCode(region);
+    }
+
     /**
      * Sets the power grid node's condition.
      * @param statusTrackerCondition the condition to set
      */
     public void setStatusTrackerCondition(String statusTrackerCondition) {
+        if(!Objects.equals(node_condition, statusTrackerCondition)) {
+            changeMask |= FIELD_NODE_CONDITION;
+        }
         node_condition = statusTrackerCondition;
     }
 
@@ -95,6 +142,15 @@ public class StatusTracker extends DigitalTwinBase {
      * @param lat the latitude of this node's region
      */
     public void setRegion(String r, double lon, double lat) {
+        if(!Objects.equals(region, r)) {
+            changeMask |= FIELD_REGION;
+        }
+        if(Double.compare(longitude, lon) != 0) {
+            changeMask |= FIELD_LONGITUDE;
+        }
+        if(Double.compare(latitude, lat) != 0) {
+            changeMask |= FIELD_LATITUDE;
+        }
         region = r;
         longitude = lon;
         latitude = lat;
@@ -128,32 +184,60 @@ public class StatusTracker extends DigitalTwinBase {
      * Increments the false alarm count and resolves incident.
      */
     public void incrementFalseAlarmCount() {
-        experiencingIncident = false;
+        setExperiencingIncident(false);
         falseIncidentCount++;
+        changeMask |= FIELD_FALSE_INCIDENT_COUNT;
     }
 
     /**
      * Increments the server event count and marks this node as "experiencing incident".
      */
     public void incrementSevereEventCount() {
-        experiencingIncident = true;
-        severeIncidentCount++;
+        incrementSevereEventCount(1);
+    }
+
+    /**
+     * Adds a run of severe events to the severe event count and marks this node as "experiencing incident".
+     * @param count the number of events
+     */
+    public void incrementSevereEventCount(int count) {
+        setExperiencingIncident(true);
+        severeIncidentCount += count;
+        changeMask |= FIELD_SEVERE_INCIDENT_COUNT;
     }
 
     /**
      * Increments the moderate event count and marks this node as "experiencing incident".
      */
     public void incrementModerateEventCount() {
-        experiencingIncident = true;
-        moderateIncidentCount++;
+        incrementModerateEventCount(1);
+    }
+
+    /**
+     * Adds a run of moderate events to the moderate event count and marks this node as "experiencing incident".
+     * @param count the number of events
+     */
+    public void incrementModerateEventCount(int count) {
+        setExperiencingIncident(true);
+        moderateIncidentCount += count;
+        changeMask |= FIELD_MODERATE_INCIDENT_COUNT;
     }
 
     /**
      * Increments the minor event count and marks this node as "experiencing incident".
      */
     public void incrementMinorEventCount() {
-        experiencingIncident = true;
-        minorIncidentCount++;
+        incrementMinorEventCount(1);
+    }
+
+    /**
+     * Adds a run of minor events to the minor event count and marks this node as "experiencing incident".
+     * @param count the number of events
+     */
+    public void incrementMinorEventCount(int count) {
+        setExperiencingIncident(true);
+        minorIncidentCount += count;
+        changeMask |= FIELD_MINOR_INCIDENT_COUNT;
     }
 
     /**
@@ -186,10 +270,15 @@ public class StatusTracker extends DigitalTwinBase {
      * @param controllerLevel the alert level for a controller node
      */
     public void setAlertLevel(int infrastructureLevel, int controllerLevel) {
+        int level = alert_level;
         if(node_type.compareTo(Constants.NODE_TYPE_INFRASTRUCTURE) == 0) {
-            alert_level = infrastructureLevel;
+            level = infrastructureLevel;
         } else if (node_type.compareTo(Constants.NODE_TYPE_CONTROLLER) == 0) {
-            alert_level = controllerLevel;
+            level = controllerLevel;
+        }
+        if(level != alert_level) {
+            alert_level = level;
+            changeMask |= FIELD_ALERT_LEVEL;
         }
     }
 
@@ -197,28 +286,182 @@ public class StatusTracker extends DigitalTwinBase {
      * Increment resolved incident count
      */
     public void incrementResolvedIncidents() {
-        experiencingIncident = false;
+        setExperiencingIncident(false);
         totalResolvedIncidents++;
+        changeMask |= FIELD_TOTAL_RESOLVED_INCIDENTS;
     }
 
     /**
      * Increment total incident count
      */
     public void incrementTotalIncidents() {
-        totalIncidents++;
+        incrementTotalIncidents(1);
     }
 
     /**
-     * Adds a msg to the incident list.
+     * Adds a run of incidents to the total incident count
+     * @param count the number of incidents
+     */
+    public void incrementTotalIncidents(int count) {
+        totalIncidents += count;
+        changeMask |= FIELD_TOTAL_INCIDENTS;
+    }
+
+    /**
+     * Adds a msg to the incident list. The incident list is a ring of the most recent incidents; once it holds
+     * Constants.MAX_INCIDENT_LIST_SIZE reports the oldest report is evicted and returned so it can be archived.
      * @param msg the message to add
+     * @return the evicted incident report, or null if nothing was evicted
      */
-    public void addToIncidentList(StatusTrackerMessage msg) {
+    public IncidentReport addToIncidentList(StatusTrackerMessage msg) {
         if(incidentList == null) {
             incidentList = new LinkedList<>();
         }
-        incidentList.add(new IncidentReport(System.currentTimeMillis(), msg.getNodeCondition()));
-        if(incidentList.size() == Constants.MAX_INCIDENT_LIST_SIZE) {
-            incidentList.subList(Constants.INCIDENT_LIST_SUBLIST_FROM, Constants.INCIDENT_LIST_SUBLIST_TO).clear();
+        incidentList.add(new IncidentReport(System.currentTimeMillis(), msg.getNodeCondition(), msg.getTimestamp()));
+        changeMask |= FIELD_INCIDENT_LIST;
+        incidentDirtySequence = Math.min(incidentDirtySequence, firstIncidentSequence + incidentList.size() - 1);
+        if(incidentList.size() > Constants.MAX_INCIDENT_LIST_SIZE) {
+            firstIncidentSequence++;
+            return incidentList.remove(0);
+        }
+        return null;
+    }
+
+    /**
+     * Sets the reporting interval last sent to the power grid node.
+     * @param interval the interval in milliseconds
+     */
+    public void setReportingInterval(int interval) {
+        if(reportingInterval != interval) {
+            changeMask |= FIELD_REPORTING_INTERVAL;
+        }
+        reportingInterval = interval;
+    }
+
+    /**
+     * Returns the time the most recent incident in the incident list was recorded.
+     * @return the time in milliseconds, or 0 if the incident list is empty or compacted
+     */
+    public long getLastIncidentTime() {
+        if(incidentList == null || incidentList.isEmpty()) {
+            return 0;
+        }
+        return incidentList.get(incidentList.size() - 1).timestamp;
+    }
+
+    /**
+     * Returns the number of incidents in the incident list.
+     * @return the list size, or 0 if the list is compacted
+     */
+    public int getIncidentListSize() {
+        return incidentList == null ? 0 : incidentList.size();
+    }
+
+    /**
+     * Returns true if this tracker has been collapsed to its summary by compact().
+     * @return true if the incident list has been released
+     */
+    public boolean isCompacted() {
+        return incidentList == null;
+    }
+
+    /**
+     * Collapses an idle tracker to its summary form: the incident list is released and the released reports are
+     * returned so they can be archived. Condition, alert level and every counter are kept; the incident list is
+     * rebuilt by the next addToIncidentList().
+     * @return the released incident reports, oldest first
+     */
+    public List<IncidentReport> compact() {
+        List<IncidentReport> incidents = incidentList;
+        if(incidents == null || incidents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        incidentList = null;
+        firstIncidentSequence += incidents.size();
+        changeMask |= FIELD_INCIDENT_LIST;
+        return incidents;
+    }
+
+    /**
+     * Returns the fields changed through this class's methods since the last call to clearChanges().
+     * @return a mask of FIELD_* bits
+     */
+    public int getChangeMask() {
+        return changeMask;
+    }
+
+    /**
+     * Marks fields as changed, for callers that assign the public fields directly. Marking the incident list changed
+     * marks every report in it, since the caller may have replaced any of them.
+     * @param fields a mask of FIELD_* bits
+     */
+    public void markChanged(int fields) {
+        changeMask |= fields;
+        if((fields & FIELD_INCIDENT_LIST) != 0) {
+            incidentDirtySequence = firstIncidentSequence;
+        }
+    }
+
+    /**
+     * Returns the sequence number of the oldest incident report added since the last call to clearChanges(), or the
+     * sequence number after the newest report if none was added.
+     * @return the sequence number
+     */
+    public long getIncidentDirtySequence() {
+        return Math.max(firstIncidentSequence, Math.min(incidentDirtySequence, firstIncidentSequence + getIncidentListSize()));
+    }
+
+    /**
+     * Returns true if the change mask holds exactly the changes of the current version, that is, it was committed by
+     * incrementVersion() and has not been cleared since. The mask is not persisted, so this is false after the twin is
+     * reloaded, and after a batch that cleared the mask but changed nothing.
+     * @return true if the change mask describes the current version
+     */
+    public boolean isChangeMaskCurrent() {
+        return changeMaskVersion == version;
+    }
+
+    /**
+     * Forgets the recorded field changes.
+     */
+    public void clearChanges() {
+        changeMask = 0;
+        changeMaskVersion = -1;
+        incidentDirtySequence = Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns this twin's version, which is incremented each time a batch of messages changes it.
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Increments this twin's version, committing the recorded field changes as the changes of the new version.
+     */
+    public void incrementVersion() {
+        version++;
+        changeMaskVersion = version;
+    }
+
+    /**
+     * Sets this twin's version; used when applying a snapshot or delta.
+     * @param v the version
+     */
+    void setVersion(long v) {
+        version = v;
+        changeMaskVersion = -1;
+    }
+
+    private void setExperiencingIncident(boolean incident) {
+        if(experiencingIncident != incident) {
+            if(!incident) {
+                incidentEndTime = System.currentTimeMillis();
+            }
+            experiencingIncident = incident;
+            changeMask |= FIELD_EXPERIENCING_INCIDENT;
         }
     }
 
@@ -240,16 +483,19 @@ public class StatusTracker extends DigitalTwinBase {
                 totalIncidents == that.totalIncidents &&
                 totalResolvedIncidents == that.totalResolvedIncidents &&
                 experiencingIncident == that.experiencingIncident &&
+                incidentEndTime == that.incidentEndTime &&
+                firstIncidentSequence == that.firstIncidentSequence &&
+                reportingInterval == that.reportingInterval &&
                 Double.compare(that.longitude, longitude) == 0 &&
                 Double.compare(that.latitude, latitude) == 0 &&
                 node_type.equals(that.node_type) &&
                 node_condition.equals(that.node_condition) &&
                 region.equals(that.region) &&
-                incidentList.equals(that.incidentList);
+                Objects.equals(incidentList, that.incidentList);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(node_type, node_condition, region, alert_level, minorIncidentCount, moderateIncidentCount, falseIncidentCount, severeIncidentCount, totalIncidents, totalResolvedIncidents, experiencingIncident, longitude, latitude, incidentList);
+        return Objects.hash(node_type, node_condition, region, alert_level, minorIncidentCount, moderateIncidentCount, falseIncidentCount, severeIncidentCount, totalIncidents, totalResolvedIncidents, experiencingIncident, incidentEndTime, firstIncidentSequence, reportingInterval, longitude, latitude, incidentList);
     }
 }
@@ -0,0 +1,136 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads a columnar file written by {@link StatusTrackerColumnarWriter}. Alert level predicates are pushed down to the
+ * row group statistics: groups whose alert level range does not overlap the predicate are skipped without being read.
+ */
+public class StatusTrackerColumnarReader implements Closeable {
+    private final FileChannel _channel;
+    private final int _rowGroupSize;
+
+    /**
+     * Opens a columnar file for reading.
+     * @param file the file to read
+     * @throws IOException if the file cannot be opened or is not a status tracker columnar file
+     */
+    public StatusTrackerColumnarReader(Path file) throws IOException {
+        _channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readFully(3 * Integer.BYTES);
+            if (header.getInt() != StatusTrackerColumnarWriter.MAGIC || header.getInt() != StatusTrackerColumnarWriter.VERSION) {
+                throw new IOException("Not a status tracker columnar file: " + file);
+            }
+            _rowGroupSize = header.getInt();
+        } catch (IOException | RuntimeException e) {
+            closeAfterFailure(e);
+            throw e;
+        }
+    }
+
+    // closes the channel when the constructor fails after opening it, keeping the original failure
+    private void closeAfterFailure(Exception failure) {
+        try {
+            _channel.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Returns the row group size the file was written with.
+     * @return the row group size
+     */
+    public int getRowGroupSize() {
+        return _rowGroupSize;
+    }
+
+    /**
+     * Visits every row group in the file.
+     * @param visitor receives each decoded row group
+     * @throws IOException if the file cannot be read
+     */
+    public void scan(Consumer<StatusTrackerRowGroup> visitor) throws IOException {
+        scan(Integer.MIN_VALUE, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits the row groups that may contain rows with an alert level in [minAlertLevel, maxAlertLevel]. Row groups are
+     * skipped based on their statistics; the visitor still filters individual rows of the groups it receives.
+     * @param minAlertLevel the smallest alert level of interest (inclusive)
+     * @param maxAlertLevel the largest alert level of interest (inclusive)
+     * @param visitor receives each decoded row group that may match
+     * @return the number of row groups that were skipped
+     * @throws IOException if the file cannot be read
+     */
+    public int scan(int minAlertLevel, int maxAlertLevel, Consumer<StatusTrackerRowGroup> visitor) throws IOException {
+        int skipped = 0;
+        long position = 3 * Integer.BYTES;
+        long size = _channel.size();
+        while (position < size) {
+            _channel.position(position);
+            ByteBuffer stats = readFully(4 * Integer.BYTES);
+            int length = stats.getInt();
+            stats.getInt(); // row count
+            int groupMin = stats.getInt();
+            int groupMax = stats.getInt();
+            if (groupMax < minAlertLevel || groupMin > maxAlertLevel) {
+                skipped++;
+            } else {
+                _channel.position(position + Integer.BYTES);
+                visitor.accept(StatusTrackerRowGroup.decode(readFully(length)));
+            }
+            position += Integer.BYTES + length;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    private ByteBuffer readFully(int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (_channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of columnar file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
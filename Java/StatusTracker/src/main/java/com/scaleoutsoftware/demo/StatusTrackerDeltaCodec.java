@@ -0,0 +1,222 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Encodes StatusTracker write-backs as field-level deltas.
+ *
+ * A delta carries only the fields set in the twin's change mask, tagged with the version it applies to, so a steady
+ * stream of incidents that bumps an alert level and a counter or two costs a few bytes instead of the whole twin. When
+ * the receiver is not exactly one version behind, the change mask does not belong to the current version (it is not
+ * persisted, and a batch that changes nothing clears it without creating a version), or most fields changed anyway, a
+ * full snapshot is sent instead.
+ *
+ * Layout: kind byte, [base version varint (deltas only)], version varint, field mask varint, then the masked fields in
+ * bit order. Ints are zig-zag varints, doubles are 8 bytes, strings are a varint (length + 1, 0 for null) followed by
+ * UTF-8 bytes. The experiencing-incident flag is a byte followed by the 8-byte time the node last left an incident.
+ * The incident list is sent by sequence number: the sequence number of the writer's oldest report, the sequence
+ * number of the first report sent, and a count followed by the reports (timestamp and source timestamp zig-zag varints,
+ * then the type). A snapshot sends every report; a delta sends only the reports added since its base version, and the
+ * receiver drops the reports the writer has evicted. A count of -1 marks a compacted tracker whose list has been
+ * released, so the receiver is compacted too rather than holding an empty list.
+ *
+ * The message processor does not call this codec: the hosting service writes back whole twins. It is a library for
+ * replicas and stores that want to ship the smaller deltas themselves, using the change mask the processor maintains.
+ */
+public class StatusTrackerDeltaCodec {
+    public static final byte KIND_SNAPSHOT = 0;
+    public static final byte KIND_DELTA    = 1;
+    private static final int FIELD_COUNT = Integer.bitCount(StatusTracker.ALL_FIELDS);
+
+    /**
+     * Encodes a twin for a receiver that holds the given version of it.
+     * @param twin the status tracker, with the change mask of its latest version
+     * @param receiverVersion the version the receiver currently holds
+     * @return a delta when the receiver is one version behind and the change mask is current, otherwise a snapshot
+     */
+    public static byte[] encode(StatusTracker twin, long receiverVersion) {
+        int mask = twin.getChangeMask();
+        if (receiverVersion != twin.getVersion() - 1 || !twin.isChangeMaskCurrent()
+                || Integer.bitCount(mask) > FIELD_COUNT / 2) {
+            return encodeSnapshot(twin);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        out.write(KIND_DELTA);
+        VarInts.writeVarLong(out, receiverVersion);
+        VarInts.writeVarLong(out, twin.getVersion());
+        writeFields(out, twin, mask, false);
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes every field of a twin.
+     * @param twin the status tracker
+     * @return the snapshot
+     */
+    public static byte[] encodeSnapshot(StatusTracker twin) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        out.write(KIND_SNAPSHOT);
+        VarInts.writeVarLong(out, twin.getVersion());
+        writeFields(out, twin, StatusTracker.ALL_FIELDS, true);
+        return out.toByteArray();
+    }
+
+    /**
+     * Applies a snapshot or delta to a twin.
+     * @param encoded the encoded snapshot or delta
+     * @param target the twin to update; for a delta it must hold the delta's base version
+     * @throws IllegalStateException if a delta does not apply to the target's version and a snapshot is required
+     * @throws IllegalArgumentException if the encoding is truncated or corrupt
+     */
+    public static void apply(byte[] encoded, StatusTracker target) {
+        try {
+            applyFields(ByteBuffer.wrap(encoded), target);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated status tracker encoding.", e);
+        }
+    }
+
+    private static void applyFields(ByteBuffer in, StatusTracker target) {
+        byte kind = in.get();
+        if (kind == KIND_DELTA) {
+            long baseVersion = VarInts.readVarLong(in);
+            if (baseVersion != target.getVersion()) {
+                throw new IllegalStateException("Delta applies to version " + baseVersion + " but the target is at version "
+                        + target.getVersion() + "; a snapshot is required.");
+            }
+        } else if (kind != KIND_SNAPSHOT) {
+            throw new IllegalArgumentException("Unknown encoding kind " + kind + ".");
+        }
+        target.setVersion(VarInts.readVarLong(in));
+        int mask = (int)VarInts.readVarLong(in);
+        if ((mask & StatusTracker.FIELD_NODE_TYPE) != 0) target.node_type = VarInts.readString(in);
+        if ((mask & StatusTracker.FIELD_NODE_CONDITION) != 0) target.node_condition = VarInts.readString(in);
+        if ((mask & StatusTracker.FIELD_REGION) != 0) target.region = VarInts.readString(in);
+        if ((mask & StatusTracker.FIELD_LONGITUDE) != 0) target.longitude = in.getDouble();
+        if ((mask & StatusTracker.FIELD_LATITUDE) != 0) target.latitude = in.getDouble();
+        if ((mask & StatusTracker.FIELD_ALERT_LEVEL) != 0) target.alert_level = VarInts.readZigZagInt(in);
+        if ((mask & StatusTracker.FIELD_MINOR_INCIDENT_COUNT) != 0) target.minorIncidentCount = VarInts.readZigZagInt(in);
+        if ((mask & StatusTracker.FIELD_MODERATE_INCIDENT_COUNT) != 0) target.moderateIncidentCount = VarInts.readZigZagInt(in);
+        if ((mask & StatusTracker.FIELD_FALSE_INCIDENT_COUNT) != 0) target.falseIncidentCount = VarInts.readZigZagInt(in);
+        if ((mask & StatusTracker.FIELD_SEVERE_INCIDENT_COUNT) != 0) target.severeIncidentCount = VarInts.readZigZagInt(in);
+        if ((mask & StatusTracker.FIELD_TOTAL_INCIDENTS) != 0) target.totalIncidents = VarInts.readZigZagInt(in);
+        if ((mask & StatusTracker.FIELD_TOTAL_RESOLVED_INCIDENTS) != 0) target.totalResolvedIncidents = VarInts.readZigZagInt(in);
+        if ((mask & StatusTracker.FIELD_EXPERIENCING_INCIDENT) != 0) {
+            target.experiencingIncident = in.get() != 0;
+            target.incidentEndTime = in.getLong();
+        }
+        if ((mask & StatusTracker.FIELD_INCIDENT_LIST) != 0) readIncidents(in, target, kind == KIND_SNAPSHOT);
+        if ((mask & StatusTracker.FIELD_REPORTING_INTERVAL) != 0) target.reportingInterval = VarInts.readZigZagInt(in);
+    }
+
+    private static void writeFields(ByteArrayOutputStream out, StatusTracker twin, int mask, boolean snapshot) {
+        VarInts.writeVarLong(out, mask);
+        if ((mask & StatusTracker.FIELD_NODE_TYPE) != 0) VarInts.writeString(out, twin.node_type);
+        if ((mask & StatusTracker.FIELD_NODE_CONDITION) != 0) VarInts.writeString(out, twin.node_condition);
+        if ((mask & StatusTracker.FIELD_REGION) != 0) VarInts.writeString(out, twin.region);
+        if ((mask & StatusTracker.FIELD_LONGITUDE) != 0) VarInts.writeLong(out, Double.doubleToLongBits(twin.longitude));
+        if ((mask & StatusTracker.FIELD_LATITUDE) != 0) VarInts.writeLong(out, Double.doubleToLongBits(twin.latitude));
+        if ((mask & StatusTracker.FIELD_ALERT_LEVEL) != 0) VarInts.writeZigZagInt(out, twin.alert_level);
+        if ((mask & StatusTracker.FIELD_MINOR_INCIDENT_COUNT) != 0) VarInts.writeZigZagInt(out, twin.minorIncidentCount);
+        if ((mask & StatusTracker.FIELD_MODERATE_INCIDENT_COUNT) != 0) VarInts.writeZigZagInt(out, twin.moderateIncidentCount);
+        if ((mask & StatusTracker.FIELD_FALSE_INCIDENT_COUNT) != 0) VarInts.writeZigZagInt(out, twin.falseIncidentCount);
+        if ((mask & StatusTracker.FIELD_SEVERE_INCIDENT_COUNT) != 0) VarInts.writeZigZagInt(out, twin.severeIncidentCount);
+        if ((mask & StatusTracker.FIELD_TOTAL_INCIDENTS) != 0) VarInts.writeZigZagInt(out, twin.totalIncidents);
+        if ((mask & StatusTracker.FIELD_TOTAL_RESOLVED_INCIDENTS) != 0) VarInts.writeZigZagInt(out, twin.totalResolvedIncidents);
+        if ((mask & StatusTracker.FIELD_EXPERIENCING_INCIDENT) != 0) {
+            out.write(twin.experiencingIncident ? 1 : 0);
+            VarInts.writeLong(out, twin.incidentEndTime);
+        }
+        if ((mask & StatusTracker.FIELD_INCIDENT_LIST) != 0) writeIncidents(out, twin, snapshot);
+        if ((mask & StatusTracker.FIELD_REPORTING_INTERVAL) != 0) VarInts.writeZigZagInt(out, twin.reportingInterval);
+    }
+
+    private static void writeIncidents(ByteArrayOutputStream out, StatusTracker twin, boolean snapshot) {
+        List<IncidentReport> incidents = twin.incidentList;
+        long from = snapshot ? twin.firstIncidentSequence : twin.getIncidentDirtySequence();
+        VarInts.writeVarLong(out, VarInts.zigZag(twin.firstIncidentSequence));
+        VarInts.writeVarLong(out, VarInts.zigZag(from));
+        if (incidents == null) {
+            VarInts.writeZigZagInt(out, -1);
+            return;
+        }
+        int start = (int)(from - twin.firstIncidentSequence);
+        VarInts.writeZigZagInt(out, incidents.size() - start);
+        for (IncidentReport incident : incidents.subList(start, incidents.size())) {
+            VarInts.writeVarLong(out, VarInts.zigZag(incident.timestamp));
+            VarInts.writeVarLong(out, VarInts.zigZag(incident.sourceTimestamp));
+            VarInts.writeString(out, incident.incidentType);
+        }
+    }
+
+    /**
+     * Applies reports written by writeIncidents: drops reports older than the writer's oldest report and replaces
+     * every report from the first one sent onwards. The reports are read before the list is touched.
+     */
+    private static void readIncidents(ByteBuffer in, StatusTracker target, boolean snapshot) {
+        long firstSequence = VarInts.unZigZag(VarInts.readVarLong(in));
+        long from = VarInts.unZigZag(VarInts.readVarLong(in));
+        int count = VarInts.readZigZagInt(in);
+        // every report takes at least three bytes
+        if (count < -1 || count > in.remaining() / 3 || from < firstSequence) {
+            throw new IllegalArgumentException("Corrupt incident list: " + count + " reports from " + from + ".");
+        }
+        if (count < 0) {
+            target.incidentList = null;
+            target.firstIncidentSequence = firstSequence;
+            return;
+        }
+        List<IncidentReport> reports = new LinkedList<>();
+        for (int i = 0; i < count; i++) {
+            long timestamp = VarInts.unZigZag(VarInts.readVarLong(in));
+            long sourceTimestamp = VarInts.unZigZag(VarInts.readVarLong(in));
+            reports.add(new IncidentReport(timestamp, VarInts.readString(in), sourceTimestamp));
+        }
+
+        List<IncidentReport> incidents = snapshot || target.incidentList == null ? new LinkedList<>() : target.incidentList;
+        long sequence = target.firstIncidentSequence;
+        while (!incidents.isEmpty() && sequence < firstSequence) {
+            incidents.remove(0);
+            sequence++;
+        }
+        if (incidents.isEmpty()) {
+            sequence = firstSequence;
+        }
+        if (from < sequence || from > sequence + incidents.size()) {
+            throw new IllegalStateException("Incident reports do not line up with the target's list; a snapshot is required.");
+        }
+        incidents.subList((int)(from - sequence), incidents.size()).clear();
+        incidents.addAll(reports);
+        target.incidentList = incidents;
+        target.firstIncidentSequence = sequence;
+    }
+}
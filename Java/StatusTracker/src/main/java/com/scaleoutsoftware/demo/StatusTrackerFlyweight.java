@@ -0,0 +1,372 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+/**
+ * Reads and writes a StatusTracker stored in a {@link StatusTrackerSlabStore} slot in place, without materializing a
+ * StatusTracker object. Position the flyweight with {@link #moveTo(int)}; the same flyweight can be reused for any
+ * number of slots.
+ */
+public class StatusTrackerFlyweight implements StatusTrackerState {
+    private final StatusTrackerSlabStore _store;
+    private ByteBuffer _slab;
+    private int _base;
+    private int _slot = -1;
+
+    StatusTrackerFlyweight(StatusTrackerSlabStore store) {
+        _store = store;
+    }
+
+    /**
+     * Positions this flyweight on a slot.
+     * @param slot the slot
+     * @return this flyweight
+     */
+    public StatusTrackerFlyweight moveTo(int slot) {
+        _slab = _store.slab(slot);
+        _base = StatusTrackerSlabStore.offset(slot);
+        _slot = slot;
+        return this;
+    }
+
+    /**
+     * Returns the slot this flyweight is positioned on.
+     * @return the slot, or -1 if not positioned
+     */
+    public int getSlot() {
+        return _slot;
+    }
+
+    /**
+     * Returns the id of the twin in the current slot. Allocates a String.
+     * @return the digital twin id
+     */
+    public String getId() {
+        int length = _slab.getShort(_base + StatusTrackerSlabStore.OFFSET_ID_LENGTH);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = _slab.getChar(_base + StatusTrackerSlabStore.OFFSET_ID + 2 * i);
+        }
+        return new String(chars);
+    }
+
+
+    void initialize(String id) {
+        for (int i = 0; i < StatusTrackerSlabStore.SLOT_SIZE; i++) {
+            _slab.put(_base + i, (byte)0);
+        }
+        _slab.putShort(_base + StatusTrackerSlabStore.OFFSET_ID_LENGTH, (short)id.length());
+        for (int i = 0; i < id.length(); i++) {
+            _slab.putChar(_base + StatusTrackerSlabStore.OFFSET_ID + 2 * i, id.charAt(i));
+        }
+    }
+
+    public int getNodeTypeCode() {
+        return _slab.get(_base + StatusTrackerSlabStore.OFFSET_TYPE);
+    }
+
+    public int getNodeConditionCode() {
+        return _slab.get(_base + StatusTrackerSlabStore.OFFSET_CONDITION);
+    }
+
+    @Override
+    public int getRegionCode() {
+        return _slab.get(_base + StatusTrackerSlabStore.OFFSET_REGION);
+    }
+
+    public double getLongitude() {
+        return _slab.getDouble(_base + StatusTrackerSlabStore.OFFSET_LONGITUDE);
+    }
+
+    public double getLatitude() {
+        return _slab.getDouble(_base + StatusTrackerSlabStore.OFFSET_LATITUDE);
+    }
+
+    public long getVersion() {
+        return _slab.getLong(_base + StatusTrackerSlabStore.OFFSET_VERSION);
+    }
+
+    public void incrementVersion() {
+        _slab.putLong(_base + StatusTrackerSlabStore.OFFSET_VERSION, getVersion() + 1);
+    }
+
+    public int getAlertLevel() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_ALERT_LEVEL);
+    }
+
+    public int getMinorIncidentCount() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_MINOR);
+    }
+
+    @Override
+    public int getModerateIncidentCount() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_MODERATE);
+    }
+
+    @Override
+    public int getFalseIncidentCount() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_FALSE);
+    }
+
+    @Override
+    public int getSevereIncidentCount() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_SEVERE);
+    }
+
+    public int getTotalIncidents() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_TOTAL);
+    }
+
+    public int getTotalResolvedIncidents() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_RESOLVED);
+    }
+
+    public boolean isExperiencingIncident() {
+        return _slab.get(_base + StatusTrackerSlabStore.OFFSET_EXPERIENCING) != 0;
+    }
+
+    public int getIncidentCount() {
+        return _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_COUNT);
+    }
+
+    @Override
+    public void setStatusTrackerType(String statusTrackerType) {
+        _slab.put(_base + StatusTrackerSlabStore.OFFSET_TYPE, code(NodeCodes.typeCode(statusTrackerType), "node type", statusTrackerType));
+    }
+
+    @Override
+    public void setStatusTrackerCondition(String statusTrackerCondition) {
+        _slab.put(_base + StatusTrackerSlabStore.OFFSET_CONDITION,
+                code(NodeCodes.conditionCode(statusTrackerCondition), "node condition", statusTrackerCondition));
+    }
+
+    @Override
+    public void setRegion(String r, double lon, double lat) {
+        _slab.put(_base + StatusTrackerSlabStore.OFFSET_REGION, code(NodeCodes.regionCode(r), "region", r));
+        _slab.putDouble(_base + StatusTrackerSlabStore.OFFSET_LONGITUDE, lon);
+        _slab.putDouble(_base + StatusTrackerSlabStore.OFFSET_LATITUDE, lat);
+    }
+
+    @Override
+    public boolean experiencingModerateEvent() {
+        return getNodeConditionCode() == NodeCodes.CONDITION_MODERATE;
+    }
+
+    @Override
+    public boolean experiencingSevereEvent() {
+        return getNodeConditionCode() == NodeCodes.CONDITION_SEVERE;
+    }
+
+    @Override
+    public boolean experiencingMinorEvent() {
+        return getNodeConditionCode() == NodeCodes.CONDITION_MINOR;
+    }
+
+    @Override
+    public void incrementFalseAlarmCount() {
+        setExperiencingIncident(false);
+        increment(StatusTrackerSlabStore.OFFSET_FALSE);
+    }
+
+    @Override
+    public void incrementSevereEventCount() {
+        incrementSevereEventCount(1);
+    }
+
+    @Override
+    public void incrementSevereEventCount(int count) {
+        setExperiencingIncident(true);
+        add(StatusTrackerSlabStore.OFFSET_SEVERE, count);
+    }
+
+    @Override
+    public void incrementModerateEventCount() {
+        incrementModerateEventCount(1);
+    }
+
+    @Override
+    public void incrementModerateEventCount(int count) {
+        setExperiencingIncident(true);
+        add(StatusTrackerSlabStore.OFFSET_MODERATE, count);
+    }
+
+    @Override
+    public void incrementMinorEventCount() {
+        incrementMinorEventCount(1);
+    }
+
+    @Override
+    public void incrementMinorEventCount(int count) {
+        setExperiencingIncident(true);
+        add(StatusTrackerSlabStore.OFFSET_MINOR, count);
+    }
+
+    @Override
+    public void setAlertLevel(int infrastructureLevel, int controllerLevel) {
+        int type = getNodeTypeCode();
+        if (type == NodeCodes.TYPE_INFRASTRUCTURE) {
+            _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_ALERT_LEVEL, infrastructureLevel);
+        } else if (type == NodeCodes.TYPE_CONTROLLER) {
+            _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_ALERT_LEVEL, controllerLevel);
+        }
+    }
+
+    @Override
+    public void incrementResolvedIncidents() {
+        setExperiencingIncident(false);
+        increment(StatusTrackerSlabStore.OFFSET_RESOLVED);
+    }
+
+    @Override
+    public void incrementTotalIncidents() {
+        incrementTotalIncidents(1);
+    }
+
+    @Override
+    public void incrementTotalIncidents(int count) {
+        add(StatusTrackerSlabStore.OFFSET_TOTAL, count);
+    }
+
+    /**
+     * Adds a msg to the slot's incident ring. Only allocates when an incident is evicted.
+     * @param msg the message to add
+     * @return the evicted incident report, or null if nothing was evicted
+     */
+    @Override
+    public IncidentReport addToIncidentList(StatusTrackerMessage msg) {
+        int count = getIncidentCount();
+        int head = _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_HEAD);
+        IncidentReport evicted = null;
+        int entry;
+        if (count < StatusTrackerSlabStore.INCIDENT_RING_SIZE) {
+            entry = (head + count) % StatusTrackerSlabStore.INCIDENT_RING_SIZE;
+            _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_COUNT, count + 1);
+        } else {
+            entry = head;
+            evicted = incident(head);
+            _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_HEAD, (head + 1) % StatusTrackerSlabStore.INCIDENT_RING_SIZE);
+        }
+        int offset = _base + StatusTrackerSlabStore.OFFSET_INCIDENTS + entry * StatusTrackerSlabStore.INCIDENT_SIZE;
+        _slab.putLong(offset, System.currentTimeMillis());
+        _slab.putLong(offset + 8, msg.getTimestamp());
+        _slab.put(offset + 16, code(NodeCodes.conditionCode(msg.getNodeCondition()), "node condition", msg.getNodeCondition()));
+        return evicted;
+    }
+
+    /**
+     * Copies the current slot into a new StatusTracker.
+     * @return the status tracker
+     */
+    public StatusTracker toStatusTracker() {
+        StatusTracker tracker = new StatusTracker();
+        tracker.node_type = NodeCodes.typeName(getNodeTypeCode());
+        tracker.node_condition = NodeCodes.conditionName(getNodeConditionCode());
+        tracker.region = NodeCodes.regionName(getRegionCode());
+        tracker.longitude = getLongitude();
+        tracker.latitude = getLatitude();
+        tracker.alert_level = getAlertLevel();
+        tracker.minorIncidentCount = getMinorIncidentCount();
+        tracker.moderateIncidentCount = getModerateIncidentCount();
+        tracker.falseIncidentCount = getFalseIncidentCount();
+        tracker.severeIncidentCount = getSevereIncidentCount();
+        tracker.totalIncidents = getTotalIncidents();
+        tracker.totalResolvedIncidents = getTotalResolvedIncidents();
+        tracker.experiencingIncident = isExperiencingIncident();
+        tracker.incidentList = new LinkedList<>();
+        int head = _slab.getInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_HEAD);
+        for (int i = 0, count = getIncidentCount(); i < count; i++) {
+            tracker.incidentList.add(incident((head + i) % StatusTrackerSlabStore.INCIDENT_RING_SIZE));
+        }
+        tracker.setVersion(getVersion());
+        return tracker;
+    }
+
+    /**
+     * Overwrites the current slot with a StatusTracker's state. Incidents beyond the ring size keep the newest ones.
+     * @param tracker the status tracker
+     */
+    public void copyFrom(StatusTracker tracker) {
+        setStatusTrackerType(tracker.node_type);
+        setStatusTrackerCondition(tracker.node_condition);
+        setRegion(tracker.region, tracker.longitude, tracker.latitude);
+        _slab.putLong(_base + StatusTrackerSlabStore.OFFSET_VERSION, tracker.getVersion());
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_ALERT_LEVEL, tracker.alert_level);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_MINOR, tracker.minorIncidentCount);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_MODERATE, tracker.moderateIncidentCount);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_FALSE, tracker.falseIncidentCount);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_SEVERE, tracker.severeIncidentCount);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_TOTAL, tracker.totalIncidents);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_RESOLVED, tracker.totalResolvedIncidents);
+        setExperiencingIncident(tracker.experiencingIncident);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_COUNT, 0);
+        _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_HEAD, 0);
+        if (tracker.incidentList != null) {
+            int skip = Math.max(0, tracker.incidentList.size() - StatusTrackerSlabStore.INCIDENT_RING_SIZE);
+            int entry = 0;
+            for (IncidentReport incident : tracker.incidentList) {
+                if (skip-- > 0) {
+                    continue;
+                }
+                int offset = _base + StatusTrackerSlabStore.OFFSET_INCIDENTS + entry++ * StatusTrackerSlabStore.INCIDENT_SIZE;
+                _slab.putLong(offset, incident.timestamp);
+                _slab.putLong(offset + 8, incident.sourceTimestamp);
+                _slab.put(offset + 16, code(NodeCodes.conditionCode(incident.incidentType), "incident type", incident.incidentType));
+            }
+            _slab.putInt(_base + StatusTrackerSlabStore.OFFSET_INCIDENT_COUNT, entry);
+        }
+    }
+
+    private IncidentReport incident(int entry) {
+        int offset = _base + StatusTrackerSlabStore.OFFSET_INCIDENTS + entry * StatusTrackerSlabStore.INCIDENT_SIZE;
+        return new IncidentReport(_slab.getLong(offset), NodeCodes.conditionName(_slab.get(offset + 16)), _slab.getLong(offset + 8));
+    }
+
+    /**
+     * Narrows a {@link NodeCodes} code for storage. A null value is stored as UNKNOWN, like a slot that was never set;
+     * any other value without a code is rejected rather than silently stored as UNKNOWN.
+     */
+    private static byte code(int code, String kind, String value) {
+        if (code == NodeCodes.UNKNOWN && value != null) {
+            throw new IllegalArgumentException("Unknown " + kind + ": " + value);
+        }
+        return (byte)code;
+    }
+
+    private void setExperiencingIncident(boolean incident) {
+        _slab.put(_base + StatusTrackerSlabStore.OFFSET_EXPERIENCING, incident ? (byte)1 : (byte)0);
+    }
+
+    private void increment(int field) {
+        add(field, 1);
+    }
+
+    private void add(int field, int count) {
+        _slab.putInt(_base + field, _slab.getInt(_base + field) + count);
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Secondary indexes over a StatusTracker population that are kept up to date by the
+ * {@link StatusTrackerMessageProcessor} as it changes twin state. The index maintains node_condition x region counters
+ * and a bucketed alert level index so dashboard queries (counts per condition and region, top-N alert levels) can be
+ * answered without scanning the twins. It also maintains region membership and a one degree latitude/longitude grid so
+ * a {@link RegionalBroadcaster} can resolve the members of a region or bounding box.
+ */
+public class StatusTrackerIndex {
+    // alert levels above the last bucket share it and are ordered by their exact level when queried
+    public static final int ALERT_LEVEL_BUCKETS = 32;
+    // size of a grid cell in degrees
+    private static final double CELL_DEGREES = 1.0;
+
+    private static class Entry {
+        int condition;
+        int region;
+        int alertLevel;
+        double latitude;
+        double longitude;
+    }
+
+    private final Map<String, Entry> _entries = new HashMap<>();
+    private final int[][] _conditionRegionCounts = new int[NodeCodes.CONDITION_COUNT][NodeCodes.REGION_COUNT];
+    private final List<Set<String>> _alertLevelBuckets = new ArrayList<>(ALERT_LEVEL_BUCKETS);
+    private final List<Set<String>> _regionMembers = new ArrayList<>(NodeCodes.REGION_COUNT);
+    private final Map<Long, Set<String>> _cells = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     */
+    public StatusTrackerIndex() {
+        for (int i = 0; i < ALERT_LEVEL_BUCKETS; i++) {
+            _alertLevelBuckets.add(new HashSet<>());
+        }
+        for (int i = 0; i < NodeCodes.REGION_COUNT; i++) {
+            _regionMembers.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Adds a status tracker to the index or moves it to its current condition, region and alert level.
+     * @param id the digital twin id
+     * @param tracker the status tracker
+     */
+    public synchronized void update(String id, StatusTracker tracker) {
+        int condition = NodeCodes.conditionCode(tracker.node_condition);
+        int region = NodeCodes.regionCode(tracker.region);
+        Entry entry = _entries.get(id);
+        if (entry == null) {
+            entry = new Entry();
+            _entries.put(id, entry);
+        } else if (entry.condition == condition && entry.region == region && entry.alertLevel == tracker.alert_level
+                && entry.latitude == tracker.latitude && entry.longitude == tracker.longitude) {
+            return;
+        } else {
+            unlink(id, entry);
+        }
+        entry.condition = condition;
+        entry.region = region;
+        entry.alertLevel = tracker.alert_level;
+        entry.latitude = tracker.latitude;
+        entry.longitude = tracker.longitude;
+        _conditionRegionCounts[condition][region]++;
+        _alertLevelBuckets.get(bucket(tracker.alert_level)).add(id);
+        _regionMembers.get(region).add(id);
+        _cells.computeIfAbsent(cell(entry.latitude, entry.longitude), k -> new HashSet<>()).add(id);
+    }
+
+    /**
+     * Removes a status tracker from the index.
+     * @param id the digital twin id
+     */
+    public synchronized void remove(String id) {
+        Entry entry = _entries.remove(id);
+        if (entry != null) {
+            unlink(id, entry);
+        }
+    }
+
+    private void unlink(String id, Entry entry) {
+        _conditionRegionCounts[entry.condition][entry.region]--;
+        _alertLevelBuckets.get(bucket(entry.alertLevel)).remove(id);
+        _regionMembers.get(entry.region).remove(id);
+        long key = cell(entry.latitude, entry.longitude);
+        Set<String> members = _cells.get(key);
+        members.remove(id);
+        if (members.isEmpty()) {
+            _cells.remove(key);
+        }
+    }
+
+    /**
+     * Returns the number of indexed status trackers.
+     * @return the number of status trackers
+     */
+    public synchronized int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Returns the number of status trackers with the given condition in the given region.
+     * @param condition the node condition
+     * @param region the region
+     * @return the number of matching status trackers
+     */
+    public synchronized int count(String condition, String region) {
+        return _conditionRegionCounts[NodeCodes.conditionCode(condition)][NodeCodes.regionCode(region)];
+    }
+
+    /**
+     * Returns the number of status trackers with the given condition across all regions.
+     * @param condition the node condition
+     * @return the number of matching status trackers
+     */
+    public synchronized int count(String condition) {
+        int total = 0;
+        for (int count : _conditionRegionCounts[NodeCodes.conditionCode(condition)]) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of status trackers whose alert level is at least the given level.
+     * @param alertLevel the minimum alert level
+     * @return the number of matching status trackers
+     */
+    public synchronized int countAtOrAbove(int alertLevel) {
+        int first = bucket(alertLevel);
+        int total = 0;
+        for (String id : _alertLevelBuckets.get(first)) {
+            if (_entries.get(id).alertLevel >= alertLevel) {
+                total++;
+            }
+        }
+        for (int b = first + 1; b < ALERT_LEVEL_BUCKETS; b++) {
+            total += _alertLevelBuckets.get(b).size();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the indexed alert level of a status tracker.
+     * @param id the digital twin id
+     * @return the alert level, or -1 if the status tracker is not indexed
+     */
+    public synchronized int getAlertLevel(String id) {
+        Entry entry = _entries.get(id);
+        return entry == null ? -1 : entry.alertLevel;
+    }
+
+    /**
+     * Returns the ids of the status trackers with the highest alert levels, highest first.
+     * @param n the maximum number of ids to return
+     * @return up to n status tracker ids
+     */
+    public synchronized List<String> topAlertLevels(int n) {
+        List<String> top = new ArrayList<>(Math.min(n, _entries.size()));
+        for (int b = ALERT_LEVEL_BUCKETS - 1; b >= 0 && top.size() < n; b--) {
+            Set<String> bucket = _alertLevelBuckets.get(b);
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            List<String> ids = new ArrayList<>(bucket);
+            if (b == 0 || b == ALERT_LEVEL_BUCKETS - 1) {
+                // the edge buckets hold more than one alert level
+                ids.sort((a, c) -> Integer.compare(_entries.get(c).alertLevel, _entries.get(a).alertLevel));
+            }
+            top.addAll(ids.subList(0, Math.min(ids.size(), n - top.size())));
+        }
+        return top;
+    }
+
+    /**
+     * Returns the ids of the status trackers in a region.
+     * @param region the region, one of the NODE_REGION constants
+     * @return a snapshot of the region's status tracker ids
+     * @throws IllegalArgumentException if the region is not recognized
+     */
+    public synchronized List<String> regionMembers(String region) {
+        int code = NodeCodes.regionCode(region);
+        if (code == NodeCodes.UNKNOWN) {
+            throw new IllegalArgumentException("Unknown region: " + region);
+        }
+        return new ArrayList<>(_regionMembers.get(code));
+    }
+
+    /**
+     * Returns the ids of the status trackers whose location lies within a bounding box, edges included. A box whose
+     * western edge is greater than its eastern edge crosses the antimeridian and covers the longitudes from the
+     * western edge to 180 and from -180 to the eastern edge.
+     * @param minLatitude the southern edge
+     * @param minLongitude the western edge
+     * @param maxLatitude the northern edge
+     * @param maxLongitude the eastern edge
+     * @return a snapshot of the matching status tracker ids
+     * @throws IllegalArgumentException if the southern edge is north of the northern edge
+     */
+    public synchronized List<String> membersWithin(double minLatitude, double minLongitude,
+                                                   double maxLatitude, double maxLongitude) {
+        if (minLatitude > maxLatitude) {
+            throw new IllegalArgumentException("The southern edge must not be north of the northern edge.");
+        }
+        List<String> members = new ArrayList<>();
+        if (minLongitude > maxLongitude) {
+            addWithin(members, minLatitude, minLongitude, maxLatitude, 180.0);
+            addWithin(members, minLatitude, -180.0, maxLatitude, maxLongitude);
+        } else {
+            addWithin(members, minLatitude, minLongitude, maxLatitude, maxLongitude);
+        }
+        return members;
+    }
+
+    private void addWithin(List<String> members, double minLatitude, double minLongitude,
+                           double maxLatitude, double maxLongitude) {
+        int minRow = cellIndex(minLatitude);
+        int maxRow = cellIndex(maxLatitude);
+        int minColumn = cellIndex(minLongitude);
+        int maxColumn = cellIndex(maxLongitude);
+        if ((long)(maxRow - minRow + 1) * (maxColumn - minColumn + 1) > _cells.size()) {
+            // the box covers more cells than are occupied
+            for (Set<String> ids : _cells.values()) {
+                addWithin(members, ids, minLatitude, minLongitude, maxLatitude, maxLongitude);
+            }
+            return;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                Set<String> ids = _cells.get(cellKey(row, column));
+                if (ids != null) {
+                    addWithin(members, ids, minLatitude, minLongitude, maxLatitude, maxLongitude);
+                }
+            }
+        }
+    }
+
+    private void addWithin(Collection<String> members, Set<String> ids, double minLatitude, double minLongitude,
+                           double maxLatitude, double maxLongitude) {
+        for (String id : ids) {
+            Entry entry = _entries.get(id);
+            if (entry.latitude >= minLatitude && entry.latitude <= maxLatitude
+                    && entry.longitude >= minLongitude && entry.longitude <= maxLongitude) {
+                members.add(id);
+            }
+        }
+    }
+
+    private static int cellIndex(double degrees) {
+        return (int)Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long)row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static long cell(double latitude, double longitude) {
+        return cellKey(cellIndex(latitude), cellIndex(longitude));
+    }
+
+    private static int bucket(int alertLevel) {
+        return Math.max(0, Math.min(ALERT_LEVEL_BUCKETS - 1, alertLevel));
+    }
+}
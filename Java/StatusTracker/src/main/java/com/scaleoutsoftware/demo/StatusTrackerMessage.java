@@ -37,12 +37,17 @@ public class StatusTrackerMessage {
     private String region;
     private double latitude;
     private double longitude;
+    private long timestamp;     // time the device observed the condition, in milliseconds (0 if unknown)
 
     public StatusTrackerMessage() {
 
     }
 
     public StatusTrackerMessage(String t, String i, String r, String nc, String nt, double la, double lo) {
+        this(t, i, r, nc, nt, la, lo, 0);
+    }
+
+    public StatusTrackerMessage(String t, String i, String r, String nc, String nt, double la, double lo, long ts) {
         type = t;
         id = i;
         region = r;
@@ -50,12 +55,25 @@ public class StatusTrackerMessage {
         node_type = nt;
         latitude = la;
         longitude = lo;
+        timestamp = ts;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
     }
 
     public boolean initMessage() {
         return Constants.MESSAGE_TYPE_INIT.compareTo(type) == 0;
     }
 
+    public boolean resetMessage() {
+        return Constants.MESSAGE_TYPE_RESET.equals(type);
+    }
+
     public String getNodeType() {
         return node_type;
     }
@@ -76,6 +94,10 @@ public class StatusTrackerMessage {
         return longitude;
     }
 
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     public boolean offline() {
         return node_condition.compareTo(Constants.NODE_CONDITION_OFFLINE) == 0;
     }
@@ -0,0 +1,140 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary wire format for StatusTrackerMessages, under a third of the size of the JSON form.
+ *
+ * Layout: magic byte, version byte, then the message type, node type, node condition and region as one-byte codes
+ * ({@link NodeCodes}; code 0 is followed by the value as a string, for values without a code), the id as a string,
+ * latitude and longitude as 8-byte doubles and the timestamp as a varint. Strings are a varint (length + 1, 0 for null)
+ * followed by UTF-8 bytes.
+ */
+public class StatusTrackerMessageCodec implements MessageCodec<StatusTrackerMessage> {
+    public static final byte MAGIC   = (byte)0xA7;  // never the first byte of UTF-8 JSON
+    public static final byte VERSION = 1;
+
+    private static final int MESSAGE_TYPE_INIT   = 1;
+    private static final int MESSAGE_TYPE_STATUS = 2;
+    private static final int MESSAGE_TYPE_RESET  = 3;
+
+    /**
+     * Creates a registry that decodes both this format and JSON.
+     * @return the registry
+     */
+    public static MessageCodecRegistry<StatusTrackerMessage> registry() {
+        return new MessageCodecRegistry<>(new JsonMessageCodec<>(StatusTrackerMessage.class))
+                .register(MAGIC, new StatusTrackerMessageCodec());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] encode(StatusTrackerMessage message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(48);
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeCode(out, messageTypeCode(message.getType()), message.getType());
+        writeCode(out, NodeCodes.typeCode(message.getNodeType()), message.getNodeType());
+        writeCode(out, NodeCodes.conditionCode(message.getNodeCondition()), message.getNodeCondition());
+        writeCode(out, NodeCodes.regionCode(message.getRegion()), message.getRegion());
+        VarInts.writeString(out, message.getId());
+        VarInts.writeLong(out, Double.doubleToLongBits(message.getLatitude()));
+        VarInts.writeLong(out, Double.doubleToLongBits(message.getLongitude()));
+        VarInts.writeVarLong(out, message.getTimestamp());
+        return out.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StatusTrackerMessage decode(byte[] bytes) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            if (in.get() != MAGIC) {
+                throw new IllegalArgumentException("Not a binary status tracker message.");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported status tracker message version " + version + ".");
+            }
+            int code = in.get() & 0xFF;
+            String type = code == 0 ? VarInts.readString(in) : messageTypeName(code);
+            code = in.get() & 0xFF;
+            String nodeType = code == 0 ? VarInts.readString(in)
+                    : knownCode(NodeCodes.typeName(code), "node type", code);
+            code = in.get() & 0xFF;
+            String condition = code == 0 ? VarInts.readString(in)
+                    : knownCode(NodeCodes.conditionName(code), "node condition", code);
+            code = in.get() & 0xFF;
+            String region = code == 0 ? VarInts.readString(in)
+                    : knownCode(NodeCodes.regionName(code), "region", code);
+            String id = VarInts.readString(in);
+            double latitude = in.getDouble();
+            double longitude = in.getDouble();
+            long timestamp = VarInts.readVarLong(in);
+            return new StatusTrackerMessage(type, id, region, condition, nodeType, latitude, longitude, timestamp);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated status tracker message.", e);
+        }
+    }
+
+    private static void writeCode(ByteArrayOutputStream out, int code, String value) {
+        out.write(code);
+        if (code == NodeCodes.UNKNOWN) {
+            VarInts.writeString(out, value);
+        }
+    }
+
+    private static String knownCode(String name, String field, int code) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Unknown " + field + " code " + code + ".");
+        }
+        return name;
+    }
+
+    private static int messageTypeCode(String type) {
+        if (Constants.MESSAGE_TYPE_INIT.equals(type)) return MESSAGE_TYPE_INIT;
+        if (Constants.MESSAGE_TYPE_STATUS.equals(type)) return MESSAGE_TYPE_STATUS;
+        if (Constants.MESSAGE_TYPE_RESET.equals(type)) return MESSAGE_TYPE_RESET;
+        return NodeCodes.UNKNOWN;
+    }
+
+    private static String messageTypeName(int code) {
+        switch (code) {
+            case MESSAGE_TYPE_INIT: return Constants.MESSAGE_TYPE_INIT;
+            case MESSAGE_TYPE_STATUS: return Constants.MESSAGE_TYPE_STATUS;
+            case MESSAGE_TYPE_RESET: return Constants.MESSAGE_TYPE_RESET;
+            default: throw new IllegalArgumentException("Unknown message type code " + code + ".");
+        }
+    }
+}
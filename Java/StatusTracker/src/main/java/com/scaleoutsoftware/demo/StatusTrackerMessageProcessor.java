@@ -28,10 +28,10 @@ package com.scaleoutsoftware.demo;
 import com.scaleoutsoftware.digitaltwin.core.MessageProcessor;
 import com.scaleoutsoftware.digitaltwin.core.ProcessingContext;
 import com.scaleoutsoftware.digitaltwin.core.ProcessingResult;
+import com.scaleoutsoftware.digitaltwin.core.SendingResult;
 
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.io.StringWriter;
+import java.util.Objects;
 import java.util.logging.Level;
 
 /**
@@ -41,6 +41,180 @@ import java.util.logging.Level;
  * digital twin and the incoming message for analysis and introspection.
  */
 public class StatusTrackerMessageProcessor extends MessageProcessor<StatusTracker, StatusTrackerMessage> implements Serializable {
+    // optional secondary indexes updated after each batch; local to this process and never serialized
+    private transient StatusTrackerIndex _index;
+    // optional cold storage for incidents evicted from the twins' incident lists
+    private transient IncidentArchive _archive;
+    // source event to incident detection latency for this model; created on first use
+    private transient volatile LatencyRecorder _latency;
+    // quiet period after which a tracker's incident list is released, 0 to disable idle compaction
+    private transient long _idleCompactionMillis;
+    // collapse runs of status messages with the same condition into one rule evaluation
+    private transient boolean _coalesce;
+    // messages that failed validation and were skipped; created on first use
+    private transient volatile MessageQuarantine _quarantine;
+    // rate-limited logging of rejected messages and processing failures; created on first use
+    private transient volatile ErrorReporter _errorReporter;
+    // recommends each node's reporting interval, null to leave nodes at their own rate
+    private transient ReportingRatePolicy _ratePolicy;
+
+    /**
+     * Sets the secondary index that is kept up to date as this processor changes StatusTracker state.
+     * @param index the index to maintain, or null to disable indexing
+     */
+    public void setIndex(StatusTrackerIndex index) {
+        _index = index;
+    }
+
+    /**
+     * Returns the secondary index maintained by this processor.
+     * @return the index, or null if indexing is disabled
+     */
+    public StatusTrackerIndex getIndex() {
+        return _index;
+    }
+
+    /**
+     * Sets the archive that receives incident reports evicted from a StatusTracker's incident list.
+     * @param archive the archive, or null to discard evicted incidents
+     */
+    public void setIncidentArchive(IncidentArchive archive) {
+        _archive = archive;
+    }
+
+    /**
+     * Returns the archive that receives evicted incident reports.
+     * @return the archive, or null if evicted incidents are discarded
+     */
+    public IncidentArchive getIncidentArchive() {
+        return _archive;
+    }
+
+    /**
+     * Returns the recorder of the latency between a status message's source timestamp and the detection of the
+     * incident it reports. Messages without a source timestamp are not recorded.
+     * @return the latency recorder
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        LatencyRecorder latency = _latency;
+        if(latency == null) {
+            synchronized (this) {
+                latency = _latency;
+                if(latency == null) {
+                    latency = new LatencyRecorder();
+                    _latency = latency;
+                }
+            }
+        }
+        return latency;
+    }
+
+    /**
+     * Enables idle compaction: once a tracker has had no incident for the quiet period, or reports that it is offline,
+     * its incident list is released (to the incident archive, if one is set) at the end of the batch. Counters, alert
+     * level and condition are kept, and the list is rebuilt on the tracker's next incident.
+     * @param idleCompactionMillis the quiet period in milliseconds, or 0 to disable idle compaction
+     */
+    public void setIdleCompactionMillis(long idleCompactionMillis) {
+        _idleCompactionMillis = idleCompactionMillis;
+    }
+
+    /**
+     * Returns the quiet period after which idle trackers are compacted.
+     * @return the quiet period in milliseconds, or 0 if idle compaction is disabled
+     */
+    public long getIdleCompactionMillis() {
+        return _idleCompactionMillis;
+    }
+
+    /**
+     * Sets the quarantine that receives messages that fail validation.
+     * @param quarantine the quarantine
+     */
+    public void setQuarantine(MessageQuarantine quarantine) {
+        _quarantine = quarantine;
+    }
+
+    /**
+     * Returns the quarantine that receives messages that fail validation. Invalid messages are skipped so the rest of
+     * their batch is still applied.
+     * @return the quarantine
+     */
+    public MessageQuarantine getQuarantine() {
+        MessageQuarantine quarantine = _quarantine;
+        if(quarantine == null) {
+            // processors are shared by the worker threads, so only one of them may create the quarantine
+            synchronized (this) {
+                quarantine = _quarantine;
+                if(quarantine == null) {
+                    quarantine = new MessageQuarantine();
+                    _quarantine = quarantine;
+                }
+            }
+        }
+        return quarantine;
+    }
+
+    /**
+     * Sets the reporter used to log rejected messages and processing failures.
+     * @param errorReporter the reporter
+     */
+    public void setErrorReporter(ErrorReporter errorReporter) {
+        _errorReporter = errorReporter;
+    }
+
+    /**
+     * Returns the reporter used to log rejected messages and processing failures.
+     * @return the reporter
+     */
+    public ErrorReporter getErrorReporter() {
+        ErrorReporter errorReporter = _errorReporter;
+        if(errorReporter == null) {
+            synchronized (this) {
+                errorReporter = _errorReporter;
+                if(errorReporter == null) {
+                    errorReporter = new ErrorReporter();
+                    _errorReporter = errorReporter;
+                }
+            }
+        }
+        return errorReporter;
+    }
+
+    /**
+     * Enables adaptive rate control: after each batch the policy recommends a reporting interval from the tracker's
+     * state, and when it changes a {@link RateControlCommand} is sent to the node through the data source.
+     * @param ratePolicy the policy, or null to disable rate control
+     */
+    public void setReportingRatePolicy(ReportingRatePolicy ratePolicy) {
+        _ratePolicy = ratePolicy;
+    }
+
+    /**
+     * Returns the policy used for adaptive rate control.
+     * @return the policy, or null if rate control is disabled
+     */
+    public ReportingRatePolicy getReportingRatePolicy() {
+        return _ratePolicy;
+    }
+
+    /**
+     * Enables coalescing: consecutive status messages in a batch that report the same condition are run through the
+     * rules once, with the counters advanced by the run length. Counters and alert level end up as if every message
+     * had been applied; the incident list records one report per run instead of one per message.
+     * @param coalesce true to coalesce runs of identical conditions
+     */
+    public void setCoalescing(boolean coalesce) {
+        _coalesce = coalesce;
+    }
+
+    /**
+     * Returns true if runs of status messages with the same condition are coalesced.
+     * @return true if coalescing is enabled
+     */
+    public boolean isCoalescing() {
+        return _coalesce;
+    }
 
     /**
      * Analyze messages with state information in the StatusTracker digital twin and update the state object.
@@ -48,7 +222,7 @@ public class StatusTrackerMessageProcessor extends MessageProcessor<StatusTracke
      * @param processingContext The processingContext is used for sending a reply to a datasource or a message to a digital twin.
      * @param digitalTwin the state object
      * @param messages Messages from the ModelTwin
-     * @return ProcessingResult.Update or ProcessingResult.NoUpdate.
+     * @return ProcessingResult.UpdateDigitalTwin if the messages changed the state object, otherwise ProcessingResult.NoUpdate.
      * @throws Exception
      */
     @Override
@@ -56,103 +230,262 @@ public class StatusTrackerMessageProcessor extends MessageProcessor<StatusTracke
                                             StatusTracker digitalTwin,
                                             Iterable<StatusTrackerMessage> messages) throws Exception {
         try {
-            // iterate through the incoming messages
-            for(StatusTrackerMessage msg : messages) {
-                // this is an initialization message so we set our status and return.
-                if(msg.initMessage()) {
-                    digitalTwin.setStatusTrackerType(msg.getNodeType());
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
-                    digitalTwin.setRegion(msg.getRegion(), msg.getLongitude(), msg.getLatitude());
-                    return ProcessingResult.UpdateDigitalTwin;
-                }
+            // track the fields changed by this batch so unchanged twins are not written back
+            digitalTwin.clearChanges();
 
-                /* Run through the Status Tracker rules. */
-
-                // incoming message indicates the status tracker is offline or in normal operation.
-                if(msg.offline() || msg.normalOperation()) {
-                    // set the state object statistics
-                    if(digitalTwin.experiencingModerateEvent() || digitalTwin.experiencingMinorEvent()) {
-                        digitalTwin.incrementFalseAlarmCount();
-                        digitalTwin.incrementResolvedIncidents();
-                    }
-                    else if(digitalTwin.experiencingSevereEvent()) {
-                        digitalTwin.incrementResolvedIncidents();
-                    }
-
-                    // set the status tracker's alert level to normal, and update the state objects condition
-                    digitalTwin.setAlertLevel(Constants.INFRASTRUCTURE_NORMAL_ALERTLEVEL, Constants.CONTROLLER_NORMAL_ALERTLEVEL);
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
-                }
+            applyMessages(processingContext, digitalTwin.getId(), digitalTwin, messages);
+            if(_idleCompactionMillis > 0) {
+                compactIfIdle(digitalTwin.getId(), digitalTwin, System.currentTimeMillis());
+            }
+            if(_ratePolicy != null) {
+                updateReportingRate(processingContext, digitalTwin);
+            }
+            return completeBatch(digitalTwin);
+        } catch (Exception e) {
+            // Print the full exception to the models log, rate limited so a failing twin cannot flood it
+            getErrorReporter().report(processingContext, Level.SEVERE, "processing_failed", digitalTwin.getId(),
+                    e.toString(), e);
+            throw e;
+        }
+    }
 
-                // the message indicates a minor incident
-                else if(msg.minorIncident()) {
-                    digitalTwin.setAlertLevel(Constants.INFRASTRUCTURE_MINOR_ALERTLEVEL, Constants.CONTROLLER_MINOR_ALERT_LEVEL);
-                    digitalTwin.incrementMinorEventCount();
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
-                }
+    private void updateReportingRate(ProcessingContext processingContext, StatusTracker digitalTwin) {
+        int interval = _ratePolicy.recommend(digitalTwin, System.currentTimeMillis());
+        if(interval != digitalTwin.reportingInterval) {
+            digitalTwin.setReportingInterval(interval);
+            sendToDataSource(processingContext, new RateControlCommand(interval).encode());
+        }
+    }
 
-                // the message indicates a severe incident
-                else if(msg.severeIncident()) {
-                    digitalTwin.setAlertLevel(Constants.INFRASTRUCTURE_SEVERE_ALERTLEVEL, Constants.CONTROLLER_SEVERE_ALERTLEVEL);
-                    digitalTwin.incrementSevereEventCount();
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
-                }
+    // every command to a node's data source goes through here; tests override it to observe what a node is sent
+    SendingResult sendToDataSource(ProcessingContext processingContext, byte[] command) {
+        return processingContext.sendToDataSource(command);
+    }
 
-                // the message indicates a moderate incident and this tracker has seen a severe incident
-                else if(msg.moderateIncident() && digitalTwin.getSevereIncidentCount() > 0) {
-                    digitalTwin.setAlertLevel(Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL+1, Constants.CONTROLLER_MODERATE_ALERTLEVEL+3);
-                    digitalTwin.incrementModerateEventCount();
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
+    private void compactIfIdle(String id, StatusTracker digitalTwin, long now) {
+        if(digitalTwin.experiencingIncident || digitalTwin.isCompacted()) {
+            return;
+        }
+        if(Constants.NODE_CONDITION_OFFLINE.equals(digitalTwin.node_condition)
+                || now - digitalTwin.getLastIncidentTime() >= _idleCompactionMillis) {
+            for(IncidentReport incident : digitalTwin.compact()) {
+                if(_archive != null) {
+                    _archive.archive(id, incident);
                 }
+            }
+        }
+    }
 
-                // the message indicates a moderate incident and this tracker has never had a severe incident and
-                // this tracker has never seen a false incident
-                else if(msg.moderateIncident() &&
-                   digitalTwin.getSevereIncidentCount() == 0 &&
-                   digitalTwin.getFalseIncidentCount() == 0) {
-                    digitalTwin.setAlertLevel(Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL+2, Constants.CONTROLLER_MODERATE_ALERTLEVEL+4);
-                    digitalTwin.incrementModerateEventCount();
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
-                }
+    private static void setAlertLevel(StatusTrackerState digitalTwin, AlertProfiles profiles, int level) {
+        int region = digitalTwin.getRegionCode();
+        digitalTwin.setAlertLevel(profiles.getAlertLevel(region, NodeCodes.TYPE_INFRASTRUCTURE, level),
+                profiles.getAlertLevel(region, NodeCodes.TYPE_CONTROLLER, level));
+    }
 
-                // the message indicates a moderate incident and this tracker has never had a severe incident while the
-                // heuristic of a false incident is greater than 50%
-                else if(msg.moderateIncident() &&
-                   digitalTwin.getSevereIncidentCount() == 0 &&
-                   digitalTwin.getModerateIncidentCount() > 0 &&
-                   ((double)(digitalTwin.getFalseIncidentCount()/digitalTwin.getModerateIncidentCount()) >= 0.5)) {
-                    digitalTwin.setAlertLevel(Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL+3, Constants.CONTROLLER_MODERATE_ALERTLEVEL+5);
-                    digitalTwin.incrementModerateEventCount();
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
-                }
+    /**
+     * Runs the Status Tracker rules for a batch of messages against any StatusTrackerState, such as a StatusTracker or
+     * a {@link StatusTrackerFlyweight} over a slot of a {@link StatusTrackerSlabStore}. Messages that fail validation
+     * are skipped and added to the quarantine.
+     *
+     * @param id the digital twin id
+     * @param digitalTwin the state to update
+     * @param messages the messages to apply
+     */
+    public void applyMessages(String id, StatusTrackerState digitalTwin, Iterable<StatusTrackerMessage> messages) {
+        applyMessages(null, id, digitalTwin, messages);
+    }
+
+    private void applyMessages(ProcessingContext processingContext, String id, StatusTrackerState digitalTwin,
+                               Iterable<StatusTrackerMessage> messages) {
+        // one snapshot of the alert levels for the whole batch
+        AlertProfiles profiles = AlertProfiles.current();
 
-                // the message indicates a moderate incident and this tracker has never had a severe incident while the
-                // heuristic of a false incident is less than 50%
-                else if(msg.moderateIncident() &&
-                   digitalTwin.getSevereIncidentCount() == 0 &&
-                   digitalTwin.getModerateIncidentCount() > 0 &&
-                   ((double)(digitalTwin.getFalseIncidentCount()/digitalTwin.getModerateIncidentCount()) < 0.5)) {
-                    digitalTwin.setAlertLevel(Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL+4, Constants.CONTROLLER_MODERATE_ALERTLEVEL+6);
-                    digitalTwin.incrementModerateEventCount();
-                    digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
+        // the pending run of status messages with the same condition; only grows past one message when coalescing
+        StatusTrackerMessage first = null;
+        StatusTrackerMessage last = null;
+        int count = 0;
+
+        // iterate through the incoming messages
+        for(StatusTrackerMessage msg : messages) {
+            // skip malformed messages so they cannot fail the whole batch on every retry
+            String problem = validate(msg);
+            if(problem != null) {
+                reject(processingContext, id, msg, problem);
+                continue;
+            }
+
+            if(_coalesce && count > 0 && !msg.initMessage() && !msg.resetMessage()
+                    && Objects.equals(msg.getNodeCondition(), last.getNodeCondition())) {
+                last = msg;
+                count++;
+                continue;
+            }
+            if(count > 0) {
+                applyRun(id, digitalTwin, profiles, first, last, count);
+                count = 0;
+            }
+
+            // this is an initialization message so we set our status and return.
+            if(msg.initMessage()) {
+                digitalTwin.setStatusTrackerType(msg.getNodeType());
+                digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
+                digitalTwin.setRegion(msg.getRegion(), msg.getLongitude(), msg.getLatitude());
+                return;
+            }
+
+            // an operator reset (see RegionalBroadcaster) resolves the current incident and clears the alert level;
+            // an offline node stays offline
+            if(msg.resetMessage()) {
+                if(digitalTwin.experiencingMinorEvent() || digitalTwin.experiencingModerateEvent()
+                        || digitalTwin.experiencingSevereEvent()) {
+                    digitalTwin.incrementResolvedIncidents();
+                    digitalTwin.setStatusTrackerCondition(Constants.NODE_CONDITION_NORMAL);
                 }
+                setAlertLevel(digitalTwin, profiles, AlertProfiles.LEVEL_NORMAL);
+                continue;
+            }
 
-                // the message indicates some form of incident -- update total incidents and add message to message list
-                if(msg.moderateIncident() || msg.minorIncident() || msg.severeIncident()) {
-                    digitalTwin.incrementTotalIncidents();
-                    digitalTwin.addToIncidentList(msg);
+            first = msg;
+            last = msg;
+            count = 1;
+        }
+        if(count > 0) {
+            applyRun(id, digitalTwin, profiles, first, last, count);
+        }
+    }
+
+    /**
+     * Checks that a message carries the fields the Status Tracker rules dereference.
+     * @param msg the message
+     * @return the reason the message is invalid, or null if it is valid
+     */
+    static String validate(StatusTrackerMessage msg) {
+        if(msg == null) {
+            return "null message";
+        }
+        if(msg.getType() == null) {
+            return "missing type";
+        }
+        if(msg.resetMessage()) {
+            return null;
+        }
+        if(msg.getNodeCondition() == null) {
+            return "missing node_condition";
+        }
+        if(msg.initMessage() && msg.getNodeType() == null) {
+            return "missing node_type";
+        }
+        return null;
+    }
+
+    private void reject(ProcessingContext processingContext, String id, StatusTrackerMessage msg, String problem) {
+        getQuarantine().add(id, msg, problem);
+        if(processingContext != null) {
+            getErrorReporter().report(processingContext, Level.WARNING, "invalid_message", id, problem, null);
+        }
+    }
+
+    /**
+     * Runs the Status Tracker rules once for a run of status messages that report the same condition. The counters
+     * advance by the run length and the alert level is the one the last message of the run would have set; the
+     * incident list records the run's last report and the latency recorder its first.
+     */
+    private void applyRun(String id, StatusTrackerState digitalTwin, AlertProfiles profiles,
+                          StatusTrackerMessage first, StatusTrackerMessage msg, int count) {
+        /* Run through the Status Tracker rules. */
+
+        // incoming message indicates the status tracker is offline or in normal operation.
+        if(msg.offline() || msg.normalOperation()) {
+            // set the state object statistics; only the first message of a run can resolve an incident
+            if(digitalTwin.experiencingModerateEvent() || digitalTwin.experiencingMinorEvent()) {
+                digitalTwin.incrementFalseAlarmCount();
+                digitalTwin.incrementResolvedIncidents();
+            }
+            else if(digitalTwin.experiencingSevereEvent()) {
+                digitalTwin.incrementResolvedIncidents();
+            }
+
+            // set the status tracker's alert level to normal, and update the state objects condition
+            setAlertLevel(digitalTwin, profiles, AlertProfiles.LEVEL_NORMAL);
+            digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
+        }
+
+        // the message indicates a minor incident
+        else if(msg.minorIncident()) {
+            setAlertLevel(digitalTwin, profiles, AlertProfiles.LEVEL_MINOR);
+            digitalTwin.incrementMinorEventCount(count);
+            digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
+        }
+
+        // the message indicates a severe incident
+        else if(msg.severeIncident()) {
+            setAlertLevel(digitalTwin, profiles, AlertProfiles.LEVEL_SEVERE);
+            digitalTwin.incrementSevereEventCount(count);
+            digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
+        }
+
+        // the message indicates a moderate incident
+        else if(msg.moderateIncident()) {
+            int level = moderateLevel(digitalTwin, digitalTwin.getModerateIncidentCount());
+            if(level >= 0) {
+                // each message of the run counts a moderate incident, which can move the later messages from the
+                // "mostly false" rule to the "mostly real" rule; the last message decides the alert level
+                if(count > 1) {
+                    level = moderateLevel(digitalTwin, digitalTwin.getModerateIncidentCount() + count - 1);
                 }
+                setAlertLevel(digitalTwin, profiles, level);
+                digitalTwin.incrementModerateEventCount(count);
+                digitalTwin.setStatusTrackerCondition(msg.getNodeCondition());
             }
+        }
 
-            return ProcessingResult.UpdateDigitalTwin;
-        } catch (Exception e) {
-            // Print the full exception to the models log
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            processingContext.logMessage(Level.SEVERE, pw.toString());
-            pw.close();
-            sw.close();
-            throw e;
+        // the message indicates some form of incident -- update total incidents and add message to message list
+        if(msg.moderateIncident() || msg.minorIncident() || msg.severeIncident()) {
+            digitalTwin.incrementTotalIncidents(count);
+            IncidentReport evicted = digitalTwin.addToIncidentList(msg);
+            getLatencyRecorder().recordSince(first.getTimestamp(), System.currentTimeMillis());
+            if(evicted != null && _archive != null) {
+                _archive.archive(id, evicted);
+            }
+        }
+    }
+
+    /**
+     * Returns the alert level rule that applies to a moderate incident, given the tracker's moderate incident count.
+     * @return the {@link AlertProfiles} level, or -1 if no rule applies
+     */
+    private static int moderateLevel(StatusTrackerState digitalTwin, int moderateIncidentCount) {
+        // this tracker has seen a severe incident
+        if(digitalTwin.getSevereIncidentCount() > 0) {
+            return AlertProfiles.LEVEL_MODERATE_AFTER_SEVERE;
+        }
+
+        // this tracker has never had a severe incident and this tracker has never seen a false incident
+        if(digitalTwin.getFalseIncidentCount() == 0) {
+            return AlertProfiles.LEVEL_MODERATE_FIRST;
+        }
+
+        // this tracker has never had a severe incident while the heuristic of a false incident is greater than 50%
+        if(moderateIncidentCount > 0 &&
+           ((double)(digitalTwin.getFalseIncidentCount()/moderateIncidentCount) >= 0.5)) {
+            return AlertProfiles.LEVEL_MODERATE_MOSTLY_FALSE;
+        }
+
+        // this tracker has never had a severe incident while the heuristic of a false incident is less than 50%
+        if(moderateIncidentCount > 0) {
+            return AlertProfiles.LEVEL_MODERATE_MOSTLY_REAL;
+        }
+        return -1;
+    }
+
+    private ProcessingResult completeBatch(StatusTracker digitalTwin) {
+        if(digitalTwin.getChangeMask() == 0) {
+            return ProcessingResult.NoUpdate;
+        }
+        digitalTwin.incrementVersion();
+        if(_index != null) {
+            _index.update(digitalTwin.getId(), digitalTwin);
         }
+        return ProcessingResult.UpdateDigitalTwin;
     }
 }
@@ -0,0 +1,365 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A chunk of StatusTracker rows stored column by column. Every numeric field of the StatusTracker is kept in its own
+ * primitive array and the node_type, node_condition and region strings are dictionary encoded, so a row group can be
+ * scanned without materializing StatusTracker instances.
+ */
+public class StatusTrackerRowGroup {
+    // strings are stored with an unsigned 16-bit length prefix
+    public static final int MAX_STRING_BYTES = 0xFFFF;
+
+    // column data, one entry per row
+    public final String[] ids;
+    public final int[] nodeTypeCodes;
+    public final int[] nodeConditionCodes;
+    public final int[] regionCodes;
+    public final double[] longitudes;
+    public final double[] latitudes;
+    public final int[] alertLevels;
+    public final int[] minorIncidentCounts;
+    public final int[] moderateIncidentCounts;
+    public final int[] falseIncidentCounts;
+    public final int[] severeIncidentCounts;
+    public final int[] totalIncidents;
+    public final int[] totalResolvedIncidents;
+    public final boolean[] experiencingIncident;
+
+    // string dictionaries for the dictionary encoded columns
+    private final List<String> _nodeTypeDictionary = new ArrayList<>();
+    private final List<String> _nodeConditionDictionary = new ArrayList<>();
+    private final List<String> _regionDictionary = new ArrayList<>();
+    private final Map<String, Integer> _nodeTypeCodes = new HashMap<>();
+    private final Map<String, Integer> _nodeConditionCodes = new HashMap<>();
+    private final Map<String, Integer> _regionCodes = new HashMap<>();
+
+    private int _rowCount;
+    private int _minAlertLevel = Integer.MAX_VALUE;
+    private int _maxAlertLevel = Integer.MIN_VALUE;
+
+    /**
+     * Creates an empty row group.
+     * @param capacity the maximum number of rows this group can hold
+     */
+    public StatusTrackerRowGroup(int capacity) {
+        ids = new String[capacity];
+        nodeTypeCodes = new int[capacity];
+        nodeConditionCodes = new int[capacity];
+        regionCodes = new int[capacity];
+        longitudes = new double[capacity];
+        latitudes = new double[capacity];
+        alertLevels = new int[capacity];
+        minorIncidentCounts = new int[capacity];
+        moderateIncidentCounts = new int[capacity];
+        falseIncidentCounts = new int[capacity];
+        severeIncidentCounts = new int[capacity];
+        totalIncidents = new int[capacity];
+        totalResolvedIncidents = new int[capacity];
+        experiencingIncident = new boolean[capacity];
+    }
+
+    /**
+     * Returns the number of rows in this group.
+     * @return the row count
+     */
+    public int getRowCount() {
+        return _rowCount;
+    }
+
+    /**
+     * Returns the maximum number of rows this group can hold.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the smallest alert level stored in this group.
+     * @return the minimum alert level
+     */
+    public int getMinAlertLevel() {
+        return _minAlertLevel;
+    }
+
+    /**
+     * Returns the largest alert level stored in this group.
+     * @return the maximum alert level
+     */
+    public int getMaxAlertLevel() {
+        return _maxAlertLevel;
+    }
+
+    /**
+     * Returns the node type for a row.
+     * @param row the row index
+     * @return the node type
+     */
+    public String getNodeType(int row) {
+        return _nodeTypeDictionary.get(nodeTypeCodes[row]);
+    }
+
+    /**
+     * Returns the node condition for a row.
+     * @param row the row index
+     * @return the node condition
+     */
+    public String getNodeCondition(int row) {
+        return _nodeConditionDictionary.get(nodeConditionCodes[row]);
+    }
+
+    /**
+     * Returns the region for a row.
+     * @param row the row index
+     * @return the region
+     */
+    public String getRegion(int row) {
+        return _regionDictionary.get(regionCodes[row]);
+    }
+
+    /**
+     * Returns the dictionary code of a node condition, so callers can filter the nodeConditionCodes column with
+     * integer comparisons.
+     * @param condition the node condition
+     * @return the code, or -1 if no row in this group has that condition
+     */
+    public int nodeConditionCode(String condition) {
+        Integer code = _nodeConditionCodes.get(condition);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the dictionary code of a region, so callers can filter the regionCodes column with integer comparisons.
+     * @param region the region
+     * @return the code, or -1 if no row in this group is in that region
+     */
+    public int regionCode(String region) {
+        Integer code = _regionCodes.get(region);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Appends a status tracker to this group.
+     * @param id the digital twin id
+     * @param tracker the status tracker
+     * @throws IllegalArgumentException if the id or one of the dictionary encoded strings is longer than
+     * MAX_STRING_BYTES in UTF-8
+     */
+    public void add(String id, StatusTracker tracker) {
+        checkLength("id", id);
+        checkLength("node_type", tracker.node_type);
+        checkLength("node_condition", tracker.node_condition);
+        checkLength("region", tracker.region);
+        int row = _rowCount++;
+        ids[row] = id;
+        nodeTypeCodes[row] = encode(tracker.node_type, _nodeTypeDictionary, _nodeTypeCodes);
+        nodeConditionCodes[row] = encode(tracker.node_condition, _nodeConditionDictionary, _nodeConditionCodes);
+        regionCodes[row] = encode(tracker.region, _regionDictionary, _regionCodes);
+        longitudes[row] = tracker.longitude;
+        latitudes[row] = tracker.latitude;
+        alertLevels[row] = tracker.alert_level;
+        minorIncidentCounts[row] = tracker.minorIncidentCount;
+        moderateIncidentCounts[row] = tracker.moderateIncidentCount;
+        falseIncidentCounts[row] = tracker.falseIncidentCount;
+        severeIncidentCounts[row] = tracker.severeIncidentCount;
+        totalIncidents[row] = tracker.totalIncidents;
+        totalResolvedIncidents[row] = tracker.totalResolvedIncidents;
+        experiencingIncident[row] = tracker.experiencingIncident;
+        _minAlertLevel = Math.min(_minAlertLevel, tracker.alert_level);
+        _maxAlertLevel = Math.max(_maxAlertLevel, tracker.alert_level);
+    }
+
+    /**
+     * Removes all rows from this group so it can be reused.
+     */
+    public void clear() {
+        _rowCount = 0;
+        _minAlertLevel = Integer.MAX_VALUE;
+        _maxAlertLevel = Integer.MIN_VALUE;
+        _nodeTypeDictionary.clear();
+        _nodeConditionDictionary.clear();
+        _regionDictionary.clear();
+        _nodeTypeCodes.clear();
+        _nodeConditionCodes.clear();
+        _regionCodes.clear();
+    }
+
+    /**
+     * Serializes this group's statistics and columns.
+     * @return a buffer ready to be written, positioned at 0
+     */
+    ByteBuffer encode() {
+        byte[][] encodedIds = new byte[_rowCount][];
+        int size = 3 * Integer.BYTES;
+        for (int row = 0; row < _rowCount; row++) {
+            encodedIds[row] = ids[row].getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + encodedIds[row].length;
+        }
+        size += dictionarySize(_nodeTypeDictionary) + dictionarySize(_nodeConditionDictionary) + dictionarySize(_regionDictionary);
+        size += _rowCount * (2 * Double.BYTES + 7 * Integer.BYTES + 1);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(_rowCount);
+        buffer.putInt(_minAlertLevel);
+        buffer.putInt(_maxAlertLevel);
+        for (int row = 0; row < _rowCount; row++) {
+            buffer.putShort((short)encodedIds[row].length);
+            buffer.put(encodedIds[row]);
+        }
+        putDictionaryColumn(buffer, _nodeTypeDictionary, nodeTypeCodes);
+        putDictionaryColumn(buffer, _nodeConditionDictionary, nodeConditionCodes);
+        putDictionaryColumn(buffer, _regionDictionary, regionCodes);
+        for (int row = 0; row < _rowCount; row++) buffer.putDouble(longitudes[row]);
+        for (int row = 0; row < _rowCount; row++) buffer.putDouble(latitudes[row]);
+        putIntColumn(buffer, alertLevels);
+        putIntColumn(buffer, minorIncidentCounts);
+        putIntColumn(buffer, moderateIncidentCounts);
+        putIntColumn(buffer, falseIncidentCounts);
+        putIntColumn(buffer, severeIncidentCounts);
+        putIntColumn(buffer, totalIncidents);
+        putIntColumn(buffer, totalResolvedIncidents);
+        for (int row = 0; row < _rowCount; row++) buffer.put(experiencingIncident[row] ? (byte)1 : (byte)0);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Deserializes a group previously written by {@link #encode()}.
+     * @param buffer the encoded group
+     * @return the decoded row group
+     */
+    static StatusTrackerRowGroup decode(ByteBuffer buffer) {
+        int rowCount = buffer.getInt();
+        StatusTrackerRowGroup group = new StatusTrackerRowGroup(rowCount);
+        group._rowCount = rowCount;
+        group._minAlertLevel = buffer.getInt();
+        group._maxAlertLevel = buffer.getInt();
+        for (int row = 0; row < rowCount; row++) {
+            group.ids[row] = getString(buffer);
+        }
+        getDictionaryColumn(buffer, rowCount, group._nodeTypeDictionary, group._nodeTypeCodes, group.nodeTypeCodes);
+        getDictionaryColumn(buffer, rowCount, group._nodeConditionDictionary, group._nodeConditionCodes, group.nodeConditionCodes);
+        getDictionaryColumn(buffer, rowCount, group._regionDictionary, group._regionCodes, group.regionCodes);
+        for (int row = 0; row < rowCount; row++) group.longitudes[row] = buffer.getDouble();
+        for (int row = 0; row < rowCount; row++) group.latitudes[row] = buffer.getDouble();
+        getIntColumn(buffer, rowCount, group.alertLevels);
+        getIntColumn(buffer, rowCount, group.minorIncidentCounts);
+        getIntColumn(buffer, rowCount, group.moderateIncidentCounts);
+        getIntColumn(buffer, rowCount, group.falseIncidentCounts);
+        getIntColumn(buffer, rowCount, group.severeIncidentCounts);
+        getIntColumn(buffer, rowCount, group.totalIncidents);
+        getIntColumn(buffer, rowCount, group.totalResolvedIncidents);
+        for (int row = 0; row < rowCount; row++) group.experiencingIncident[row] = buffer.get() != 0;
+        return group;
+    }
+
+    private static int encode(String value, List<String> dictionary, Map<String, Integer> codes) {
+        if (value == null) {
+            value = "";
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    static void checkLength(String field, String value) {
+        // a UTF-16 char never takes more than 3 UTF-8 bytes, so short strings need no encoding to check
+        if (value != null && value.length() > MAX_STRING_BYTES / 3
+                && value.getBytes(StandardCharsets.UTF_8).length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("The " + field + " is longer than " + MAX_STRING_BYTES + " UTF-8 bytes.");
+        }
+    }
+
+    private int dictionarySize(List<String> dictionary) {
+        int size = Integer.BYTES;
+        for (String entry : dictionary) {
+            size += Short.BYTES + entry.getBytes(StandardCharsets.UTF_8).length;
+        }
+        // codes are stored as single bytes when the dictionary is small enough
+        return size + _rowCount * (dictionary.size() <= 256 ? 1 : Integer.BYTES);
+    }
+
+    private void putDictionaryColumn(ByteBuffer buffer, List<String> dictionary, int[] codes) {
+        buffer.putInt(dictionary.size());
+        for (String entry : dictionary) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short)bytes.length);
+            buffer.put(bytes);
+        }
+        boolean narrow = dictionary.size() <= 256;
+        for (int row = 0; row < _rowCount; row++) {
+            if (narrow) {
+                buffer.put((byte)codes[row]);
+            } else {
+                buffer.putInt(codes[row]);
+            }
+        }
+    }
+
+    private void putIntColumn(ByteBuffer buffer, int[] column) {
+        for (int row = 0; row < _rowCount; row++) {
+            buffer.putInt(column[row]);
+        }
+    }
+
+    private static void getDictionaryColumn(ByteBuffer buffer, int rowCount, List<String> dictionary, Map<String, Integer> codeMap, int[] codes) {
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            String entry = getString(buffer);
+            dictionary.add(entry);
+            codeMap.put(entry, i);
+        }
+        boolean narrow = size <= 256;
+        for (int row = 0; row < rowCount; row++) {
+            codes[row] = narrow ? (buffer.get() & 0xFF) : buffer.getInt();
+        }
+    }
+
+    private static void getIntColumn(ByteBuffer buffer, int rowCount, int[] column) {
+        for (int row = 0; row < rowCount; row++) {
+            column[row] = buffer.getInt();
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap storage for large local StatusTracker populations, e.g. for simulating or soak testing multi-million node
+ * grids without the GC cost of millions of StatusTracker objects.
+ *
+ * Each twin occupies a fixed-size slot in a direct ByteBuffer slab. Slots are found through an open-addressing map of
+ * id hashes to slot numbers held in primitive arrays, and are read and written in place through a
+ * {@link StatusTrackerFlyweight}. Node type, condition and region are stored as {@link NodeCodes}; the incident list is
+ * a fixed ring of INCIDENT_RING_SIZE entries.
+ *
+ * find() and flyweights positioned on different slots may be used concurrently. Adding twins with findOrAdd() or
+ * store() is not thread-safe and must not run concurrently with any other access to the store.
+ */
+public class StatusTrackerSlabStore {
+    public static final int MAX_ID_LENGTH = 24;
+    public static final int INCIDENT_RING_SIZE = 15;
+
+    /* Slot layout */
+    static final int OFFSET_ID_LENGTH       = 0;    // short
+    static final int OFFSET_ID              = 2;    // MAX_ID_LENGTH chars
+    static final int OFFSET_TYPE            = 50;   // byte
+    static final int OFFSET_CONDITION       = 51;   // byte
+    static final int OFFSET_REGION          = 52;   // byte
+    static final int OFFSET_EXPERIENCING    = 53;   // byte
+    static final int OFFSET_LONGITUDE       = 56;   // double
+    static final int OFFSET_LATITUDE        = 64;   // double
+    static final int OFFSET_VERSION         = 72;   // long
+    static final int OFFSET_ALERT_LEVEL     = 80;   // int
+    static final int OFFSET_MINOR           = 84;   // int
+    static final int OFFSET_MODERATE        = 88;   // int
+    static final int OFFSET_FALSE           = 92;   // int
+    static final int OFFSET_SEVERE          = 96;   // int
+    static final int OFFSET_TOTAL           = 100;  // int
+    static final int OFFSET_RESOLVED        = 104;  // int
+    static final int OFFSET_INCIDENT_COUNT  = 108;  // int
+    static final int OFFSET_INCIDENT_HEAD   = 112;  // int
+    static final int OFFSET_INCIDENTS       = 120;  // INCIDENT_RING_SIZE entries
+    static final int INCIDENT_SIZE          = 17;   // long timestamp, long source timestamp, byte condition
+    // rounded up to a multiple of 8 so the longs and doubles of every slot stay 8-byte aligned
+    static final int SLOT_SIZE              = (OFFSET_INCIDENTS + INCIDENT_RING_SIZE * INCIDENT_SIZE + 7) & ~7;
+
+    private static final int SLOTS_PER_SLAB = 1 << 16;
+
+    private final ByteBuffer[] _slabs;
+    private final int _capacity;
+    private int _size;
+
+    // id -> slot map: parallel arrays of id hashes and slot numbers plus one (0 marks an empty entry)
+    private final int[] _hashes;
+    private final int[] _slots;
+    private final int _mask;
+
+    /**
+     * Creates a store. Slabs are allocated as slots are used.
+     * @param capacity the maximum number of twins
+     */
+    public StatusTrackerSlabStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+        _capacity = capacity;
+        _slabs = new ByteBuffer[(capacity + SLOTS_PER_SLAB - 1) / SLOTS_PER_SLAB];
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        _hashes = new int[tableSize];
+        _slots = new int[tableSize];
+        _mask = tableSize - 1;
+    }
+
+    /**
+     * Returns the number of twins in the store.
+     * @return the number of twins
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the maximum number of twins in the store.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    /**
+     * Creates a flyweight for reading and writing slots of this store. Flyweights are cheap, reusable cursors; use one
+     * per thread.
+     * @return the flyweight
+     */
+    public StatusTrackerFlyweight flyweight() {
+        return new StatusTrackerFlyweight(this);
+    }
+
+    /**
+     * Returns the slot of a twin.
+     * @param id the digital twin id
+     * @return the slot, or -1 if the twin is not in the store
+     */
+    public int find(String id) {
+        int hash = hash(id);
+        for (int i = hash & _mask; _slots[i] != 0; i = (i + 1) & _mask) {
+            if (_hashes[i] == hash && idEquals(_slots[i] - 1, id)) {
+                return _slots[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of a twin, adding a zeroed twin if it is not in the store.
+     * @param id the digital twin id
+     * @return the slot
+     * @throws IllegalStateException if the store is full
+     */
+    public int findOrAdd(String id) {
+        if (id.length() > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Ids are limited to " + MAX_ID_LENGTH + " characters.");
+        }
+        int hash = hash(id);
+        int i = hash & _mask;
+        for (; _slots[i] != 0; i = (i + 1) & _mask) {
+            if (_hashes[i] == hash && idEquals(_slots[i] - 1, id)) {
+                return _slots[i] - 1;
+            }
+        }
+        if (_size == _capacity) {
+            throw new IllegalStateException("The slab store is full (" + _capacity + " twins).");
+        }
+        int slot = _size;
+        int index = slot / SLOTS_PER_SLAB;
+        if (_slabs[index] == null) {
+            int slots = Math.min(SLOTS_PER_SLAB, _capacity - index * SLOTS_PER_SLAB);
+            _slabs[index] = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        }
+        _size++;
+        _hashes[i] = hash;
+        _slots[i] = slot + 1;
+        new StatusTrackerFlyweight(this).moveTo(slot).initialize(id);
+        return slot;
+    }
+
+    /**
+     * Copies a StatusTracker into the store.
+     * @param id the digital twin id
+     * @param tracker the status tracker
+     * @return the slot
+     */
+    public int store(String id, StatusTracker tracker) {
+        int slot = findOrAdd(id);
+        new StatusTrackerFlyweight(this).moveTo(slot).copyFrom(tracker);
+        return slot;
+    }
+
+    ByteBuffer slab(int slot) {
+        if (slot < 0 || slot >= _size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " is not in use.");
+        }
+        // allocated by findOrAdd() when the slab's first slot was added
+        return _slabs[slot / SLOTS_PER_SLAB];
+    }
+
+    private boolean idEquals(int slot, String id) {
+        ByteBuffer slab = slab(slot);
+        int base = offset(slot);
+        int length = slab.getShort(base + OFFSET_ID_LENGTH);
+        if (length != id.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (slab.getChar(base + OFFSET_ID + 2 * i) != id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int offset(int slot) {
+        return (slot % SLOTS_PER_SLAB) * SLOT_SIZE;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
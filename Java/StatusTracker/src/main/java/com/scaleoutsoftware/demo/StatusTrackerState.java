@@ -0,0 +1,162 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+/**
+ * The state operations used by the Status Tracker rules. Implemented by the {@link StatusTracker} digital twin and by
+ * {@link StatusTrackerFlyweight}, which reads and writes the same state in place in a {@link StatusTrackerSlabStore}.
+ */
+public interface StatusTrackerState {
+    /**
+     * Sets the power grid node's type
+     * @param statusTrackerType the power grid node's type ("controller" or "infrastructure")
+     */
+    void setStatusTrackerType(String statusTrackerType);
+
+    /**
+     * Sets the power grid node's condition.
+     * @param statusTrackerCondition the condition to set
+     */
+    void setStatusTrackerCondition(String statusTrackerCondition);
+
+    /**
+     * Sets the region of this power grid node
+     * @param r the region
+     * @param lon the longitude of this node's region
+     * @param lat the latitude of this node's region
+     */
+    void setRegion(String r, double lon, double lat);
+
+    /**
+     * Returns true if this node is experiencing a moderate event, otherwise false.
+     * @return true if node_condition is equal to moderate, otherwise false
+     */
+    boolean experiencingModerateEvent();
+
+    /**
+     * Returns true if this node is experiencing a severe event, otherwise false.
+     * @return true if node_condition is equal to severe, otherwise false
+     */
+    boolean experiencingSevereEvent();
+
+    /**
+     * Returns true if this node is experiencing a minor event, otherwise false.
+     * @return true if the node_condition is equal to minor, otherwise false
+     */
+    boolean experiencingMinorEvent();
+
+    /**
+     * Increments the false alarm count and resolves incident.
+     */
+    void incrementFalseAlarmCount();
+
+    /**
+     * Increments the severe event count and marks this node as "experiencing incident".
+     */
+    void incrementSevereEventCount();
+
+    /**
+     * Adds a run of severe events to the severe event count and marks this node as "experiencing incident".
+     * @param count the number of events
+     */
+    void incrementSevereEventCount(int count);
+
+    /**
+     * Increments the moderate event count and marks this node as "experiencing incident".
+     */
+    void incrementModerateEventCount();
+
+    /**
+     * Adds a run of moderate events to the moderate event count and marks this node as "experiencing incident".
+     * @param count the number of events
+     */
+    void incrementModerateEventCount(int count);
+
+    /**
+     * Increments the minor event count and marks this node as "experiencing incident".
+     */
+    void incrementMinorEventCount();
+
+    /**
+     * Adds a run of minor events to the minor event count and marks this node as "experiencing incident".
+     * @param count the number of events
+     */
+    void incrementMinorEventCount(int count);
+
+    /**
+     * Returns the code of the power grid node's region.
+     * @return the {@link NodeCodes} region code
+     */
+    int getRegionCode();
+
+    /**
+     * Returns the severe incident count.
+     * @return the severe incident count
+     */
+    int getSevereIncidentCount();
+
+    /**
+     * Returns the false incident count.
+     * @return the false incident count
+     */
+    int getFalseIncidentCount();
+
+    /**
+     * Returns moderate incident count.
+     * @return the moderate incident count
+     */
+    int getModerateIncidentCount();
+
+    /**
+     * Set the alert level relative to this node's type
+     * @param infrastructureLevel the alert level for an infrastructure node
+     * @param controllerLevel the alert level for a controller node
+     */
+    void setAlertLevel(int infrastructureLevel, int controllerLevel);
+
+    /**
+     * Increment resolved incident count
+     */
+    void incrementResolvedIncidents();
+
+    /**
+     * Increment total incident count
+     */
+    void incrementTotalIncidents();
+
+    /**
+     * Adds a run of incidents to the total incident count
+     * @param count the number of incidents
+     */
+    void incrementTotalIncidents(int count);
+
+    /**
+     * Adds a msg to the incident list, evicting the oldest incident once the list is full.
+     * @param msg the message to add
+     * @return the evicted incident report, or null if nothing was evicted
+     */
+    IncidentReport addToIncidentList(StatusTrackerMessage msg);
+}
@@ -0,0 +1,126 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import com.google.gson.Gson;
+import com.scaleoutsoftware.digitaltwin.core.DigitalTwinBase;
+import com.scaleoutsoftware.digitaltwin.core.SendingResult;
+import com.scaleoutsoftware.digitaltwin.mock.MockEndpoint;
+import com.scaleoutsoftware.digitaltwin.mock.MockEnvironment;
+import com.scaleoutsoftware.digitaltwin.mock.MockEnvironmentBuilder;
+import com.scaleoutsoftware.soak.SoakMonitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Endurance test: pushes hours of synthetic status messages through the processor at accelerated time and fails if
+ * a tracker's state outgrows its budget, the heap keeps growing once every tracker is warm, GC pauses exceed their
+ * budget, or an incident list outgrows Constants.MAX_INCIDENT_LIST_SIZE. Excluded from the regular test task; run with
+ * gradle soakTest and tune with -Dsoak.* properties.
+ *
+ * Tracker state is measured by its snapshot encoding, so the budget covers the twin alone. The heap is compared against
+ * the end of the first hour rather than the start, so the mock environment's fixed overhead and the incident lists
+ * filling up do not count as a leak; any later growth does.
+ */
+public class StatusTrackerSoakTest {
+    private static final Logger LOG = Logger.getLogger(StatusTrackerSoakTest.class.getName());
+
+    private static final int    HOURS               = Integer.getInteger("soak.hours", 6);
+    private static final int    TRACKERS            = Integer.getInteger("soak.trackers", 1000);
+    private static final long   INTERVAL_MILLIS     = Long.getLong("soak.intervalMillis", 30000);
+    private static final long   MAX_BYTES_PER_TWIN  = Long.getLong("soak.maxBytesPerTwin", 16 * 1024);
+    private static final long   MAX_GROWTH_PER_TWIN = Long.getLong("soak.maxGrowthBytesPerTwin", 1024);
+    private static final long   MAX_PAUSE_P99_MILLIS = Long.getLong("soak.maxPauseP99Millis", 200);
+
+    private static final String[] REGIONS = {Constants.NODE_REGION_NW, Constants.NODE_REGION_SW, Constants.NODE_REGION_MN,
+            Constants.NODE_REGION_MS, Constants.NODE_REGION_NE, Constants.NODE_REGION_SE};
+
+    @Test
+    public void testBoundedTrackerState() throws Exception {
+        try (SoakMonitor monitor = new SoakMonitor()) {
+            MockEnvironment environment = new MockEnvironmentBuilder()
+                    .addDigitalTwin("StatusTracker", new StatusTrackerMessageProcessor(), StatusTracker.class, StatusTrackerMessage.class)
+                    .build();
+
+            Gson gson = new Gson();
+            Random random = new Random(42);
+            for (int t = 0; t < TRACKERS; t++) {
+                String type = t % 2 == 0 ? Constants.NODE_TYPE_CONTROLLER : Constants.NODE_TYPE_INFRASTRUCTURE;
+                MockEndpoint.send("StatusTracker", Integer.toString(t), gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT,
+                        Integer.toString(t), REGIONS[t % REGIONS.length], Constants.NODE_CONDITION_NORMAL, type, 47.5404, 122.6362)));
+            }
+
+            long time = System.currentTimeMillis() - HOURS * 3600000L;
+            long messagesPerHour = 3600000L / INTERVAL_MILLIS;
+            long warmHeap = 0;
+            for (int hour = 1; hour <= HOURS; hour++) {
+                for (long m = 0; m < messagesPerHour; m++) {
+                    time += INTERVAL_MILLIS;
+                    for (int t = 0; t < TRACKERS; t++) {
+                        String id = Integer.toString(t);
+                        String type = t % 2 == 0 ? Constants.NODE_TYPE_CONTROLLER : Constants.NODE_TYPE_INFRASTRUCTURE;
+                        StatusTrackerMessage msg = new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, id,
+                                REGIONS[t % REGIONS.length], nextCondition(random), type, 47.5404, 122.6362, time);
+                        Assert.assertEquals(SendingResult.Handled, MockEndpoint.send("StatusTracker", id, gson.toJson(msg)));
+                    }
+                }
+
+                int maxStateBytes = 0;
+                for (DigitalTwinBase instance : environment.getInstances("StatusTracker").values()) {
+                    StatusTracker tracker = (StatusTracker)instance;
+                    Assert.assertTrue(tracker.getIncidentListSize() <= Constants.MAX_INCIDENT_LIST_SIZE);
+                    maxStateBytes = Math.max(maxStateBytes, StatusTrackerDeltaCodec.encodeSnapshot(tracker).length);
+                }
+                long heap = SoakMonitor.usedHeap();
+                if (hour == 1) {
+                    warmHeap = heap;
+                }
+                long growthPerTwin = (heap - warmHeap) / TRACKERS;
+                LOG.info(String.format("hour %d: largest tracker %d bytes, heap growth %d bytes per tracker, GC %s",
+                        hour, maxStateBytes, growthPerTwin, monitor.describePauses()));
+                Assert.assertTrue("Tracker state grew to " + maxStateBytes + " bytes", maxStateBytes <= MAX_BYTES_PER_TWIN);
+                Assert.assertTrue("Heap grew by " + growthPerTwin + " bytes per tracker after the first hour",
+                        growthPerTwin <= MAX_GROWTH_PER_TWIN);
+            }
+
+            long pauseP99 = monitor.getPausePercentile(0.99);
+            Assert.assertTrue("GC pause p99 was " + pauseP99 + " ms", pauseP99 <= MAX_PAUSE_P99_MILLIS);
+            environment.shutdown();
+        }
+    }
+
+    private static String nextCondition(Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 80) return Constants.NODE_CONDITION_NORMAL;
+        if (roll < 90) return Constants.NODE_CONDITION_MINOR;
+        if (roll < 96) return Constants.NODE_CONDITION_MODERATE;
+        if (roll < 99) return Constants.NODE_CONDITION_SEVERE;
+        return Constants.NODE_CONDITION_OFFLINE;
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDeltaCodec {
+    @Test
+    public void testDeltaRoundTrip() {
+        StatusTracker source = new StatusTracker();
+        source.setStatusTrackerType(Constants.NODE_TYPE_CONTROLLER);
+        source.setStatusTrackerCondition(Constants.NODE_CONDITION_NORMAL);
+        source.setRegion(Constants.NODE_REGION_NE, 122.6362, 47.5404);
+        source.incrementVersion();
+
+        StatusTracker replica = new StatusTracker();
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encode(source, replica.getVersion()), replica);
+        Assert.assertEquals(source, replica);
+
+        // a moderate incident changes the condition, the alert level and a few counters
+        source.clearChanges();
+        source.setAlertLevel(Constants.INFRASTRUCTURE_MODERATE_ALERTLEVEL, Constants.CONTROLLER_MODERATE_ALERTLEVEL);
+        source.incrementModerateEventCount();
+        source.setStatusTrackerCondition(Constants.NODE_CONDITION_MODERATE);
+        source.incrementTotalIncidents();
+        source.incrementVersion();
+        Assert.assertEquals(StatusTracker.FIELD_ALERT_LEVEL | StatusTracker.FIELD_MODERATE_INCIDENT_COUNT
+                | StatusTracker.FIELD_EXPERIENCING_INCIDENT | StatusTracker.FIELD_NODE_CONDITION
+                | StatusTracker.FIELD_TOTAL_INCIDENTS, source.getChangeMask());
+
+        byte[] delta = StatusTrackerDeltaCodec.encode(source, replica.getVersion());
+        Assert.assertEquals(StatusTrackerDeltaCodec.KIND_DELTA, delta[0]);
+        Assert.assertTrue(delta.length < StatusTrackerDeltaCodec.encodeSnapshot(source).length);
+        StatusTrackerDeltaCodec.apply(delta, replica);
+        Assert.assertEquals(source, replica);
+        Assert.assertEquals(source.getVersion(), replica.getVersion());
+    }
+
+    @Test
+    public void testCompactedRoundTrip() {
+        StatusTracker source = new StatusTracker();
+        source.addToIncidentList(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "node", Constants.NODE_REGION_NW,
+                Constants.NODE_CONDITION_MINOR, Constants.NODE_TYPE_CONTROLLER, 47.5404, 122.6362));
+        source.incrementVersion();
+        StatusTracker replica = new StatusTracker();
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encodeSnapshot(source), replica);
+        Assert.assertEquals(1, replica.getIncidentListSize());
+
+        source.clearChanges();
+        Assert.assertEquals(1, source.compact().size());
+        source.incrementVersion();
+        byte[] delta = StatusTrackerDeltaCodec.encode(source, replica.getVersion());
+        Assert.assertEquals(StatusTrackerDeltaCodec.KIND_DELTA, delta[0]);
+        StatusTrackerDeltaCodec.apply(delta, replica);
+        Assert.assertTrue(replica.isCompacted());
+        Assert.assertEquals(source, replica);
+
+        StatusTracker restored = new StatusTracker();
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encodeSnapshot(source), restored);
+        Assert.assertTrue(restored.isCompacted());
+        Assert.assertEquals(0, restored.getIncidentListSize());
+    }
+
+    @Test
+    public void testStaleReceiverGetsSnapshot() {
+        StatusTracker source = new StatusTracker();
+        source.setStatusTrackerType(Constants.NODE_TYPE_INFRASTRUCTURE);
+        source.incrementVersion();
+        source.incrementVersion();
+        byte[] encoded = StatusTrackerDeltaCodec.encode(source, 0);
+        Assert.assertEquals(StatusTrackerDeltaCodec.KIND_SNAPSHOT, encoded[0]);
+
+        StatusTracker replica = new StatusTracker();
+        StatusTrackerDeltaCodec.apply(encoded, replica);
+        Assert.assertEquals(source, replica);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDeltaRejectsWrongBase() {
+        StatusTracker source = new StatusTracker();
+        source.incrementVersion();
+        source.incrementVersion();
+        source.clearChanges();
+        source.incrementTotalIncidents();
+        source.incrementVersion();
+        byte[] delta = StatusTrackerDeltaCodec.encode(source, 2);
+        StatusTrackerDeltaCodec.apply(delta, new StatusTracker());
+    }
+
+    @Test
+    public void testNoOpBatchThenEncode() {
+        StatusTracker source = new StatusTracker();
+        source.setStatusTrackerType(Constants.NODE_TYPE_CONTROLLER);
+        source.incrementVersion();
+        StatusTracker replica = new StatusTracker();
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encodeSnapshot(source), replica);
+
+        source.clearChanges();
+        source.setStatusTrackerCondition(Constants.NODE_CONDITION_MINOR);
+        source.incrementVersion();
+        Assert.assertTrue(source.isChangeMaskCurrent());
+
+        // a batch that changes nothing clears the mask without creating a version, as the processor does
+        source.clearChanges();
+        Assert.assertFalse(source.isChangeMaskCurrent());
+        byte[] encoded = StatusTrackerDeltaCodec.encode(source, replica.getVersion());
+        Assert.assertEquals(StatusTrackerDeltaCodec.KIND_SNAPSHOT, encoded[0]);
+        StatusTrackerDeltaCodec.apply(encoded, replica);
+        Assert.assertEquals(source, replica);
+        Assert.assertEquals(Constants.NODE_CONDITION_MINOR, replica.node_condition);
+    }
+
+    @Test
+    public void testIncidentDeltaSendsAddedReports() {
+        StatusTracker source = new StatusTracker();
+        source.setStatusTrackerType(Constants.NODE_TYPE_INFRASTRUCTURE);
+        for (int i = 0; i < Constants.MAX_INCIDENT_LIST_SIZE; i++) {
+            source.addToIncidentList(incident(i));
+        }
+        source.incrementVersion();
+        StatusTracker replica = new StatusTracker();
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encodeSnapshot(source), replica);
+        assertSameIncidents(source, replica);
+
+        // each incident evicts the oldest report; the delta carries only the new one
+        for (int i = 0; i < 2 * Constants.MAX_INCIDENT_LIST_SIZE; i++) {
+            source.clearChanges();
+            source.addToIncidentList(incident(100 + i));
+            source.incrementTotalIncidents();
+            source.incrementVersion();
+            byte[] delta = StatusTrackerDeltaCodec.encode(source, replica.getVersion());
+            Assert.assertEquals(StatusTrackerDeltaCodec.KIND_DELTA, delta[0]);
+            Assert.assertTrue(delta.length * 5 < StatusTrackerDeltaCodec.encodeSnapshot(source).length);
+            StatusTrackerDeltaCodec.apply(delta, replica);
+            assertSameIncidents(source, replica);
+        }
+
+        // compacting and then adding a report keeps the sequence numbers in step
+        source.clearChanges();
+        source.compact();
+        source.incrementVersion();
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encode(source, replica.getVersion()), replica);
+        source.clearChanges();
+        source.addToIncidentList(incident(200));
+        source.incrementVersion();
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encode(source, replica.getVersion()), replica);
+        assertSameIncidents(source, replica);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIncidentDeltaRejectsMissingReports() {
+        StatusTracker source = new StatusTracker();
+        source.addToIncidentList(incident(0));
+        source.incrementVersion();
+        source.clearChanges();
+        source.addToIncidentList(incident(1));
+        source.incrementVersion();
+        // the replica has version 1's other fields but not its report, so the new report does not line up
+        StatusTracker replica = new StatusTracker();
+        replica.setVersion(1);
+        StatusTrackerDeltaCodec.apply(StatusTrackerDeltaCodec.encode(source, 1), replica);
+    }
+
+    private static StatusTrackerMessage incident(int i) {
+        return new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "node", Constants.NODE_REGION_NW,
+                i % 2 == 0 ? Constants.NODE_CONDITION_MINOR : Constants.NODE_CONDITION_MODERATE, Constants.NODE_TYPE_CONTROLLER,
+                47.5404, 122.6362, 1700000000000L + i * 1000L);
+    }
+
+    private static void assertSameIncidents(StatusTracker expected, StatusTracker actual) {
+        Assert.assertEquals(expected.firstIncidentSequence, actual.firstIncidentSequence);
+        Assert.assertEquals(expected.getIncidentListSize(), actual.getIncidentListSize());
+        for (int i = 0; i < expected.getIncidentListSize(); i++) {
+            IncidentReport e = expected.incidentList.get(i);
+            IncidentReport a = actual.incidentList.get(i);
+            Assert.assertEquals(e.timestamp, a.timestamp);
+            Assert.assertEquals(e.sourceTimestamp, a.sourceTimestamp);
+            Assert.assertEquals(e.incidentType, a.incidentType);
+        }
+    }
+}
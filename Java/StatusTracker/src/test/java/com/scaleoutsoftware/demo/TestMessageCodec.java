@@ -0,0 +1,131 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.demo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+public class TestMessageCodec {
+    @Test
+    public void testBinaryAndJsonCoexist() {
+        MessageCodecRegistry<StatusTrackerMessage> registry = StatusTrackerMessageCodec.registry();
+        StatusTrackerMessage msg = new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "node-17", Constants.NODE_REGION_MS,
+                Constants.NODE_CONDITION_MODERATE, Constants.NODE_TYPE_CONTROLLER, 32.2988, -90.1848, 1700000000000L);
+        byte[] binary = new StatusTrackerMessageCodec().encode(msg);
+        byte[] json = new JsonMessageCodec<>(StatusTrackerMessage.class).encode(msg);
+        Assert.assertTrue(binary.length * 3 < json.length);
+
+        for (byte[] encoded : new byte[][] {binary, json}) {
+            StatusTrackerMessage decoded = registry.decode(encoded);
+            Assert.assertEquals(msg.getType(), decoded.getType());
+            Assert.assertEquals(msg.getId(), decoded.getId());
+            Assert.assertEquals(msg.getRegion(), decoded.getRegion());
+            Assert.assertEquals(msg.getNodeCondition(), decoded.getNodeCondition());
+            Assert.assertEquals(msg.getNodeType(), decoded.getNodeType());
+            Assert.assertEquals(msg.getLatitude(), decoded.getLatitude(), 0);
+            Assert.assertEquals(msg.getLongitude(), decoded.getLongitude(), 0);
+            Assert.assertEquals(msg.getTimestamp(), decoded.getTimestamp());
+        }
+    }
+
+    @Test
+    public void testValuesWithoutCodes() {
+        StatusTrackerMessage msg = new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT, "node-18", "EU",
+                "degraded", null, 0, 0);
+        StatusTrackerMessage decoded = StatusTrackerMessageCodec.registry().decode(new StatusTrackerMessageCodec().encode(msg));
+        Assert.assertEquals("EU", decoded.getRegion());
+        Assert.assertEquals("degraded", decoded.getNodeCondition());
+        Assert.assertNull(decoded.getNodeType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedMessage() {
+        byte[] binary = new StatusTrackerMessageCodec().encode(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "node-19",
+                Constants.NODE_REGION_NE, Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_INFRASTRUCTURE, 1, 2));
+        StatusTrackerMessageCodec.registry().decode(java.util.Arrays.copyOf(binary, binary.length - 4));
+    }
+
+    @Test
+    public void testUnknownCodeRejected() {
+        byte[] binary = new StatusTrackerMessageCodec().encode(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "node-20",
+                Constants.NODE_REGION_NE, Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_INFRASTRUCTURE, 1, 2));
+        // the codes follow the magic and version bytes; a code with the high bit set must not decode as a negative code
+        for (int offset = 2; offset < 6; offset++) {
+            byte[] corrupt = binary.clone();
+            corrupt[offset] = (byte)0xC8;
+            try {
+                StatusTrackerMessageCodec.registry().decode(corrupt);
+                Assert.fail("Decoded an unknown code at offset " + offset + ".");
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage().endsWith("code 200."));
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedVarintRejected() {
+        byte[] overlong = {(byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0x80,
+                (byte)0x80, (byte)0x80, 0x01};
+        ByteArrayOutputStream negativeLength = new ByteArrayOutputStream();
+        VarInts.writeVarLong(negativeLength, -1L);
+        ByteArrayOutputStream pastEnd = new ByteArrayOutputStream();
+        VarInts.writeVarLong(pastEnd, (1L << 32) + 4);
+        pastEnd.write('a');
+
+        // an id whose length prefix is too long, negative or past the end of the message, then an overlong timestamp;
+        // each message is otherwise complete, so only the length and varint checks can reject it
+        for (byte[] id : new byte[][] {overlong, negativeLength.toByteArray(), pastEnd.toByteArray()}) {
+            assertRejected(message(id, new byte[] {0x01}));
+        }
+        assertRejected(message(new byte[] {0x02, 'n'}, overlong));
+    }
+
+    private static byte[] message(byte[] id, byte[] timestamp) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(StatusTrackerMessageCodec.MAGIC);
+        out.write(StatusTrackerMessageCodec.VERSION);
+        out.write(2);   // status message type code
+        out.write(NodeCodes.typeCode(Constants.NODE_TYPE_CONTROLLER));
+        out.write(NodeCodes.conditionCode(Constants.NODE_CONDITION_NORMAL));
+        out.write(NodeCodes.regionCode(Constants.NODE_REGION_NE));
+        out.write(id, 0, id.length);
+        VarInts.writeLong(out, Double.doubleToLongBits(47.5));
+        VarInts.writeLong(out, Double.doubleToLongBits(122.6));
+        out.write(timestamp, 0, timestamp.length);
+        return out.toByteArray();
+    }
+
+    private static void assertRejected(byte[] corrupt) {
+        try {
+            new StatusTrackerMessageCodec().decode(corrupt);
+            Assert.fail("Decoded a malformed message.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -27,17 +27,63 @@ package com.scaleoutsoftware.demo;
 
 import com.google.gson.Gson;
 import com.scaleoutsoftware.digitaltwin.core.DigitalTwinBase;
+import com.scaleoutsoftware.digitaltwin.core.ProcessingContext;
 import com.scaleoutsoftware.digitaltwin.core.SendingResult;
 import com.scaleoutsoftware.digitaltwin.mock.MockEndpoint;
 import com.scaleoutsoftware.digitaltwin.mock.MockEnvironment;
 import com.scaleoutsoftware.digitaltwin.mock.MockEnvironmentBuilder;
 import com.scaleoutsoftware.digitaltwin.mock.MockEnvironmentException;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class TestProcessor {
+    private final List<Path> _tempPaths = new ArrayList<>();
+
+    @After
+    public void deleteTempPaths() throws IOException {
+        for (Path root : _tempPaths) {
+            if (Files.exists(root)) {
+                List<Path> paths = new ArrayList<>();
+                Files.walk(root).forEach(paths::add);
+                paths.sort(Comparator.reverseOrder());
+                for (Path path : paths) {
+                    Files.delete(path);
+                }
+            }
+        }
+        _tempPaths.clear();
+    }
+
+    private Path tempFile(String prefix, String suffix) throws IOException {
+        Path file = Files.createTempFile(prefix, suffix);
+        _tempPaths.add(file);
+        return file;
+    }
+
+    private Path tempDirectory(String prefix) throws IOException {
+        Path directory = Files.createTempDirectory(prefix);
+        _tempPaths.add(directory);
+        return directory;
+    }
+
+    private static void sendStatus(String id, String type, String condition) throws MockEnvironmentException {
+        MockEndpoint.send("StatusTracker", id, new Gson().toJson(new StatusTrackerMessage(type, id,
+                Constants.NODE_REGION_NE, condition, Constants.NODE_TYPE_INFRASTRUCTURE, 40.7128, 74.0060)));
+    }
+
     @Test
     public void testInitMessage() {
         try {
@@ -85,6 +131,498 @@ public class TestProcessor {
         }
     }
 
+    @Test
+    public void testColumnarExport() throws Exception {
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "StatusTracker",
+                        new StatusTrackerMessageProcessor(),
+                        StatusTracker.class,
+                        StatusTrackerMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        for (int i = 0; i < 10; i++) {
+            String id = Integer.toString(i);
+            String condition = i < 5 ? Constants.NODE_CONDITION_NORMAL : Constants.NODE_CONDITION_SEVERE;
+            MockEndpoint.send("StatusTracker", id, gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT,
+                    id, Constants.NODE_REGION_NW, Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_CONTROLLER, 47.5404, 122.6362)));
+            MockEndpoint.send("StatusTracker", id, gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                    id, Constants.NODE_REGION_NW, condition, Constants.NODE_TYPE_CONTROLLER, 47.5404, 122.6362)));
+        }
+
+        List<StatusTracker> trackers = new ArrayList<>();
+        for (DigitalTwinBase instance : environment.getInstances("StatusTracker").values()) {
+            trackers.add((StatusTracker)instance);
+        }
+        Path file = tempFile("statustracker", ".col");
+        Assert.assertEquals(10, StatusTrackerColumnarWriter.export(trackers, file));
+
+        int[] severeRows = new int[1];
+        try (StatusTrackerColumnarReader reader = new StatusTrackerColumnarReader(file)) {
+            reader.scan(Constants.CONTROLLER_SEVERE_ALERTLEVEL, Integer.MAX_VALUE, group -> {
+                int severe = group.nodeConditionCode(Constants.NODE_CONDITION_SEVERE);
+                for (int row = 0; row < group.getRowCount(); row++) {
+                    if (group.nodeConditionCodes[row] == severe) {
+                        Assert.assertEquals(Constants.CONTROLLER_SEVERE_ALERTLEVEL, group.alertLevels[row]);
+                        Assert.assertEquals(Constants.NODE_REGION_NW, group.getRegion(row));
+                        severeRows[0]++;
+                    }
+                }
+            });
+        }
+        Assert.assertEquals(5, severeRows[0]);
+
+        // strings are stored with a 16-bit length, so longer ids are rejected before anything is buffered
+        char[] longId = new char[StatusTrackerRowGroup.MAX_STRING_BYTES + 1];
+        Arrays.fill(longId, 'x');
+        StatusTrackerRowGroup group = new StatusTrackerRowGroup(1);
+        try {
+            group.add(new String(longId), trackers.get(0));
+            Assert.fail("Added an id longer than " + StatusTrackerRowGroup.MAX_STRING_BYTES + " bytes.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(0, group.getRowCount());
+        }
+        environment.shutdown();
+    }
+
+    @Test
+    public void testIncidentLatency() throws Exception {
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("StatusTracker", processor, StatusTracker.class, StatusTrackerMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        MockEndpoint.send("StatusTracker", "5", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT,
+                "5", Constants.NODE_REGION_MS, Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_CONTROLLER, 30.2672, 97.7431)));
+        // latency is measured from the time the device observed the condition, not the time the message arrived
+        long observed = System.currentTimeMillis() - 500;
+        MockEndpoint.send("StatusTracker", "5", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                "5", Constants.NODE_REGION_MS, Constants.NODE_CONDITION_MINOR, Constants.NODE_TYPE_CONTROLLER, 30.2672, 97.7431, observed)));
+        // an incident without a source timestamp is not recorded
+        MockEndpoint.send("StatusTracker", "5", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                "5", Constants.NODE_REGION_MS, Constants.NODE_CONDITION_MINOR, Constants.NODE_TYPE_CONTROLLER, 30.2672, 97.7431)));
+
+        StatusTracker tracker = (StatusTracker)environment.getInstances("StatusTracker").get("5");
+        Assert.assertEquals(2, tracker.totalIncidents);
+        Assert.assertEquals(observed, tracker.incidentList.get(0).sourceTimestamp);
+        LatencyRecorder.Snapshot latency = processor.getLatencyRecorder().snapshot();
+        Assert.assertEquals(1, latency.getCount());
+        Assert.assertTrue(latency.getP50() >= 500);
+        environment.shutdown();
+    }
+
+    @Test
+    public void testSecondaryIndex() throws Exception {
+        StatusTrackerIndex index = new StatusTrackerIndex();
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        processor.setIndex(index);
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "StatusTracker",
+                        processor,
+                        StatusTracker.class,
+                        StatusTrackerMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        String[] ids = {"1", "2", "3"};
+        String[] types = {Constants.NODE_TYPE_CONTROLLER, Constants.NODE_TYPE_INFRASTRUCTURE, Constants.NODE_TYPE_CONTROLLER};
+        String[] conditions = {Constants.NODE_CONDITION_SEVERE, Constants.NODE_CONDITION_SEVERE, Constants.NODE_CONDITION_MINOR};
+        for (int i = 0; i < ids.length; i++) {
+            MockEndpoint.send("StatusTracker", ids[i], gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT,
+                    ids[i], Constants.NODE_REGION_SE, Constants.NODE_CONDITION_NORMAL, types[i], 47.5404, 122.6362)));
+            MockEndpoint.send("StatusTracker", ids[i], gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                    ids[i], Constants.NODE_REGION_SE, conditions[i], types[i], 47.5404, 122.6362)));
+        }
+
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(2, index.count(Constants.NODE_CONDITION_SEVERE, Constants.NODE_REGION_SE));
+        Assert.assertEquals(0, index.count(Constants.NODE_CONDITION_SEVERE, Constants.NODE_REGION_NW));
+        Assert.assertEquals(1, index.count(Constants.NODE_CONDITION_MINOR));
+        Assert.assertEquals(2, index.countAtOrAbove(Constants.INFRASTRUCTURE_SEVERE_ALERTLEVEL));
+        Assert.assertEquals("1", index.topAlertLevels(1).get(0));
+
+        // resolving the incident moves the tracker between index buckets
+        MockEndpoint.send("StatusTracker", "1", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                "1", Constants.NODE_REGION_SE, Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_CONTROLLER, 47.5404, 122.6362)));
+        Assert.assertEquals(1, index.count(Constants.NODE_CONDITION_SEVERE, Constants.NODE_REGION_SE));
+        Assert.assertEquals("2", index.topAlertLevels(1).get(0));
+        environment.shutdown();
+    }
+
+    @Test
+    public void testIncidentArchive() throws Exception {
+        Path directory = tempDirectory("incidents");
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin(
+                        "StatusTracker",
+                        processor,
+                        StatusTracker.class,
+                        StatusTrackerMessage.class)
+                .build();
+
+        try (IncidentArchive archive = new IncidentArchive(directory)) {
+            processor.setIncidentArchive(archive);
+            Gson gson = new Gson();
+            MockEndpoint.send("StatusTracker", "7", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT,
+                    "7", Constants.NODE_REGION_MN, Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_INFRASTRUCTURE, 47.5404, 122.6362)));
+            int incidents = Constants.MAX_INCIDENT_LIST_SIZE + 5;
+            for (int i = 0; i < incidents; i++) {
+                MockEndpoint.send("StatusTracker", "7", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                        "7", Constants.NODE_REGION_MN, Constants.NODE_CONDITION_MINOR, Constants.NODE_TYPE_INFRASTRUCTURE, 47.5404, 122.6362)));
+            }
+
+            StatusTracker tracker = (StatusTracker)environment.getInstances("StatusTracker").get("7");
+            Assert.assertEquals(Constants.MAX_INCIDENT_LIST_SIZE, tracker.incidentList.size());
+            Assert.assertEquals(incidents, tracker.totalIncidents);
+
+            List<IncidentReport> archived = archive.read("7", 0, Long.MAX_VALUE);
+            Assert.assertEquals(5, archived.size());
+            Assert.assertTrue(archived.get(4).timestamp <= tracker.incidentList.get(0).timestamp);
+            Assert.assertTrue(archive.read("8", 0, Long.MAX_VALUE).isEmpty());
+        }
+        environment.shutdown();
+
+        // reopening rebuilds the index from the segments
+        try (IncidentArchive archive = new IncidentArchive(directory)) {
+            Assert.assertEquals(5, archive.read("7", 0, Long.MAX_VALUE).size());
+        }
+
+        // a segment without the archive header is rejected rather than misread
+        Path foreign = tempDirectory("incidents");
+        Files.write(foreign.resolve("incidents-00000000.log"), new byte[]{0, 0, 0, 40, 1, 2, 3});
+        try {
+            new IncidentArchive(foreign).close();
+            Assert.fail("Expected an IOException for an unrecognized segment.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSlabStore() {
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        StatusTrackerSlabStore store = new StatusTrackerSlabStore(100);
+        StatusTrackerFlyweight flyweight = store.flyweight();
+        String[] conditions = {Constants.NODE_CONDITION_MINOR, Constants.NODE_CONDITION_MODERATE,
+                Constants.NODE_CONDITION_SEVERE, Constants.NODE_CONDITION_NORMAL};
+        for (int i = 0; i < 100; i++) {
+            String id = "tracker-" + i;
+            List<StatusTrackerMessage> messages = new ArrayList<>();
+            messages.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT, id, Constants.NODE_REGION_SE,
+                    Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_INFRASTRUCTURE, 33.7490, 84.3880));
+            List<StatusTrackerMessage> statuses = new ArrayList<>();
+            for (int j = 0; j < i % 40; j++) {
+                statuses.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, id, Constants.NODE_REGION_SE,
+                        conditions[(i + j) % conditions.length], Constants.NODE_TYPE_INFRASTRUCTURE, 33.7490, 84.3880, j + 1));
+            }
+            StatusTracker tracker = new StatusTracker();
+            processor.applyMessages(id, tracker, messages);
+            processor.applyMessages(id, tracker, statuses);
+            int slot = store.findOrAdd(id);
+            processor.applyMessages(id, flyweight.moveTo(slot), messages);
+            processor.applyMessages(id, flyweight.moveTo(slot), statuses);
+
+            StatusTracker copy = store.flyweight().moveTo(store.find(id)).toStatusTracker();
+            Assert.assertEquals(id, flyweight.getId());
+            Assert.assertEquals(tracker.alert_level, copy.alert_level);
+            Assert.assertEquals(tracker.totalIncidents, copy.totalIncidents);
+            Assert.assertEquals(tracker.totalResolvedIncidents, copy.totalResolvedIncidents);
+            Assert.assertEquals(tracker.getSevereIncidentCount(), copy.getSevereIncidentCount());
+            Assert.assertEquals(tracker.incidentList.size(), copy.incidentList.size());
+            for (int j = 0; j < copy.incidentList.size(); j++) {
+                Assert.assertEquals(tracker.incidentList.get(j).sourceTimestamp, copy.incidentList.get(j).sourceTimestamp);
+            }
+        }
+        Assert.assertEquals(100, store.size());
+        Assert.assertEquals(-1, store.find("missing"));
+
+        // values without a NodeCodes code are rejected rather than stored as unknown
+        try {
+            flyweight.moveTo(0).setRegion("Atlantis", 0, 0);
+            Assert.fail("Expected an unknown region to be rejected.");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals(Constants.NODE_REGION_SE, flyweight.toStatusTracker().region);
+        }
+    }
+
+    @Test
+    public void testAlertProfileSwap() {
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        List<StatusTrackerMessage> init = new ArrayList<>();
+        init.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT, "1", Constants.NODE_REGION_NW,
+                Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_CONTROLLER, 47.5404, 122.6362));
+        List<StatusTrackerMessage> severe = new ArrayList<>();
+        severe.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "1", Constants.NODE_REGION_NW,
+                Constants.NODE_CONDITION_SEVERE, Constants.NODE_TYPE_CONTROLLER, 47.5404, 122.6362));
+
+        StatusTracker tracker = new StatusTracker();
+        processor.applyMessages("1", tracker, init);
+        processor.applyMessages("1", tracker, severe);
+        Assert.assertEquals(Constants.CONTROLLER_SEVERE_ALERTLEVEL, tracker.alert_level);
+
+        AlertProfiles defaults = AlertProfiles.current();
+        try {
+            AlertProfiles.publish(defaults.toBuilder()
+                    .setAlertLevel(NodeCodes.REGION_NW, NodeCodes.TYPE_CONTROLLER, AlertProfiles.LEVEL_SEVERE, 50)
+                    .build());
+            processor.applyMessages("1", tracker, severe);
+            Assert.assertEquals(50, tracker.alert_level);
+            Assert.assertEquals(Constants.CONTROLLER_SEVERE_ALERTLEVEL,
+                    AlertProfiles.current().getAlertLevel(NodeCodes.REGION_SE, NodeCodes.TYPE_CONTROLLER, AlertProfiles.LEVEL_SEVERE));
+        } finally {
+            AlertProfiles.publish(defaults);
+        }
+    }
+
+    @Test
+    public void testIdleCompaction() throws Exception {
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        processor.setIdleCompactionMillis(24 * 3600000L);
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("StatusTracker", processor, StatusTracker.class, StatusTrackerMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        String[] conditions = {Constants.NODE_CONDITION_NORMAL, Constants.NODE_CONDITION_MINOR,
+                Constants.NODE_CONDITION_NORMAL, Constants.NODE_CONDITION_SEVERE, Constants.NODE_CONDITION_OFFLINE};
+        for (String condition : conditions) {
+            MockEndpoint.send("StatusTracker", "5", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                    "5", Constants.NODE_REGION_SW, condition, Constants.NODE_TYPE_INFRASTRUCTURE, 36.1699, 115.1398)));
+        }
+
+        // going offline releases the incident list but keeps the summary
+        StatusTracker tracker = (StatusTracker)environment.getInstances("StatusTracker").get("5");
+        Assert.assertTrue(tracker.isCompacted());
+        Assert.assertEquals(2, tracker.totalIncidents);
+        Assert.assertEquals(2, tracker.totalResolvedIncidents);
+        Assert.assertEquals(1, tracker.severeIncidentCount);
+
+        MockEndpoint.send("StatusTracker", "5", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                "5", Constants.NODE_REGION_SW, Constants.NODE_CONDITION_MINOR, Constants.NODE_TYPE_INFRASTRUCTURE, 36.1699, 115.1398)));
+        tracker = (StatusTracker)environment.getInstances("StatusTracker").get("5");
+        Assert.assertFalse(tracker.isCompacted());
+        Assert.assertEquals(1, tracker.incidentList.size());
+        Assert.assertEquals(3, tracker.totalIncidents);
+        environment.shutdown();
+    }
+
+    @Test
+    public void testCoalescing() {
+        StatusTrackerMessageProcessor plain = new StatusTrackerMessageProcessor();
+        StatusTrackerMessageProcessor coalescing = new StatusTrackerMessageProcessor();
+        coalescing.setCoalescing(true);
+
+        // a flapping controller; the final run of moderate reports moves from the "mostly false" to the "mostly real" rule
+        String[] conditions = {Constants.NODE_CONDITION_MODERATE, Constants.NODE_CONDITION_NORMAL,
+                Constants.NODE_CONDITION_MINOR, Constants.NODE_CONDITION_MINOR, Constants.NODE_CONDITION_MINOR,
+                Constants.NODE_CONDITION_NORMAL, Constants.NODE_CONDITION_MODERATE, Constants.NODE_CONDITION_MODERATE,
+                Constants.NODE_CONDITION_MODERATE, Constants.NODE_CONDITION_MODERATE, Constants.NODE_CONDITION_MODERATE};
+        List<StatusTrackerMessage> init = new ArrayList<>();
+        init.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT, "9", Constants.NODE_REGION_MS,
+                Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_CONTROLLER, 32.2988, 90.1848));
+        List<StatusTrackerMessage> burst = new ArrayList<>();
+        for (String condition : conditions) {
+            burst.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "9", Constants.NODE_REGION_MS,
+                    condition, Constants.NODE_TYPE_CONTROLLER, 32.2988, 90.1848));
+        }
+
+        StatusTracker expected = new StatusTracker();
+        plain.applyMessages("9", expected, init);
+        plain.applyMessages("9", expected, burst);
+        StatusTracker tracker = new StatusTracker();
+        coalescing.applyMessages("9", tracker, init);
+        coalescing.applyMessages("9", tracker, burst);
+
+        Assert.assertEquals(expected.alert_level, tracker.alert_level);
+        Assert.assertEquals(AlertProfiles.current().getAlertLevel(NodeCodes.REGION_MS, NodeCodes.TYPE_CONTROLLER,
+                AlertProfiles.LEVEL_MODERATE_MOSTLY_REAL), tracker.alert_level);
+        Assert.assertEquals(expected.node_condition, tracker.node_condition);
+        Assert.assertEquals(expected.minorIncidentCount, tracker.minorIncidentCount);
+        Assert.assertEquals(6, tracker.moderateIncidentCount);
+        Assert.assertEquals(expected.moderateIncidentCount, tracker.moderateIncidentCount);
+        Assert.assertEquals(expected.falseIncidentCount, tracker.falseIncidentCount);
+        Assert.assertEquals(expected.totalIncidents, tracker.totalIncidents);
+        Assert.assertEquals(expected.totalResolvedIncidents, tracker.totalResolvedIncidents);
+
+        // one incident report per run
+        Assert.assertEquals(9, expected.incidentList.size());
+        Assert.assertEquals(3, tracker.incidentList.size());
+    }
+
+    @Test
+    public void testMessageQuarantine() throws Exception {
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("StatusTracker", processor, StatusTracker.class, StatusTrackerMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        MockEndpoint.send("StatusTracker", "3", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT,
+                "3", Constants.NODE_REGION_NE, Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_INFRASTRUCTURE, 42.3601, 71.0589)));
+        // a device sending reports without a condition
+        for (int i = 0; i < 15; i++) {
+            MockEndpoint.send("StatusTracker", "3", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                    "3", Constants.NODE_REGION_NE, null, Constants.NODE_TYPE_INFRASTRUCTURE, 42.3601, 71.0589)));
+        }
+        MockEndpoint.send("StatusTracker", "3", gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                "3", Constants.NODE_REGION_NE, Constants.NODE_CONDITION_MINOR, Constants.NODE_TYPE_INFRASTRUCTURE, 42.3601, 71.0589)));
+
+        StatusTracker tracker = (StatusTracker)environment.getInstances("StatusTracker").get("3");
+        Assert.assertEquals(1, tracker.minorIncidentCount);
+        Assert.assertEquals(15, processor.getQuarantine().getTotal());
+        Assert.assertEquals("missing node_condition", processor.getQuarantine().getEntries().get(0).getReason());
+        Assert.assertEquals("3", processor.getQuarantine().getEntries().get(0).getTwinId());
+        Assert.assertEquals(ErrorReporter.DEFAULT_MAX_PER_INTERVAL, processor.getErrorReporter().getLoggedCount());
+        Assert.assertEquals(15 - ErrorReporter.DEFAULT_MAX_PER_INTERVAL, processor.getErrorReporter().getSuppressedCount());
+
+        // the rest of a batch is applied around an invalid message
+        List<StatusTrackerMessage> batch = new ArrayList<>();
+        batch.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "3", Constants.NODE_REGION_NE,
+                Constants.NODE_CONDITION_SEVERE, Constants.NODE_TYPE_INFRASTRUCTURE, 42.3601, 71.0589));
+        batch.add(null);
+        batch.add(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS, "3", Constants.NODE_REGION_NE,
+                Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_INFRASTRUCTURE, 42.3601, 71.0589));
+        processor.applyMessages("3", tracker, batch);
+        Assert.assertEquals(1, tracker.severeIncidentCount);
+        Assert.assertEquals(Constants.NODE_CONDITION_NORMAL, tracker.node_condition);
+        Assert.assertEquals(16, processor.getQuarantine().getTotal());
+        environment.shutdown();
+    }
+
+    @Test
+    public void testRegionalBroadcast() throws Exception {
+        StatusTrackerIndex index = new StatusTrackerIndex();
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor();
+        processor.setIndex(index);
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("StatusTracker", processor, StatusTracker.class, StatusTrackerMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        String[] ids = {"1", "2", "3", "4"};
+        String[] regions = {Constants.NODE_REGION_SE, Constants.NODE_REGION_SE, Constants.NODE_REGION_SE, Constants.NODE_REGION_NW};
+        double[] latitudes = {47.5404, 47.6062, 47.2529, 45.5152};
+        double[] longitudes = {122.6362, 122.3321, 122.4443, 122.6784};
+        for (int i = 0; i < ids.length; i++) {
+            MockEndpoint.send("StatusTracker", ids[i], gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_INIT,
+                    ids[i], regions[i], Constants.NODE_CONDITION_NORMAL, Constants.NODE_TYPE_CONTROLLER, latitudes[i], longitudes[i])));
+            MockEndpoint.send("StatusTracker", ids[i], gson.toJson(new StatusTrackerMessage(Constants.MESSAGE_TYPE_STATUS,
+                    ids[i], regions[i], Constants.NODE_CONDITION_SEVERE, Constants.NODE_TYPE_CONTROLLER, latitudes[i], longitudes[i])));
+        }
+        Assert.assertEquals(3, index.regionMembers(Constants.NODE_REGION_SE).size());
+        Assert.assertEquals(3, index.membersWithin(47.0, 122.0, 48.0, 123.0).size());
+        Assert.assertEquals(4, index.membersWithin(45.0, 122.0, 48.0, 123.0).size());
+        // a western edge greater than the eastern edge wraps around the antimeridian
+        Assert.assertEquals(3, index.membersWithin(45.0, 122.5, 48.0, 122.4).size());
+        try {
+            index.regionMembers("Atlantis");
+            Assert.fail("Expected an unknown region to be rejected.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RegionalBroadcaster broadcaster = new RegionalBroadcaster(index,
+                (id, command) -> MockEndpoint.send("StatusTracker", id, gson.toJson(command)), executor, 2);
+        BroadcastResult result = broadcaster.broadcastToRegion(Constants.NODE_REGION_SE, RegionalBroadcaster.resetCommand());
+        Assert.assertTrue(result.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(3, result.getTotal());
+        Assert.assertEquals(3, result.getDelivered());
+        Assert.assertEquals(0, result.getFailed());
+
+        // batches rejected by a shut down executor are reported as failed rather than left pending
+        BroadcastResult rejected = broadcaster.broadcastToRegion(Constants.NODE_REGION_SE, RegionalBroadcaster.resetCommand());
+        Assert.assertTrue(rejected.isDone());
+        Assert.assertEquals(3, rejected.getFailed());
+        Assert.assertEquals(3, rejected.getFailedIds().size());
+
+        for (String id : ids) {
+            StatusTracker tracker = (StatusTracker)environment.getInstances("StatusTracker").get(id);
+            boolean reset = !Constants.NODE_REGION_NW.equals(tracker.region);
+            Assert.assertEquals(reset ? Constants.CONTROLLER_NORMAL_ALERTLEVEL : Constants.CONTROLLER_SEVERE_ALERTLEVEL, tracker.alert_level);
+            Assert.assertEquals(reset ? Constants.NODE_CONDITION_NORMAL : Constants.NODE_CONDITION_SEVERE, tracker.node_condition);
+            Assert.assertEquals(reset ? 1 : 0, tracker.totalResolvedIncidents);
+        }
+        Assert.assertEquals(1, index.countAtOrAbove(Constants.CONTROLLER_SEVERE_ALERTLEVEL));
+        environment.shutdown();
+    }
+
+    @Test
+    public void testReportingRate() throws Exception {
+        // record every command the processor sends to the node's data source
+        List<Integer> sent = new ArrayList<>();
+        StatusTrackerMessageProcessor processor = new StatusTrackerMessageProcessor() {
+            @Override
+            SendingResult sendToDataSource(ProcessingContext processingContext, byte[] command) {
+                Assert.assertEquals(RateControlCommand.MAGIC, command[0]);
+                sent.add(RateControlCommand.decode(command).getIntervalMillis());
+                return super.sendToDataSource(processingContext, command);
+            }
+        };
+        processor.setReportingRatePolicy(new ReportingRatePolicy());
+        MockEnvironment environment = new MockEnvironmentBuilder()
+                .addDigitalTwin("StatusTracker", processor, StatusTracker.class, StatusTrackerMessage.class)
+                .build();
+
+        Gson gson = new Gson();
+        String[] types = {Constants.MESSAGE_TYPE_INIT, Constants.MESSAGE_TYPE_STATUS, Constants.MESSAGE_TYPE_STATUS, Constants.MESSAGE_TYPE_STATUS};
+        String[] conditions = {Constants.NODE_CONDITION_NORMAL, Constants.NODE_CONDITION_MINOR,
+                Constants.NODE_CONDITION_SEVERE, Constants.NODE_CONDITION_NORMAL};
+        // quiet, lesser incident, serious incident, then resolved within the hold period
+        int[] intervals = {ReportingRatePolicy.DEFAULT_SLOW_MILLIS, ReportingRatePolicy.DEFAULT_NORMAL_MILLIS,
+                ReportingRatePolicy.DEFAULT_FAST_MILLIS, ReportingRatePolicy.DEFAULT_FAST_MILLIS};
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < types.length; i++) {
+            sendStatus("4", types[i], conditions[i]);
+            StatusTracker tracker = (StatusTracker)environment.getInstances("StatusTracker").get("4");
+            Assert.assertEquals(intervals[i], tracker.reportingInterval);
+            // one command per change of interval and none while the interval is held
+            if (i == 0 || intervals[i] != intervals[i - 1]) {
+                expected.add(intervals[i]);
+            }
+            Assert.assertEquals(expected, sent);
+        }
+
+        // without a hold period the node slows down as soon as the incident is resolved
+        processor.setReportingRatePolicy(new ReportingRatePolicy(ReportingRatePolicy.DEFAULT_FAST_MILLIS,
+                ReportingRatePolicy.DEFAULT_NORMAL_MILLIS, ReportingRatePolicy.DEFAULT_SLOW_MILLIS, 0));
+        sendStatus("4", Constants.MESSAGE_TYPE_STATUS, Constants.NODE_CONDITION_NORMAL);
+        StatusTracker tracker = (StatusTracker)environment.getInstances("StatusTracker").get("4");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_SLOW_MILLIS, tracker.reportingInterval);
+        expected.add(ReportingRatePolicy.DEFAULT_SLOW_MILLIS);
+        Assert.assertEquals(expected, sent);
+
+        // an unchanged interval is not sent again
+        sendStatus("4", Constants.MESSAGE_TYPE_STATUS, Constants.NODE_CONDITION_NORMAL);
+        Assert.assertEquals(expected, sent);
+
+        // the hold is measured from when the node left its incident, not from when the incident was reported
+        processor.setReportingRatePolicy(new ReportingRatePolicy(ReportingRatePolicy.DEFAULT_FAST_MILLIS,
+                ReportingRatePolicy.DEFAULT_NORMAL_MILLIS, ReportingRatePolicy.DEFAULT_SLOW_MILLIS, 200));
+        sendStatus("4", Constants.MESSAGE_TYPE_STATUS, Constants.NODE_CONDITION_SEVERE);
+        tracker = (StatusTracker)environment.getInstances("StatusTracker").get("4");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_FAST_MILLIS, tracker.reportingInterval);
+        expected.add(ReportingRatePolicy.DEFAULT_FAST_MILLIS);
+        Assert.assertEquals(expected, sent);
+        Thread.sleep(300);
+        sendStatus("4", Constants.MESSAGE_TYPE_STATUS, Constants.NODE_CONDITION_NORMAL);
+        tracker = (StatusTracker)environment.getInstances("StatusTracker").get("4");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_FAST_MILLIS, tracker.reportingInterval);
+        Assert.assertEquals(expected, sent);
+        Thread.sleep(300);
+        sendStatus("4", Constants.MESSAGE_TYPE_STATUS, Constants.NODE_CONDITION_NORMAL);
+        tracker = (StatusTracker)environment.getInstances("StatusTracker").get("4");
+        Assert.assertEquals(ReportingRatePolicy.DEFAULT_SLOW_MILLIS, tracker.reportingInterval);
+        expected.add(ReportingRatePolicy.DEFAULT_SLOW_MILLIS);
+        Assert.assertEquals(expected, sent);
+        environment.shutdown();
+    }
+
     @Test
     public void generateModelSchema() throws Exception {
         MockEnvironment environment = new MockEnvironmentBuilder()
@@ -0,0 +1,135 @@
+/**
+ * © Copyright 2020 by ScaleOut Software, Inc.
+ *
+ * LICENSE AND DISCLAIMER
+ * ----------------------
+ * This material contains sample programming source code ("Sample Code").
+ * ScaleOut Software, Inc. (SSI) grants you a nonexclusive license to compile,
+ * link, run, display, reproduce, and prepare derivative works of
+ * this Sample Code.  The Sample Code has not been thoroughly
+ * tested under all conditions.  SSI, therefore, does not guarantee
+ * or imply its reliability, serviceability, or function. SSI
+ * provides no support services for the Sample Code.
+ *
+ * All Sample Code contained herein is provided to you "AS IS" without
+ * any warranties of any kind. THE IMPLIED WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NON-INFRINGEMENT ARE EXPRESSLY
+ * DISCLAIMED.  SOME JURISDICTIONS DO NOT ALLOW THE EXCLUSION OF IMPLIED
+ * WARRANTIES, SO THE ABOVE EXCLUSIONS MAY NOT APPLY TO YOU.  IN NO
+ * EVENT WILL SSI BE LIABLE TO ANY PARTY FOR ANY DIRECT, INDIRECT,
+ * SPECIAL OR OTHER CONSEQUENTIAL DAMAGES FOR ANY USE OF THE SAMPLE CODE
+ * INCLUDING, WITHOUT LIMITATION, ANY LOST PROFITS, BUSINESS
+ * INTERRUPTION, LOSS OF PROGRAMS OR OTHER DATA ON YOUR INFORMATION
+ * HANDLING SYSTEM OR OTHERWISE, EVEN IF WE ARE EXPRESSLY ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGES.
+ */
+package com.scaleoutsoftware.soak;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Samples heap usage and records GC pause durations from the GC MXBean notifications while a soak test runs.
+ * Concurrent collector cycles and the collections forced by {@link #usedHeap()} are not counted as pauses.
+ *
+ * Shared by the soak tests of every sample; each project adds this directory to its test sources.
+ */
+public class SoakMonitor implements AutoCloseable {
+    private final List<NotificationEmitter> _emitters = new ArrayList<>();
+    private final NotificationListener _listener = this::onNotification;
+    // pause durations in milliseconds; GCs are rare enough that keeping every pause is cheap
+    private long[] _pauses = new long[64];
+    private int _pauseCount;
+
+    public SoakMonitor() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter)gc;
+                emitter.addNotificationListener(_listener, null, null);
+                _emitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of GC pauses recorded so far.
+     */
+    public synchronized int getPauseCount() {
+        return _pauseCount;
+    }
+
+    /**
+     * Returns a percentile of the GC pauses recorded so far.
+     * @param percentile the percentile, between 0 and 1
+     * @return the pause in milliseconds, or 0 if there were no pauses
+     */
+    public synchronized long getPausePercentile(double percentile) {
+        if (_pauseCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(_pauses, _pauseCount);
+        Arrays.sort(sorted);
+        int rank = (int)Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /**
+     * Summarizes the GC pauses recorded so far.
+     */
+    public String describePauses() {
+        return String.format("%d pauses, p50 %d ms, p99 %d ms, max %d ms", getPauseCount(),
+                getPausePercentile(0.5), getPausePercentile(0.99), getPausePercentile(1));
+    }
+
+    /**
+     * Returns the used heap after forcing collections, i.e. an estimate of the live set.
+     */
+    public static long usedHeap() throws InterruptedException {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : _emitters) {
+            try {
+                emitter.removeNotificationListener(_listener);
+            } catch (ListenerNotFoundException e) {
+                // already removed; nothing left to release for this collector
+            }
+        }
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData)notification.getUserData());
+        if (info.getGcCause().equals("System.gc()") || info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles")) {
+            return;
+        }
+        recordPause(info.getGcInfo().getDuration());
+    }
+
+    private synchronized void recordPause(long millis) {
+        if (_pauseCount == _pauses.length) {
+            _pauses = Arrays.copyOf(_pauses, _pauses.length * 2);
+        }
+        _pauses[_pauseCount++] = millis;
+    }
+}